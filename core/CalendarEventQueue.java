@@ -0,0 +1,287 @@
+package core;
+
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import model.events.SimulationEvent;
+
+
+/**
+ * A CalendarEventQueue is a bucketed priority queue that exploits the fact that model time is
+ * discretized into integer ticks (see LengthOfTime.TIME_STEPS_PER_DAY).
+ *
+ * A ring of buckets -- one bucket per tick -- covers a window of NUM_BUCKETS ticks starting at
+ * baseTick. Finding the bucket of an event is a mask operation so inserting and popping costs
+ * O(1) amortized with respect to the total number of queued events. Events scheduled beyond the
+ * window are parked in a small overflow heap and migrated into the ring when the window slides
+ * forward. Events scheduled before the window (OffThreadContactEvents imported after a
+ * ReconcileEvent can be "in the past") rewind the window.
+ *
+ * Each bucket is a small binary heap that orders the events of one tick by the tie breakers of
+ * SimulationEvent.compareTo (barriers first, then placeIDNum and myId). Therefore, the exact ordering of the TreeMap based
+ * queue is preserved.
+ *
+ * The window bounds are kept as longs :: events can be scheduled at (or near) Integer.MAX_VALUE
+ * (e.g. a "never" tick), and int arithmetic on baseTick + NUM_BUCKETS would wrap around.
+ */
+class CalendarEventQueue implements SimulationEventQueue {
+
+	/** The number of ticks covered by the ring of buckets (must be a power of 2). */
+	private static final int NUM_BUCKETS = 1024;
+
+	/** tick & BUCKET_MASK = the index of the bucket that stores events for that tick. */
+	private static final int BUCKET_MASK = NUM_BUCKETS - 1;
+
+	/** buckets[tick & BUCKET_MASK] = The events that occur at tick (if tick is in the window). */
+	private final TickBucket[] buckets;
+
+	/** The first tick covered by the ring of buckets. */
+	private long baseTick;
+
+	/** Every bucket for a tick before this cursor (and inside the window) is empty. */
+	private long cursorTick;
+
+	/** The events that occur after the window covered by the ring of buckets. */
+	private final PriorityQueue<SimulationEvent> overflow;
+
+	/** The total number of events in this queue. */
+	private int size;
+
+
+	CalendarEventQueue() {
+		this.buckets = new TickBucket[NUM_BUCKETS];
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			buckets[i] = new TickBucket();
+		}
+		this.overflow = new PriorityQueue<>();
+		this.baseTick = 0;
+		this.cursorTick = 0;
+		this.size = 0;
+	}
+
+
+	@Override
+	public void add(SimulationEvent e) {
+
+		int tick = e.getTick();
+
+		if (tick < baseTick) {
+			rewindWindow(tick);
+		}
+
+		if (tick - baseTick >= NUM_BUCKETS) {
+			overflow.add(e);
+		} else {
+			buckets[tick & BUCKET_MASK].push(e);
+			if (tick < cursorTick) {
+				cursorTick = tick;
+			}
+		}
+		size++;
+	}
+
+
+	@Override
+	public SimulationEvent poll() {
+
+		if (size == 0) {
+			return null;
+		}
+
+		size--;
+		return firstNonEmptyBucket().pop();
+	}
+
+
+	@Override
+	public SimulationEvent peek() {
+
+		if (size == 0) {
+			return null;
+		}
+
+		return firstNonEmptyBucket().heap[0];
+	}
+
+
+	/** @return - The bucket that holds the first event (this queue must not be empty). */
+	private TickBucket firstNonEmptyBucket() {
+
+		while (true) {
+			//scan the window for the first non-empty bucket
+			while (cursorTick - baseTick < NUM_BUCKETS) {
+				TickBucket bucket = buckets[(int) (cursorTick & BUCKET_MASK)];
+				if (bucket.size > 0) {
+					return bucket;
+				}
+				cursorTick++;
+			}
+
+			//the window is empty -- slide it to the earliest overflow event
+			slideWindow();
+		}
+	}
+
+
+	@Override
+	public boolean remove(SimulationEvent e) {
+
+		int tick = e.getTick();
+
+		boolean removed;
+		if (tick >= baseTick && tick - baseTick < NUM_BUCKETS) {
+			removed = buckets[tick & BUCKET_MASK].remove(e);
+		} else {
+			removed = overflow.remove(e);
+		}
+
+		if (removed) {
+			size--;
+		}
+		return removed;
+	}
+
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+
+	@Override
+	public boolean isEmpty() {
+		return (size == 0);
+	}
+
+
+	/** Move the window forward so it begins at the earliest event in the overflow heap. */
+	private void slideWindow() {
+
+		if (overflow.isEmpty()) {
+			throw new IllegalStateException("The window is empty but the queue is not");
+		}
+
+		baseTick = overflow.peek().getTick();
+		cursorTick = baseTick;
+
+		while (!overflow.isEmpty()
+				&& overflow.peek().getTick() - baseTick < NUM_BUCKETS) {
+
+			SimulationEvent e = overflow.poll();
+			buckets[e.getTick() & BUCKET_MASK].push(e);
+		}
+	}
+
+
+	/**
+	 * Move the window backward so it begins at newBaseTick. Events that no longer fit inside the
+	 * window are moved to the overflow heap.
+	 */
+	private void rewindWindow(int newBaseTick) {
+
+		long shift = baseTick - newBaseTick;
+		long firstDroppedTick = baseTick + NUM_BUCKETS - Math.min(shift, NUM_BUCKETS);
+
+		for (long tick = firstDroppedTick; tick < baseTick + NUM_BUCKETS; tick++) {
+			TickBucket bucket = buckets[(int) (tick & BUCKET_MASK)];
+			while (bucket.size > 0) {
+				overflow.add(bucket.pop());
+			}
+		}
+
+		baseTick = newBaseTick;
+		cursorTick = Math.min(cursorTick, newBaseTick);
+	}
+
+
+	/**
+	 * A TickBucket is an array based binary heap that stores the events of a single tick. The
+	 * backing array is retained (and reused) after the bucket is drained.
+	 */
+	private static class TickBucket {
+
+		/** The initial capacity of each bucket. */
+		private static final int INITIAL_CAPACITY = 16;
+
+		SimulationEvent[] heap = new SimulationEvent[INITIAL_CAPACITY];
+
+		int size = 0;
+
+
+		void push(SimulationEvent e) {
+			if (size == heap.length) {
+				heap = Arrays.copyOf(heap, size * 2);
+			}
+			heap[size] = e;
+			siftUp(size);
+			size++;
+		}
+
+
+		SimulationEvent pop() {
+			SimulationEvent first = heap[0];
+			removeAt(0);
+			return first;
+		}
+
+
+		/** Remove a specific event (found by identity). This is a linear scan of one tick. */
+		boolean remove(SimulationEvent e) {
+			for (int i = 0; i < size; i++) {
+				if (heap[i] == e) {
+					removeAt(i);
+					return true;
+				}
+			}
+			return false;
+		}
+
+
+		private void removeAt(int index) {
+			size--;
+			SimulationEvent last = heap[size];
+			heap[size] = null;
+
+			if (index < size) {
+				heap[index] = last;
+				siftDown(index);
+				if (heap[index] == last) {
+					siftUp(index);
+				}
+			}
+		}
+
+
+		private void siftUp(int index) {
+			SimulationEvent e = heap[index];
+			while (index > 0) {
+				int parent = (index - 1) >>> 1;
+				if (e.compareTo(heap[parent]) >= 0) {
+					break;
+				}
+				heap[index] = heap[parent];
+				index = parent;
+			}
+			heap[index] = e;
+		}
+
+
+		private void siftDown(int index) {
+			SimulationEvent e = heap[index];
+			int half = size >>> 1;
+			while (index < half) {
+				int child = 2 * index + 1;
+				int right = child + 1;
+				if (right < size && heap[right].compareTo(heap[child]) < 0) {
+					child = right;
+				}
+				if (e.compareTo(heap[child]) <= 0) {
+					break;
+				}
+				heap[index] = heap[child];
+				index = child;
+			}
+			heap[index] = e;
+		}
+	}
+}
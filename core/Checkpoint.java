@@ -0,0 +1,328 @@
+package core;
+
+
+import java.io.File;
+import java.io.IOException;
+import model.people.AgentGroupCheckpoint;
+import model.people.DeployablePopulation;
+import time.TimeStamp;
+import time.TimeStamps;
+import util.FlatStore;
+import util.Parallelizer;
+
+
+/**
+ * A Checkpoint is a copy of a RECONCILE run at a reconcile point, the only moment at which every
+ * WorkerThread is stopped and no contact is in flight. At that point :: <br>
+ * - every thread's clock is at the same tick <br>
+ * - the outbound contact queues are empty and no OffThreadContactEvent is queued <br>
+ * - no ReconcileEvent is queued (the next one is added after the checkpoint) <p>
+ *
+ * Therefore a thread's event queue only holds one LogUpdateEvent per place and one AgentEvent per
+ * active agent, and the whole run is described by the reconcile number, the tick and, for each
+ * ModelPlace, its RNG position, its event counter, its LogUpdateEvent, its ModelPlaceRecord and
+ * its AgentGroup (including the schedules of the active agents). The event queues are rebuilt
+ * from those schedules when a run is restored.<p>
+ *
+ * Checkpoints require threadInvariant=true (the places' RNGs must be CounterRandomEngines, so a
+ * stream can resume from its draw count). A Checkpoint is written as one FlatStore per WorkerThread (written in parallel) and a manifest
+ * that is written last. It is never modified after it is created, so any number of runs can be
+ * forked from it (see fork). A fork may use a different number of threads. A RECONCILE fork with
+ * the same runNumber continues exactly like the run that was saved, a fork with another runNumber
+ * draws different random numbers from the checkpoint onwards.<p>
+ *
+ * The interventions in AgentEvent (SCHOOLS_CLOSED and SOCIAL_DISTANCE) are static, they are not
+ * part of a Checkpoint. Forks that need different interventions must run one after another.
+ */
+public class Checkpoint {
+
+	/** Identifies the FlatStores of a Checkpoint. */
+	private static final int STORE_KIND = 0x43484B50;
+
+	/** The version of the FlatStore layouts (increment it when a layout changes). */
+	private static final int STORE_VERSION = 2;
+
+	private static final String MANIFEST_NAME = "manifest.chk";
+
+	/** The run that was saved. */
+	private final int runNumber;
+
+	/** The identity of the run's population (see DeployablePopulation.identity). */
+	private final String populationId;
+
+	/** The reconcile number of the run when it was saved. */
+	private final int recNum;
+
+	/** The tick of every thread's clock when the run was saved. */
+	private final int tick;
+
+	/** places[i] = The state of ModelPlace i. */
+	private final Place[] places;
+
+
+	Checkpoint(int runNumber, String populationId, int recNum, int tick, Place[] places) {
+		this.runNumber = runNumber;
+		this.populationId = populationId;
+		this.recNum = recNum;
+		this.tick = tick;
+		this.places = places;
+	}
+
+
+	/** @return - The run that was saved. */
+	public int runNumber() {
+		return runNumber;
+	}
+
+
+	/** @return - The reconcile number of the run when it was saved. */
+	public int recNum() {
+		return recNum;
+	}
+
+
+	/** @return - The model time when the run was saved. */
+	public TimeStamp time() {
+		return TimeStamps.atTick(tick);
+	}
+
+
+	/** @return - The state of ModelPlace placeIndex. */
+	Place place(int placeIndex) {
+		return places[placeIndex];
+	}
+
+
+	/**
+	 * Create a run that resumes from this Checkpoint. The run does not start until beginModel is
+	 * called. Several forks can exist (and run) at the same time.
+	 *
+	 * @param props - The properties of the fork (the number of threads, the runNumber, the engine
+	 * and forkSharing may differ from the saved run, threadInvariant must be true)
+	 * @param population - The population of the saved run
+	 */
+	public InteractiveLargeScaleModel fork(SimulationProperties props, DeployablePopulation population) {
+
+		if (!props.threadInvariant()) {
+			throw new IllegalArgumentException("A Checkpoint can only be forked with threadInvariant=true");
+		}
+		if (!population.identity().equals(populationId)) {
+			throw new IllegalArgumentException("This Checkpoint was saved with the population "
+					+ populationId + ", not " + population.identity());
+		}
+		if (population.numPlaces != places.length) {
+			throw new IllegalArgumentException("This Checkpoint has " + places.length
+					+ " places, the population has " + population.numPlaces);
+		}
+		return new InteractiveLargeScaleModel(props, population, this);
+	}
+
+
+	/** The state of one ModelPlace (see ModelPlace.checkpoint). */
+	static class Place {
+
+		final int placeIndex;
+
+		/** The number of values the place's RNG had produced. */
+		final long numDraws;
+
+		final int nextEventID;
+
+		final int logTick;
+
+		final int logIdNum;
+
+		/** See ModelPlaceRecord.copyDataPoints. */
+		final int[] dataPoints;
+
+		final AgentGroupCheckpoint agents;
+
+
+		Place(int placeIndex, long numDraws, int nextEventID, int logTick, int logIdNum,
+				int[] dataPoints, AgentGroupCheckpoint agents) {
+			this.placeIndex = placeIndex;
+			this.numDraws = numDraws;
+			this.nextEventID = nextEventID;
+			this.logTick = logTick;
+			this.logIdNum = logIdNum;
+			this.dataPoints = dataPoints;
+			this.agents = agents;
+		}
+
+
+		/** Write :: placeIndex, numDraws, nextEventID, logTick, logIdNum, dataPoints, agents. */
+		void writeTo(FlatStore.Writer out) throws IOException {
+			out.putInt(placeIndex);
+			out.putLong(numDraws);
+			out.putInt(nextEventID);
+			out.putInt(logTick);
+			out.putInt(logIdNum);
+			out.putIntArray(dataPoints);
+			agents.writeTo(out);
+		}
+
+
+		static Place readFrom(FlatStore.Reader in) {
+			return new Place(
+					in.getInt(),
+					in.getLong(),
+					in.getInt(),
+					in.getInt(),
+					in.getInt(),
+					in.getIntArray(),
+					AgentGroupCheckpoint.readFrom(in));
+		}
+	}
+
+
+	/** @return - The file that holds the places saved by one WorkerThread. */
+	private static File partFile(File directory, int threadIndex) {
+		return new File(directory, "thread_" + threadIndex + ".chk");
+	}
+
+
+	/**
+	 * Create the directory (if necessary) and delete the manifest of an older Checkpoint, so the
+	 * directory never looks complete while its parts are being replaced.
+	 */
+	static void prepareDirectory(File directory) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create the directory :: " + directory);
+		}
+		File manifest = new File(directory, MANIFEST_NAME);
+		if (manifest.exists() && !manifest.delete()) {
+			throw new IOException("Cannot replace the checkpoint in :: " + directory);
+		}
+	}
+
+
+	/** Write the places saved by one WorkerThread :: the number of places, then each place. */
+	static void writePart(File directory, int threadIndex, Place[] part) throws IOException {
+		try (FlatStore.Writer out = new FlatStore.Writer(
+				partFile(directory, threadIndex), STORE_KIND, STORE_VERSION)) {
+			out.putInt(part.length);
+			for (Place place : part) {
+				place.writeTo(out);
+			}
+			out.commit();
+		}
+	}
+
+
+	/**
+	 * Write the manifest :: runNumber, populationId, recNum, tick, the number of places and the
+	 * number of parts. It is written after every part, so a directory without a manifest is
+	 * incomplete.
+	 */
+	void writeManifest(File directory, int numParts) throws IOException {
+		try (FlatStore.Writer out = new FlatStore.Writer(
+				new File(directory, MANIFEST_NAME), STORE_KIND, STORE_VERSION)) {
+			out.putInt(runNumber);
+			out.putString(populationId);
+			out.putInt(recNum);
+			out.putInt(tick);
+			out.putInt(places.length);
+			out.putInt(numParts);
+			out.commit();
+		}
+	}
+
+
+	/**
+	 * Read a Checkpoint written by a ThreadManager (see ThreadManager.requestCheckpoint). The parts
+	 * are read in parallel.
+	 *
+	 * @throws IllegalStateException - If the directory does not hold a complete, valid Checkpoint
+	 */
+	public static Checkpoint read(File directory) throws IOException {
+
+		File manifestFile = new File(directory, MANIFEST_NAME);
+		if (!manifestFile.exists()) {
+			throw new IllegalStateException("Incomplete checkpoint (no manifest) :: " + directory);
+		}
+
+		FlatStore.Reader manifest = new FlatStore.Reader(manifestFile, STORE_KIND, STORE_VERSION);
+		manifest.verify();
+		int runNumber = manifest.getInt();
+		String populationId = manifest.getString();
+		int recNum = manifest.getInt();
+		int tick = manifest.getInt();
+		Place[] places = new Place[manifest.getInt()];
+		int numParts = manifest.getInt();
+
+		PartReader[] jobs = new PartReader[numParts];
+		for (int i = 0; i < numParts; i++) {
+			jobs[i] = new PartReader(partFile(directory, i), places.length);
+		}
+		int numReaders = Math.min(numParts, Runtime.getRuntime().availableProcessors());
+		new Parallelizer(Math.max(1, numReaders)).doWorkInParallel(jobs);
+
+		for (PartReader job : jobs) {
+			if (job.failure instanceof IOException) {
+				throw (IOException) job.failure;
+			} else if (job.failure != null) {
+				throw (IllegalStateException) job.failure;
+			}
+			for (Place place : job.part) {
+				if (place.placeIndex < 0 || place.placeIndex >= places.length) {
+					throw new IllegalStateException("Corrupt checkpoint (place " + place.placeIndex
+							+ " is out of range, there are " + places.length + " places)");
+				}
+				if (places[place.placeIndex] != null) {
+					throw new IllegalStateException(
+							"Corrupt checkpoint (place " + place.placeIndex + " is saved twice)");
+				}
+				places[place.placeIndex] = place;
+			}
+		}
+		for (int i = 0; i < places.length; i++) {
+			if (places[i] == null) {
+				throw new IllegalStateException("Incomplete checkpoint (place " + i + " is missing)");
+			}
+		}
+
+		return new Checkpoint(runNumber, populationId, recNum, tick, places);
+	}
+
+
+	/** Read the places of one part (they are checked and merged by read). */
+	private static class PartReader implements Runnable {
+
+		private final File file;
+
+		/** The number of places in the Checkpoint (no part can hold more). */
+		private final int maxPlaces;
+
+		private Place[] part;
+
+		/** The IOException or IllegalStateException thrown while reading (null if none was thrown). */
+		private Exception failure;
+
+
+		PartReader(File file, int maxPlaces) {
+			this.file = file;
+			this.maxPlaces = maxPlaces;
+		}
+
+
+		@Override
+		public void run() {
+			try {
+				FlatStore.Reader in = new FlatStore.Reader(file, STORE_KIND, STORE_VERSION);
+				in.verify();
+				int numPlaces = in.getInt();
+				if (numPlaces < 0 || numPlaces > maxPlaces) {
+					throw new IllegalStateException(
+							"Corrupt checkpoint part (" + numPlaces + " places) :: " + file);
+				}
+				Place[] read = new Place[numPlaces];
+				for (int k = 0; k < numPlaces; k++) {
+					read[k] = Place.readFrom(in);
+				}
+				part = read;
+			} catch (IOException | IllegalStateException ex) {
+				failure = ex;
+			}
+		}
+	}
+}
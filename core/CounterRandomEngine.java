@@ -0,0 +1,74 @@
+package core;
+
+
+import cern.jet.random.engine.RandomEngine;
+
+
+/**
+ * A counter-based random number generator. The n-th value of a stream is a pure function of the
+ * stream's key and n (two rounds of the SplitMix64 finalizer), there is no other state. Therefore:
+ * <br>
+ * - every ModelPlace gets an independent stream keyed by (runNumber, placeIndex) -- unlike seeds
+ * such as placeIndex + runNumber, neighbouring runs do not share streams <br>
+ * - a stream is rewound (or fast forwarded) by setting its draw count <p>
+ *
+ * Every method of a colt RandomEngine is derived from nextInt.
+ */
+class CounterRandomEngine extends RandomEngine {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The golden ratio increment of SplitMix64. */
+	private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+	/** Separates the run number from the place index when keys are derived. */
+	private static final long RUN_SALT = 0x5851F42D4C957F2DL;
+
+	/** Identifies this stream. */
+	private final long key;
+
+	/** The number of 32-bit values this generator has produced. */
+	private long numDraws;
+
+
+	CounterRandomEngine(long key) {
+		this.key = key;
+		this.numDraws = 0;
+	}
+
+
+	/** @return - The key of the stream that belongs to a ModelPlace in a given run. */
+	static long streamKey(int runNumber, int placeIndex) {
+		return mix(mix(runNumber ^ RUN_SALT) + placeIndex * GAMMA);
+	}
+
+
+	@Override
+	public int nextInt() {
+		numDraws++;
+		return (int) (mix(mix(numDraws * GAMMA) ^ key) >>> 32);
+	}
+
+
+	/** @return - The number of 32-bit values this generator has produced. */
+	long numDraws() {
+		return numDraws;
+	}
+
+
+	/** Move the stream so the next value is the one that followed the given number of draws. */
+	void setNumDraws(long numDraws) {
+		if (numDraws < 0) {
+			throw new IllegalArgumentException("Negative draw count :: " + numDraws);
+		}
+		this.numDraws = numDraws;
+	}
+
+
+	/** The SplitMix64 finalizer (a bijection on longs). */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,191 @@
+package core;
+
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import model.people.DeployablePopulation;
+import time.Ticks;
+
+
+/**
+ * An EnsembleRunner runs many stochastic replicates of one scenario inside a single JVM. The
+ * DeployablePopulation (places, geometry and the contact kernel) is loaded once and shared by
+ * every replicate because it is never modified. Everything else -- the ThreadManager, the
+ * WorkerThreads, the agents and the RNG streams -- belongs to one replicate.
+ *
+ * Replicate k uses runNumber + k and threadsPerReplicate WorkerThreads. As many replicates run at
+ * the same time as fit into numThreads cores. A summary line is printed (and appended to
+ * output/ensemble_[runNumber].csv) as soon as each replicate finishes. A replicate that fails while
+ * it is built is reported and the others continue, a failure inside a WorkerThread ends the JVM
+ * (see ErrorCatchingTask).
+ *
+ * An ensemble can also start from a Checkpoint, every replicate is then a branch forked from the
+ * saved run (see Checkpoint.fork). The branch that uses the saved run's runNumber continues exactly
+ * like the saved run.
+ *
+ * The interventions in AgentEvent (SCHOOLS_CLOSED and SOCIAL_DISTANCE) are static, they describe
+ * the scenario and therefore apply to every replicate.
+ */
+public class EnsembleRunner {
+
+	/** The properties of the ensemble (each replicate gets a copy, see forReplicate). */
+	private final SimulationProperties props;
+
+	/** The population shared by every replicate. */
+	private final DeployablePopulation population;
+
+	/** The Checkpoint every replicate is forked from (null if the replicates start from day 0). */
+	private final Checkpoint checkpoint;
+
+
+	public EnsembleRunner(SimulationProperties props) {
+		this(props, DeployablePopulation.loadPopulation(props), null);
+	}
+
+
+	/**
+	 * @param props - The properties of the ensemble
+	 * @param population - The population shared by every replicate
+	 * @param checkpoint - The Checkpoint every replicate is forked from (null to start from day 0)
+	 */
+	public EnsembleRunner(SimulationProperties props, DeployablePopulation population,
+			Checkpoint checkpoint) {
+		this.props = props;
+		this.population = population;
+		this.checkpoint = checkpoint;
+	}
+
+
+	/** Run every replicate, return when all of them are finished. */
+	public void run() {
+
+		int numReplicates = props.ensembleSize();
+		int threadsPerReplicate = Math.max(1, Math.min(props.threadsPerReplicate(), props.numThreads()));
+		int numConcurrent = Math.max(1, Math.min(numReplicates, props.numThreads() / threadsPerReplicate));
+
+		System.out.println("Running " + numReplicates + " replicates :: " + numConcurrent
+				+ " at a time with " + threadsPerReplicate + " threads each");
+
+		Path file = Paths.get("output", "ensemble_" + props.runNumber() + ".csv");
+
+		try {
+			Files.createDirectories(file.getParent());
+		} catch (IOException ex) {
+			throw new IllegalStateException("Cannot write the ensemble summary :: " + file, ex);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(numConcurrent);
+		try (PrintWriter summaries = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+
+			summaries.println(ReplicateSummary.CSV_HEADER);
+
+			CompletionService<ReplicateSummary> completed = new ExecutorCompletionService<>(executor);
+			for (int k = 0; k < numReplicates; k++) {
+				completed.submit(new Replicate(props.forReplicate(props.runNumber() + k, threadsPerReplicate)));
+			}
+
+			for (int k = 0; k < numReplicates; k++) {
+				try {
+					ReplicateSummary summary = completed.take().get();
+					System.out.println("Replicate finished :: " + summary);
+					summaries.println(summary.asCsv());
+					summaries.flush();
+				} catch (ExecutionException ex) {
+					//the replicate could not be built (a WorkerThread failure never gets here)
+					System.out.println("A replicate failed :: " + ex.getCause());
+					ex.getCause().printStackTrace();
+				}
+			}
+
+		} catch (IOException ex) {
+			throw new IllegalStateException("Cannot write the ensemble summary :: " + file, ex);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+
+	/** Build and run one replicate. */
+	private class Replicate implements Callable<ReplicateSummary> {
+
+		private final SimulationProperties replicateProps;
+
+
+		Replicate(SimulationProperties replicateProps) {
+			this.replicateProps = replicateProps;
+		}
+
+
+		@Override
+		public ReplicateSummary call() {
+
+			long startTime = System.currentTimeMillis();
+
+			InteractiveLargeScaleModel model = (checkpoint == null)
+					? new InteractiveLargeScaleModel(replicateProps, population)
+					: checkpoint.fork(replicateProps, population);
+			model.beginModel();
+
+			ThreadManager manager = model.threadManager();
+			int lastTick = 0;
+			for (int i = 0; i < manager.numThreads(); i++) {
+				lastTick = Math.max(lastTick, manager.getThread(i).getCurrentTime().asNumTicks());
+			}
+
+			return new ReplicateSummary(
+					replicateProps.runNumber(),
+					manager.getTotalInfections(),
+					lastTick / (double) Ticks.ofDays(1.0),
+					System.currentTimeMillis() - startTime);
+		}
+	}
+
+
+	/** The outcome of one replicate. */
+	public static class ReplicateSummary {
+
+		static final String CSV_HEADER = "runNumber,totalInfected,lastDay,wallMillis";
+
+		public final int runNumber;
+
+		/** The number of agents that were infected (and have recovered) by the end of the run. */
+		public final int totalInfected;
+
+		/** The model time (in days) at which the epidemic ended. */
+		public final double lastDay;
+
+		public final long wallMillis;
+
+
+		ReplicateSummary(int runNumber, int totalInfected, double lastDay, long wallMillis) {
+			this.runNumber = runNumber;
+			this.totalInfected = totalInfected;
+			this.lastDay = lastDay;
+			this.wallMillis = wallMillis;
+		}
+
+
+		String asCsv() {
+			return runNumber + "," + totalInfected + "," + lastDay + "," + wallMillis;
+		}
+
+
+		@Override
+		public String toString() {
+			return "run " + runNumber + " :: " + totalInfected + " infected :: ended on day " + lastDay
+					+ " :: " + (wallMillis / 1000) + " s";
+		}
+	}
+}
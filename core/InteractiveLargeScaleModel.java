@@ -5,7 +5,9 @@ import core.ThreadManager;
 import core.SimulationProperties;
 import model.events.AgentEvent;
 import model.gui.GSAMGui;
+import model.people.DeployablePopulation;
 import java.awt.image.BufferedImage;
+import java.io.File;
 
 
 public class InteractiveLargeScaleModel {
@@ -13,8 +15,6 @@ public class InteractiveLargeScaleModel {
 	/** The directory where all "readily usable" output should be placed. */
 	public static final String OUTPUT_DIRECTORY = "output\\";
 
-	public static InteractiveLargeScaleModel instance;
-
 	/** A GUI that can display current information from the GSAM. */
 	private GSAMGui gui;
 
@@ -30,17 +30,29 @@ public class InteractiveLargeScaleModel {
 	private final int runNumber;
 
 
+	/** Create a model of the population requested in the properties. */
 	public InteractiveLargeScaleModel(SimulationProperties simProps) {
+		this(simProps, DeployablePopulation.loadPopulation(simProps));
+	}
+
+
+	/**
+	 * Create a model of a population that is already loaded. Several models may exist at the same
+	 * time (and share one population) as long as each has its own SimulationProperties.
+	 */
+	public InteractiveLargeScaleModel(SimulationProperties simProps, DeployablePopulation population) {
+		this(simProps, population, null);
+	}
+
+
+	/** Create a model that resumes from a Checkpoint (see Checkpoint.fork). */
+	InteractiveLargeScaleModel(SimulationProperties simProps, DeployablePopulation population,
+			Checkpoint restoredFrom) {
 
-		if (InteractiveLargeScaleModel.instance == null) {
-			InteractiveLargeScaleModel.instance = this;
-		} else {
-			throw new IllegalStateException("Only one InteractiveLargeScaleModel can exist at a time");
-		}
 		this.simProps = simProps;
 
 
-		this.threadManager = new ThreadManager(this);
+		this.threadManager = new ThreadManager(this, population, restoredFrom);
 		this.runNumber = getRunNumber();
 	}
 
@@ -57,12 +69,18 @@ public class InteractiveLargeScaleModel {
 	}
 
 
-	/** Prompt the Thread Manager to begin processing. */
+	/** Prompt the Thread Manager to begin processing (returns when the epidemic is over). */
 	public void beginModel() {
 		this.threadManager.begin();
 	}
 
 
+	/** @return - The object that manages this model's threads. */
+	ThreadManager threadManager() {
+		return this.threadManager;
+	}
+
+
 	public void pause() {
 		this.threadManager.pause();
 	}
@@ -73,6 +91,12 @@ public class InteractiveLargeScaleModel {
 	}
 
 
+	/** Save the run at its next reconcile point (see Checkpoint and ThreadManager.requestCheckpoint). */
+	public void requestCheckpoint(File directory) {
+		this.threadManager.requestCheckpoint(directory);
+	}
+
+
 	public void setSocialDistance(double reductionFraction) {
 		AgentEvent.setSocialDistance(reductionFraction);
 	}
@@ -91,6 +115,10 @@ public class InteractiveLargeScaleModel {
 
 
 	public void updateGUI() {
+		//drawing the map is expensive -- skip it when nobody is watching (ie ensemble runs)
+		if (this.gui == null) {
+			return;
+		}
 		this.updateNumSick(this.threadManager.getNumSick());
 		this.updateTotalSick(this.threadManager.getTotalInfections());
 		this.updateMap(this.threadManager.getCurrentImage());
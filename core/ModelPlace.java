@@ -1,12 +1,12 @@
 package core;
 
 
-import cern.jet.random.engine.MersenneTwister;
 import cern.jet.random.engine.RandomEngine;
 import model.ModelPlaceRecord;
 import model.ModelPlaceSeed;
 import model.events.LogUpdateEvent;
 import model.people.AgentGroup;
+import model.people.HouseholdFactory;
 import model.people.USHouseholdMaker;
 import time.LengthOfTime;
 import time.ModelTimeUnit;
@@ -15,51 +15,134 @@ import time.TimeStamps;
 
 public class ModelPlace {
 	
-	/** The WorkerThread that owns this place. */
-	public final WorkerThread parentThread;
+	/** The WorkerThread that owns this place (changes when the place migrates). */
+	public WorkerThread parentThread;
 
 	/** A unique model-wide identifying number. */
 	private final int placeIDNum;
 
-	/** The ModelPlace's RNG. To ensure reproducibility, each ModelPlace must have its own RNG. */
+	/**
+	 * The ModelPlace's RNG. To ensure reproducibility, each ModelPlace must have its own RNG (see
+	 * WorkerThread.makePlaceRand).
+	 */
 	private final RandomEngine rand;
 
+	/** OPTIMISTIC engine -- The serial number of the last event that journaled rand. */
+	private long lastRandEventSerial = -1;
+
 	/** The population of local agents. */
 	private AgentGroup localAgents;
 
 	/** A Set of time-Series data that describes this ModelPlace alone. */
 	private ModelPlaceRecord record;
 
+	/** The event that records this place's state once a day (it re-adds itself). */
+	private final LogUpdateEvent logEvent;
+
 	/** An object that contains "data" about this ModelPlace. */
 	private ModelPlaceSeed placeSeed;
 
+	/**
+	 * This field is used to assign each SimulationEvent at this place a unique idNum used to break
+	 * ties. The counter belongs to the place (not the thread) so the order of this place's events
+	 * does not depend on which thread owns it.
+	 */
+	private int nextEventID;
+
+	/** The number of events implemented at this place since the threads were last rebalanced. */
+	long eventsSinceRebalance;
+
 
 	/**
 	 * A place is meant to efficiently store people that live in a given area
 	 *
 	 * @param parent - This place's parent thread.
 	 * @param placeIDNum - A unique identifying number of this local area
-	 * @param rngSeed - A seed for this place's RNG
+	 * @param rand - This place's RNG (see WorkerThread.makePlaceRand)
 	 * @param placeSeed - An object that contains more detailed info about this place
 	 */
-	public ModelPlace(WorkerThread parent, int placeIndex, int rngSeed, ModelPlaceSeed placeSeed) {
+	public ModelPlace(WorkerThread parent, int placeIndex, RandomEngine rand, ModelPlaceSeed placeSeed) {
 		
 		this.parentThread = parent;
 		this.placeIDNum = placeIndex;
-		this.rand = new MersenneTwister(rngSeed);
+		this.rand = rand;
 		this.placeSeed = placeSeed;
 
-		this.localAgents = new AgentGroup(
-				placeSeed.population,
-				this,
-				new USHouseholdMaker(rand));
+		String agentGroups = parent.manager().getModel().simProps().agentGroups();
+		if (agentGroups.equals("LAZY")) {
+			this.localAgents = new AgentGroup(placeSeed.population, this);
+		} else if (agentGroups.equals("EAGER")) {
+			this.localAgents = new AgentGroup(
+					placeSeed.population,
+					this,
+					householdFactory());
+		} else {
+			throw new IllegalArgumentException("Unknown agentGroups :: " + agentGroups);
+		}
 
 		this.record = new ModelPlaceRecord(placeIndex, parentThread.threadIDNum());
 
 		//information about this node is recorded at the end of the day
-		parentThread.addEvent(new LogUpdateEvent(
+		this.logEvent = new LogUpdateEvent(
 				TimeStamps.initalTime().add(new LengthOfTime(0.975, ModelTimeUnit.DAYS)), 
-				this));
+				this);
+		parentThread.addEvent(logEvent);
+	}
+
+
+	/**
+	 * Rebuild a place saved in a Checkpoint and add its events to the parent's queue.
+	 *
+	 * @param parent - This place's parent thread.
+	 * @param rngKey - The key of this place's RNG stream (the stream resumes where it was saved)
+	 * @param placeSeed - An object that contains more detailed info about this place
+	 * @param saved - The state of this place when it was saved
+	 */
+	ModelPlace(WorkerThread parent, long rngKey, ModelPlaceSeed placeSeed, Checkpoint.Place saved) {
+
+		this.parentThread = parent;
+		this.placeIDNum = saved.placeIndex;
+		CounterRandomEngine counter = new CounterRandomEngine(rngKey);
+		counter.setNumDraws(saved.numDraws);
+		this.rand = counter;
+		this.placeSeed = placeSeed;
+
+		if (saved.agents.numAgents() != placeSeed.population) {
+			throw new IllegalArgumentException("Place " + placeIDNum + " was saved with "
+					+ saved.agents.numAgents() + " agents, the population has " + placeSeed.population);
+		}
+
+		String forkSharing = parent.manager().getModel().simProps().forkSharing();
+		if (forkSharing.equals("COPY_ON_WRITE")) {
+			this.localAgents = new AgentGroup(this, saved.agents, true);
+		} else if (forkSharing.equals("COPY")) {
+			this.localAgents = new AgentGroup(this, saved.agents, false);
+		} else {
+			throw new IllegalArgumentException("Unknown forkSharing :: " + forkSharing);
+		}
+		localAgents.restoreAgentEvents(saved.agents);
+
+		this.record = new ModelPlaceRecord(placeIDNum, parentThread.threadIDNum());
+		record.addDataPoints(saved.dataPoints);
+
+		this.logEvent = new LogUpdateEvent(TimeStamps.atTick(saved.logTick), this, saved.logIdNum);
+		parentThread.addEvent(logEvent);
+
+		//rebuilding the events consumed idNums
+		this.nextEventID = saved.nextEventID;
+	}
+
+
+	/** @return - A copy of this place's state (its thread must be stopped, see Checkpoint). */
+	Checkpoint.Place checkpoint() {
+		return new Checkpoint.Place(
+				placeIDNum,
+				counter().numDraws(),
+				nextEventID,
+				logEvent.getTick(),
+				logEvent.idNum(),
+				record.copyDataPoints(),
+				localAgents.checkpoint());
 	}
 
 
@@ -69,6 +152,21 @@ public class ModelPlace {
 	}
 
 
+	/** @return a uniformly increasing identification number for SimulationEvents to use. */
+	public int generateUniqueEventID() {
+		return ++nextEventID;
+	}
+
+
+	/**
+	 * Transfer this ModelPlace to a different WorkerThread. The caller is responsible for moving
+	 * this place's queued events (all threads must be stopped).
+	 */
+	void moveTo(WorkerThread newOwner) {
+		this.parentThread = newOwner;
+	}
+
+
 	/** @return This ModelPlace's index. */
 	public int placeIDNum() {
 		return placeIDNum;
@@ -77,10 +175,63 @@ public class ModelPlace {
 
 	/** @return This ModelPlace's RNG. */
 	public RandomEngine getRand() {
+
+		StateJournal journal = parentThread.journal();
+		if (journal.isRecording() && lastRandEventSerial != parentThread.eventSerial()) {
+			journalRand(journal);
+		}
 		return rand;
 	}
 
 
+	/**
+	 * @return - A HouseholdFactory that draws directly from this place's RNG (bypassing the
+	 * OPTIMISTIC engine's journal). The agents are always built before any event at this place
+	 * draws from the RNG, so their draws are the same whether they are built at startup or later.
+	 */
+	public HouseholdFactory householdFactory() {
+		return new USHouseholdMaker(rand);
+	}
+
+
+	/**
+	 * @return - rand as a CounterRandomEngine (Checkpoints and the OPTIMISTIC engine need its
+	 * draw count).
+	 */
+	private CounterRandomEngine counter() {
+		if (!(rand instanceof CounterRandomEngine)) {
+			throw new IllegalStateException("Place " + placeIDNum
+					+ " draws from a MersenneTwister, its draws cannot be counted (see threadInvariant)");
+		}
+		return (CounterRandomEngine) rand;
+	}
+
+
+	/** Save the draw count of rand the first time the current event uses it. */
+	private void journalRand(StateJournal journal) {
+		lastRandEventSerial = parentThread.eventSerial();
+		journal.record(new RandRewind(counter().numDraws()));
+	}
+
+
+	/** Undo the draws made by an event (rand is counter-based, so this is a single assignment). */
+	private class RandRewind extends StateJournal.Entry {
+
+		private final long numDraws;
+
+
+		RandRewind(long numDraws) {
+			this.numDraws = numDraws;
+		}
+
+
+		@Override
+		protected void undo() {
+			counter().setNumDraws(numDraws);
+		}
+	}
+
+
 	/** @return - The set of agents who live locally (i.e. in this Place.) . */
 	public AgentGroup locals() {
 		return this.localAgents;
@@ -100,6 +251,16 @@ public class ModelPlace {
 	/** Log the current state. */
 	public void logCurrentState() {
 
+		StateJournal journal = parentThread.journal();
+		if (journal.isRecording()) {
+			journal.record(new StateJournal.Entry() {
+				@Override
+				protected void undo() {
+					record.removeLastDataPoint();
+				}
+			});
+		}
+
 		record.addDataPoint(
 				localAgents.numSusceptible,
 				localAgents.numContagious,
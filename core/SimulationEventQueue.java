@@ -0,0 +1,43 @@
+package core;
+
+
+import model.events.SimulationEvent;
+
+
+/**
+ * A SimulationEventQueue holds the SimulationEvents a WorkerThread still needs to process.
+ *
+ * Events must always be returned in the exact order defined by SimulationEvent.compareTo (time,
+ * then place, then id). Implementations are free to choose how they achieve that ordering.
+ * A SimulationEventQueue is only ever accessed by the WorkerThread that owns it.
+ */
+public interface SimulationEventQueue {
+
+	/** Add a SimulationEvent to this queue. */
+	public void add(SimulationEvent e);
+
+
+	/** @return - The first SimulationEvent in this queue (which is removed) or null if empty. */
+	public SimulationEvent poll();
+
+
+	/** @return - The first SimulationEvent in this queue (which is not removed) or null if empty. */
+	public SimulationEvent peek();
+
+
+	/**
+	 * Remove a SimulationEvent from this queue. The event's time must not have changed since it
+	 * was added.
+	 *
+	 * @return - True if the event was found (and removed)
+	 */
+	public boolean remove(SimulationEvent e);
+
+
+	/** @return - The number of SimulationEvents in this queue. */
+	public int size();
+
+
+	/** @return - True if this queue contains no SimulationEvents. */
+	public boolean isEmpty();
+}
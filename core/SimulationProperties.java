@@ -11,7 +11,7 @@ import time.ModelTimeUnit;
 /**
  * A SimulationProperties object contains the properties that are required to configure an LSAM run.
  */
-public class SimulationProperties {
+public class SimulationProperties implements Cloneable {
 
 	private static final String PROPERTIES_FILE = "interactiveLSAMproperties.prop";
 
@@ -66,7 +66,112 @@ public class SimulationProperties {
 
 	private LengthOfTime logUpdateEventFrequency = new LengthOfTime(1.0, ModelTimeUnit.DAYS);
 
-	private LengthOfTime reconcileEventFrequency = new LengthOfTime(1.0, ModelTimeUnit.DAYS);
+	/** How often the WorkerThreads reconcile. Sub-day values (ie 0.25) are supported. */
+	private LengthOfTime reconcileEventFrequency = new LengthOfTime(
+			Double.parseDouble(textFileProperties.getProperty("reconcileFreqInDays", "1.0")),
+			ModelTimeUnit.DAYS);
+
+	/**
+	 * How the WorkerThreads are synchronized. "RECONCILE" stops every thread at each
+	 * ReconcileEvent, "CONSERVATIVE" uses the disease's latent period as a lookahead window,
+	 * "OPTIMISTIC" runs ahead speculatively and rolls back when a late contact arrives.
+	 * Only "RECONCILE" with threadInvariant=true gives identical results for any numThreads (the
+	 * other engines implement imported contacts at points that depend on how fast each thread
+	 * runs).
+	 */
+	private String engineType = textFileProperties.getProperty("engine", "RECONCILE");
+
+	/** OPTIMISTIC engine -- How far past the Global Virtual Time a WorkerThread may speculate. */
+	private LengthOfTime optimismWindow = new LengthOfTime(
+			Double.parseDouble(textFileProperties.getProperty("optimismWindowInDays", "2.0")),
+			ModelTimeUnit.DAYS);
+
+	/**
+	 * How ModelPlaces are assigned to WorkerThreads. "ROUND_ROBIN" assigns place i to thread
+	 * i % numThreads, "GRAPH" (opt-in) partitions the interaction graph.
+	 */
+	private String threadOwnership = textFileProperties.getProperty("threadOwnership", "ROUND_ROBIN");
+
+	/**
+	 * RECONCILE engine -- "NONE" keeps the initial assignment, "MIGRATE" (opt-in) moves
+	 * ModelPlaces from busy threads to idle threads at reconcile points.
+	 */
+	private String loadBalancing = textFileProperties.getProperty("loadBalancing", "NONE");
+
+	/**
+	 * How the destination of a random contact is sampled. "SPARSE" keeps the heaviest places of
+	 * each row plus a coarse far field grid, "QUADTREE" (opt-in) aggregates distant places with a
+	 * Barnes-Hut style quadtree -- it uses less memory but approximates the near field as well.
+	 */
+	private String interactionKernel = textFileProperties.getProperty("interactionKernel", "SPARSE");
+
+	/** QUADTREE kernel -- Distant places are aggregated when (width / distance) < this angle. */
+	private double kernelOpeningAngle = Double.parseDouble(
+			textFileProperties.getProperty("kernelOpeningAngle", "0.5"));
+
+	/**
+	 * SPARSE kernel -- The far field grid has this many cells per side. A finer grid is more
+	 * accurate for distant contacts but every row stores one entry per occupied cell.
+	 */
+	private int kernelFarGridSize = Integer.parseInt(
+			textFileProperties.getProperty("kernelFarGridSize", "16"));
+
+	/**
+	 * When the agents of a ModelPlace are built. "LAZY" keeps only the aggregate counts until a
+	 * contagious contact (or an initial case) reaches the place, "EAGER" builds every place's
+	 * agents at startup. Both produce the same results.
+	 */
+	private String agentGroups = textFileProperties.getProperty("agentGroups", "LAZY");
+
+	/**
+	 * Where the agents' packed states live. "HEAP" uses ordinary arrays, "OFF_HEAP" allocates
+	 * them from a direct memory arena owned by each WorkerThread (see -XX:MaxDirectMemorySize).
+	 */
+	private String agentStorage = textFileProperties.getProperty("agentStorage", "HEAP");
+
+	/** ENSEMBLE runs -- The number of replicates (they use runNumber, runNumber + 1, ...). */
+	private int ensembleSize = Integer.parseInt(textFileProperties.getProperty("ensembleSize", "1"));
+
+	/**
+	 * ENSEMBLE runs -- The number of WorkerThreads each replicate uses. Replicates run concurrently
+	 * when numThreads is at least twice this value.
+	 */
+	private int threadsPerReplicate = Integer.parseInt(
+			textFileProperties.getProperty("threadsPerReplicate", Integer.toString(numThreads)));
+
+	/**
+	 * RECONCILE engine -- The run is saved to checkpointDirectory when it reaches this reconcile
+	 * number (-1 = never, see Checkpoint).
+	 */
+	private int checkpointAtReconcile = Integer.parseInt(
+			textFileProperties.getProperty("checkpointAtReconcile", "-1"));
+
+	/** The directory a Checkpoint is written to (and read from when branches are forked). */
+	private String checkpointDirectory = textFileProperties.getProperty("checkpointDirectory", "checkpoint");
+
+	/**
+	 * How a run forked from a Checkpoint stores its agents. "COPY_ON_WRITE" shares the
+	 * checkpoint's agent states with every other fork until they change, "COPY" gives each fork
+	 * its own copy (allocated as agentStorage requests).
+	 */
+	private String forkSharing = textFileProperties.getProperty("forkSharing", "COPY_ON_WRITE");
+
+	/** The SimulationEventQueue each WorkerThread uses ("CALENDAR" or "TREE_MAP"). */
+	private String eventQueueType = textFileProperties.getProperty("eventQueue", "CALENDAR");
+
+	/**
+	 * RECONCILE engine -- "true" defers every contact between 2 places (even places on the same
+	 * thread) to the next reconcile point and draws each place's random numbers from a counter
+	 * based stream keyed by (runNumber, placeIndex), so a run gives identical results with any
+	 * number of threads. Checkpoints require it. "false" implements contacts between places on the
+	 * same thread at once and seeds each place's MersenneTwister with placeIndex + runNumber (the
+	 * results of earlier versions).
+	 */
+	private boolean threadInvariant = Boolean.parseBoolean(
+			textFileProperties.getProperty("threadInvariant", "false"));
+
+	/** True to print diagnostics every reconcile round (ie the number of contacts each thread imports). */
+	private boolean verbose = Boolean.parseBoolean(textFileProperties.getProperty("verbose", "false"));
 
 
 	public int runNumber() {
@@ -117,4 +222,107 @@ public class SimulationProperties {
 	public LengthOfTime reconcileEventFreq() {
 		return reconcileEventFrequency;
 	}
+
+
+	public String eventQueueType() {
+		return eventQueueType;
+	}
+
+
+	public boolean threadInvariant() {
+		return threadInvariant;
+	}
+
+
+	public boolean verbose() {
+		return verbose;
+	}
+
+
+	public String engineType() {
+		return engineType;
+	}
+
+
+	public LengthOfTime optimismWindow() {
+		return optimismWindow;
+	}
+
+
+	public String threadOwnership() {
+		return threadOwnership;
+	}
+
+
+	public String loadBalancing() {
+		return loadBalancing;
+	}
+
+
+	public String interactionKernel() {
+		return interactionKernel;
+	}
+
+
+	public double kernelOpeningAngle() {
+		return kernelOpeningAngle;
+	}
+
+
+	public int kernelFarGridSize() {
+		return kernelFarGridSize;
+	}
+
+
+	public String agentGroups() {
+		return agentGroups;
+	}
+
+
+	public String agentStorage() {
+		return agentStorage;
+	}
+
+
+	public int ensembleSize() {
+		return ensembleSize;
+	}
+
+
+	public int threadsPerReplicate() {
+		return threadsPerReplicate;
+	}
+
+
+	public int checkpointAtReconcile() {
+		return checkpointAtReconcile;
+	}
+
+
+	public String checkpointDirectory() {
+		return checkpointDirectory;
+	}
+
+
+	public String forkSharing() {
+		return forkSharing;
+	}
+
+
+	/**
+	 * @return - A copy of these properties for one replicate of an ensemble (the copy is
+	 * independent -- changing it does not change these properties). Replicates never write a
+	 * Checkpoint (they would all write to the same directory).
+	 */
+	public SimulationProperties forReplicate(int runNumber, int numThreads) {
+		try {
+			SimulationProperties copy = (SimulationProperties) this.clone();
+			copy.runNumber = runNumber;
+			copy.numThreads = numThreads;
+			copy.checkpointAtReconcile = -1;
+			return copy;
+		} catch (CloneNotSupportedException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
 }
@@ -0,0 +1,147 @@
+package core;
+
+
+import java.util.ArrayDeque;
+
+
+/**
+ * A StateJournal supports the OPTIMISTIC engine by recording how to undo every state change a
+ * WorkerThread makes while it implements events speculatively (incremental state saving).
+ *
+ * The journal is a stack of Entries grouped by the event that produced them. Rolling back to a
+ * tick undoes (newest first) every entry made by events that occurred at or after that tick.
+ * Entries made by events that occurred before the Global Virtual Time (GVT) can never be undone,
+ * therefore those entries are discarded ("fossil collected") whenever GVT advances.
+ *
+ * A StateJournal is only ever accessed by the WorkerThread that owns it.
+ */
+public class StateJournal {
+
+	/** A single reversible state change. */
+	public abstract static class Entry {
+
+		/** Reverse the state change this Entry recorded. */
+		protected abstract void undo();
+	}
+
+	/** The tick of each journaled event and the sequence number of its first Entry. */
+	private static class EventMark {
+
+		final int tick;
+
+		final long firstEntrySeq;
+
+
+		EventMark(int tick, long firstEntrySeq) {
+			this.tick = tick;
+			this.firstEntrySeq = firstEntrySeq;
+		}
+	}
+
+	/** The Entries that can still be undone (oldest first). */
+	private final ArrayDeque<Entry> entries;
+
+	/** One EventMark per journaled event (oldest first, ticks are non-decreasing). */
+	private final ArrayDeque<EventMark> marks;
+
+	/** The sequence number of the oldest Entry in entries. */
+	private long firstSeq;
+
+	/** True while an event is being implemented (only then are Entries recorded). */
+	private boolean isRecording;
+
+
+	StateJournal() {
+		this.entries = new ArrayDeque<>();
+		this.marks = new ArrayDeque<>();
+		this.firstSeq = 0;
+		this.isRecording = false;
+	}
+
+
+	/** Start journaling the state changes of an event that occurs at the given tick. */
+	void beginEvent(int tick) {
+
+		if (!marks.isEmpty() && marks.peekLast().tick > tick) {
+			throw new IllegalStateException(
+					"Events must be journaled in order :: " + tick + " < " + marks.peekLast().tick);
+		}
+
+		marks.addLast(new EventMark(tick, nextSeq()));
+		isRecording = true;
+	}
+
+
+	/** Stop journaling (the current event is complete). */
+	void endEvent() {
+		isRecording = false;
+	}
+
+
+	/** @return - True if state changes are currently being journaled. */
+	public boolean isRecording() {
+		return isRecording;
+	}
+
+
+	/** Record a state change made by the event currently being implemented. */
+	public void record(Entry entry) {
+		if (isRecording) {
+			entries.addLast(entry);
+		}
+	}
+
+
+	/** @return - The sequence number the next recorded Entry will receive. */
+	long nextSeq() {
+		return firstSeq + entries.size();
+	}
+
+
+	/** @return - The tick of the last journaled event (or Integer.MIN_VALUE if there is none). */
+	int lastTick() {
+		return (marks.isEmpty()) ? Integer.MIN_VALUE : marks.peekLast().tick;
+	}
+
+
+	/**
+	 * Undo every journaled event that occurred at or after the given tick.
+	 *
+	 * @return - The number of events that were undone.
+	 */
+	int rollbackTo(int tick) {
+
+		int numUndone = 0;
+
+		while (!marks.isEmpty() && marks.peekLast().tick >= tick) {
+
+			EventMark mark = marks.pollLast();
+			while (nextSeq() > mark.firstEntrySeq) {
+				entries.pollLast().undo();
+			}
+			numUndone++;
+		}
+
+		return numUndone;
+	}
+
+
+	/** Discard every Entry made by events that occurred before gvt (they are now committed). */
+	void fossilCollect(int gvt) {
+
+		while (!marks.isEmpty() && marks.peekFirst().tick < gvt) {
+			marks.pollFirst();
+			long keepFrom = (marks.isEmpty()) ? nextSeq() : marks.peekFirst().firstEntrySeq;
+			while (firstSeq < keepFrom) {
+				entries.pollFirst();
+				firstSeq++;
+			}
+		}
+	}
+
+
+	/** @return - The number of Entries that can still be undone. */
+	public int size() {
+		return entries.size();
+	}
+}
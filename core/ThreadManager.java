@@ -1,16 +1,23 @@
 package core;
 
 
-import model.events.ReconcileEvent;
+import model.disease.Diseases;
+import model.events.SimulationEvent;
 import model.people.DeployablePopulation;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import model.gui.DefaultPlaceColorer;
 import model.gui.PlaceColorer;
-import util.Parallelizer;
+import time.LengthOfTime;
+import time.TimeStamps;
+import util.PinnedThreadPool;
 
 
 /**
@@ -26,29 +33,141 @@ public class ThreadManager {
 	/** The Properties that govern this model. */
 	private final SimulationProperties props;
 
-	/** The population this Model will simulate. */
+	/** The population this Model will simulate (it may be shared with other model runs). */
 	public final DeployablePopulation population;
 
+	/**
+	 * threadOwners[i] = The index of the thread that owns ModelPlace i. This array belongs to this
+	 * run (not to the population), it changes when places migrate.
+	 */
+	final int[] threadOwners;
+
 	/** The threads used to execute the model. */
 	private final WorkerThread[] threads;
 
 	/** Save the number of threads to increase code readability. */
 	private final int numThreads;
 
+	/**
+	 * The long-lived pool that executes every parallel phase of the model. Pool thread i always
+	 * does the work of WorkerThread i.
+	 */
+	private final PinnedThreadPool pool;
+
+	/** Phase 1 -- simulateJobs[i] processes thread i until it reaches a ReconcileEvent. */
+	private final Runnable[] simulateJobs;
+
+	/** Phase 2 -- exchangeJobs[i] imports the OffThreadContactEvents destined for thread i. */
+	private final Runnable[] exchangeJobs;
+
+	/** Phase 3 -- advanceJobs[i] schedules the next ReconcileEvent on thread i. */
+	private final Runnable[] advanceJobs;
+
+	/** CONSERVATIVE engine -- conservativeJobs[i] runs thread i until a stop is requested. */
+	private final Runnable[] conservativeJobs;
+
+	/**
+	 * CONSERVATIVE engine -- The number of ticks between an exposure and the earliest contact the
+	 * exposed agent can make (the minimum latent period of the disease).
+	 */
+	private final int lookaheadTicks;
+
+	/** OPTIMISTIC engine -- optimisticJobs[i] runs thread i until a stop is requested. */
+	private final Runnable[] optimisticJobs;
+
+	/** How often (in milliseconds) the CONSERVATIVE and OPTIMISTIC engines check for termination. */
+	private static final long MONITOR_INTERVAL_MS = 100;
+
+	/**
+	 * OPTIMISTIC engine -- A new Global Virtual Time (GVT) computation begins each time this
+	 * number increases. Each WorkerThread reports exactly once per epoch.
+	 */
+	private volatile int gvtEpoch;
+
+	/** OPTIMISTIC engine -- The number of WorkerThreads that have not reported this epoch. */
+	private final AtomicInteger gvtReportsPending;
+
+	/** OPTIMISTIC engine -- The local minimum each WorkerThread reported this epoch. */
+	private final int[] localMinimums;
+
+	/** OPTIMISTIC engine -- True if a WorkerThread reported it had nothing left to do. */
+	private final boolean[] idleReports;
+
+	/** OPTIMISTIC engine -- No WorkerThread will ever roll back to a tick before this value. */
+	private volatile int gvt;
+
+	/** Places migrate when the busiest thread's load exceeds this multiple of the mean load. */
+	private static final double MIGRATION_THRESHOLD = 1.2;
+
+	/** The maximum number of ModelPlaces migrated at a single reconcile point. */
+	private static final int MAX_MIGRATIONS_PER_ROUND = 16;
+
 	/** The current Reconcile Number. */
 	private int recNum;
 
-	private boolean paused;
+	/** The Checkpoint this run resumes from (null if the run starts from day 0). */
+	private final Checkpoint restoredFrom;
+
+	/** The directory of a Checkpoint requested by requestCheckpoint (null if none is pending). */
+	private final AtomicReference<File> requestedCheckpoint;
+
+	private volatile boolean paused;
+
+	/** CONSERVATIVE/OPTIMISTIC engines -- set to true when the WorkerThreads should stop. */
+	private volatile boolean stopRequested;
+
+
+	/**
+	 * @param gsam - The model this manager runs
+	 * @param population - The population to simulate (it is only read, never modified)
+	 */
+	public ThreadManager(InteractiveLargeScaleModel gsam, DeployablePopulation population) {
+		this(gsam, population, null);
+	}
 
 
-	public ThreadManager(InteractiveLargeScaleModel gsam) {
+	/**
+	 * @param gsam - The model this manager runs
+	 * @param population - The population to simulate (it is only read, never modified)
+	 * @param restoredFrom - The Checkpoint the run resumes from (null to start from day 0)
+	 */
+	ThreadManager(InteractiveLargeScaleModel gsam, DeployablePopulation population,
+			Checkpoint restoredFrom) {
 		this.gsam = gsam;
 		this.props = gsam.simProps();
 
-		this.population = DeployablePopulation.loadPopulation(props);
+		this.population = population;
 		this.numThreads = props.numThreads();
+		this.threadOwners = population.assignThreadOwners(numThreads, props.threadOwnership());
 				
 		this.threads = createWorkerThreads();
+		this.pool = new PinnedThreadPool(numThreads, "WorkerThread");
+
+		this.simulateJobs = threads;
+		this.exchangeJobs = new Runnable[numThreads];
+		this.advanceJobs = new Runnable[numThreads];
+		this.conservativeJobs = new Runnable[numThreads];
+		this.optimisticJobs = new Runnable[numThreads];
+		for (int i = 0; i < numThreads; i++) {
+			exchangeJobs[i] = new ExchangeOTCEJob(threads[i]);
+			advanceJobs[i] = new AdvanceReconcileJob(threads[i]);
+			conservativeJobs[i] = new ConservativeJob(threads[i]);
+			optimisticJobs[i] = new OptimisticJob(threads[i]);
+		}
+
+		this.gvtEpoch = 0;
+		this.gvtReportsPending = new AtomicInteger(0);
+		this.localMinimums = new int[numThreads];
+		this.idleReports = new boolean[numThreads];
+		this.gvt = 0;
+
+		LengthOfTime lookahead = Diseases.disease().minimumLatentPeriod();
+		this.lookaheadTicks = TimeStamps.initalTime().add(lookahead).asNumTicks();
+		this.stopRequested = false;
+
+		this.restoredFrom = restoredFrom;
+		this.recNum = (restoredFrom == null) ? 0 : restoredFrom.recNum();
+		this.requestedCheckpoint = new AtomicReference<>();
 
 		buildPlacesInParallel();
 		this.paused = false;
@@ -89,8 +208,7 @@ public class ThreadManager {
 		}
 		
 		logInstantly("Building ModelPlaces in parallel...please wait");
-		Parallelizer para = new Parallelizer(this.props.numThreads());
-		para.doWorkInParallel(jobs);
+		pool.doWorkInParallel(jobs);
 	}
 
 
@@ -106,6 +224,12 @@ public class ThreadManager {
 	}
 
 
+	/** @return - The Checkpoint this run resumes from (null if the run starts from day 0). */
+	Checkpoint restoredFrom() {
+		return restoredFrom;
+	}
+
+
 	/** @return - One of the DeployableThreadObjects running this model. */
 	WorkerThread getThread(int threadIndex) {
 		return this.threads[threadIndex];
@@ -141,21 +265,46 @@ public class ThreadManager {
 
 		System.out.println("Do all Initialization Here");
 
-		//initalize some sick agents
-		seedSickAgents();
+		String engine = props.engineType();
+		if (props.checkpointAtReconcile() >= 0 && !engine.equals("RECONCILE")) {
+			throw new IllegalArgumentException("Checkpoints require the RECONCILE engine :: " + engine);
+		}
 
-		runModel();
+		if (restoredFrom == null) {
+			//initalize some sick agents
+			seedSickAgents();
+		} else {
+			System.out.println("Resuming run " + restoredFrom.runNumber() + " from Reconcile Num :: "
+					+ recNum + " (" + restoredFrom.time() + ")");
+		}
+
+		if (engine.equals("RECONCILE")) {
+			runModel();
+		} else if (engine.equals("CONSERVATIVE")) {
+			runModelConservatively();
+		} else if (engine.equals("OPTIMISTIC")) {
+			runModelOptimistically();
+		} else {
+			throw new IllegalArgumentException("Unknown engine type :: " + engine);
+		}
 	}
 
 
 	private void runModel() {
-		while (!isFinished()) {
+
+		boolean finished = isFinished();
+
+		while (!finished) {
 			if (!paused) {
 				simulateUntilReconcileEvent();
 
 				if (getNumberOfQueuedOTCEWaiting() == 0) {
 					advanceReconcileNum();
+
+					//every exported contact has been implemented -- only now can the epidemic be over
+					finished = isFinished();
 				} else {
+					//the imported contacts are implemented by the next simulateUntilReconcileEvent
 					transmitOTCE();
 				}
 			}
@@ -168,43 +317,288 @@ public class ThreadManager {
 
 	/** Process each working thread until that thread reaches a ReconcileEvent. */
 	private void simulateUntilReconcileEvent() {
-
-		Parallelizer para = new Parallelizer(this.numThreads);
-		para.doWorkInParallel(threads);
+		pool.doWorkInParallel(simulateJobs);
 	}
 
 
 	/**
-	 * @return - The total number of OffThreadContactEvents that must be distributed. If this is
-	 * 0 it is appropriate to reset all ReconcileEvents.
+	 * Distribute the queued OffThreadContactEvents, then add a ReconcileEvent at each thread's
+	 * current time so the imported events are processed before the reconcile number advances.
 	 */
 	private void transmitOTCE() {
-		
-		class GetOffThreadContactEvents implements Runnable {
-			
-			private final WorkerThread thread;
-			
-			GetOffThreadContactEvents(WorkerThread thread) {
-				this.thread = thread;
+		pool.doWorkInParallel(exchangeJobs);
+	}
+
+
+	/** Phase 2 -- Import the OffThreadContactEvents destined for one thread. */
+	private static class ExchangeOTCEJob implements Runnable {
+
+		private final WorkerThread thread;
+
+
+		ExchangeOTCEJob(WorkerThread thread) {
+			this.thread = thread;
+		}
+
+
+		@Override
+		public void run() {
+			thread.retrieveOffThreadContactEventsFromOtherThreads();
+			thread.addReconcileEvent(thread.getCurrentTime());
+		}
+	}
+
+
+	/** Phase 3 -- Schedule the next ReconcileEvent on one thread. */
+	private static class AdvanceReconcileJob implements Runnable {
+
+		private final WorkerThread thread;
+
+
+		AdvanceReconcileJob(WorkerThread thread) {
+			this.thread = thread;
+		}
+
+
+		@Override
+		public void run() {
+			thread.addNextReconcileEvent();
+		}
+	}
+
+
+	/**
+	 * Run the model without global barriers. Each WorkerThread advances to
+	 * min(other threads' lower bounds) + lookahead (see WorkerThread.runConservatively), this
+	 * thread only monitors progress, updates the GUI and detects termination.
+	 */
+	private void runModelConservatively() {
+
+		if (lookaheadTicks <= 0) {
+			throw new IllegalStateException(
+					"The CONSERVATIVE engine requires a positive lookahead :: " + lookaheadTicks);
+		}
+
+		for (WorkerThread thread : threads) {
+			thread.publishProgress();
+		}
+
+		pool.startWork(conservativeJobs);
+
+		int lastDayReported = 0;
+		boolean quiescentLastScan = false;
+		long lastSent = -1;
+		long lastApplied = -1;
+
+		while (true) {
+			try {
+				Thread.sleep(MONITOR_INTERVAL_MS);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				break;
 			}
 
-			@Override
-			public void run() {
-				thread.retrieveOffThreadContactEventsFromOtherThreads();
+			int day = globalLowerBound() / LengthOfTime.TIME_STEPS_PER_DAY;
+			if (day > lastDayReported) {
+				lastDayReported = day;
+				System.out.println("\nAll threads have passed day :: " + day);
+				gsam.updateGUI();
+			}
+
+			/*
+			 * Four counter termination detection -- stop when 2 consecutive scans find no sick
+			 * agents and identical (and equal) totals of exported and implemented contacts.
+			 */
+			int numSick = 0;
+			long sent = 0;
+			long applied = 0;
+			for (WorkerThread thread : threads) {
+				numSick += thread.publishedNumSick();
+				sent += thread.publishedContactsSent();
+				applied += thread.publishedContactsApplied();
+			}
+
+			boolean quiescent = (numSick == 0 && sent == applied);
+			if (quiescent && quiescentLastScan && sent == lastSent && applied == lastApplied) {
+				break;
 			}
+			quiescentLastScan = quiescent;
+			lastSent = sent;
+			lastApplied = applied;
 		}
 
-		Runnable[] jobs = new Runnable[this.numThreads];
-		for (int i = 0; i < jobs.length; i++) {
-			jobs[i] = new GetOffThreadContactEvents(threads[i]);
+		stopRequested = true;
+		pool.awaitWork();
+
+		cleanUpAndClose();
+	}
+
+
+	/**
+	 * Run the model speculatively (Time Warp). Each WorkerThread runs ahead and rolls back when a
+	 * straggler arrives (see WorkerThread.runOptimistically). This thread repeatedly computes GVT
+	 * -- the WorkerThreads use it to discard committed journal entries -- and detects termination.
+	 *
+	 * GVT is computed with a shared-memory variant of Fujimoto's algorithm. When an epoch starts
+	 * every WorkerThread imports its pending records and then reports min(next event, smallest
+	 * tick sent since its previous report). Any record that was sent before a thread's previous
+	 * report has been imported by its destination before that destination reports.
+	 */
+	private void runModelOptimistically() {
+
+		int lastDayReported = 0;
+
+		gvtReportsPending.set(numThreads);
+		gvtEpoch = 1;
+
+		pool.startWork(optimisticJobs);
+
+		while (true) {
+			try {
+				Thread.sleep(MONITOR_INTERVAL_MS);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+
+			if (gvtReportsPending.get() > 0) {
+				continue;
+			}
+
+			//every thread has reported for this epoch
+			int min = Integer.MAX_VALUE;
+			boolean allIdle = true;
+			for (int i = 0; i < numThreads; i++) {
+				min = Math.min(min, localMinimums[i]);
+				allIdle &= idleReports[i];
+			}
+			gvt = min;
+
+			int day = min / LengthOfTime.TIME_STEPS_PER_DAY;
+			if (day > lastDayReported) {
+				lastDayReported = day;
+				System.out.println("\nGVT has passed day :: " + day);
+				gsam.updateGUI();
+			}
+
+			//no thread has anything to do and nothing was sent since the previous epoch
+			if (allIdle) {
+				break;
+			}
+
+			gvtReportsPending.set(numThreads);
+			gvtEpoch++;
 		}
-				
-		Parallelizer para = new Parallelizer(props.numThreads());
-		para.doWorkInParallel(jobs);
 
-		//add a Reconcilation Event, then unpause the threads
+		stopRequested = true;
+		pool.awaitWork();
+
+		cleanUpAndClose();
+	}
+
+
+	/** @return - The current GVT epoch (OPTIMISTIC engine). */
+	int gvtEpoch() {
+		return gvtEpoch;
+	}
+
+
+	/** @return - The most recently computed Global Virtual Time (OPTIMISTIC engine). */
+	int gvt() {
+		return gvt;
+	}
+
+
+	/**
+	 * Record a WorkerThread's contribution to the current GVT computation.
+	 *
+	 * @param threadIndex - The index of the reporting thread
+	 * @param localMinimum - No future rollback on that thread will go before this tick
+	 * @param isIdle - True if the thread has no infections and sent nothing since its last report
+	 */
+	void reportLocalMinimum(int threadIndex, int localMinimum, boolean isIdle) {
+		localMinimums[threadIndex] = localMinimum;
+		idleReports[threadIndex] = isIdle;
+		gvtReportsPending.decrementAndGet();	//publishes the writes above
+	}
+
+
+	/** @return - The smallest lowerBoundOnSends of all the WorkerThreads. */
+	private int globalLowerBound() {
+		int min = Integer.MAX_VALUE;
+		for (WorkerThread thread : threads) {
+			min = Math.min(min, thread.lowerBoundOnSends());
+		}
+		return min;
+	}
+
+
+	/**
+	 * @param threadIndex - The index of the thread requesting its horizon
+	 *
+	 * @return - The tick before which the given thread can safely implement events. This is the
+	 * smallest lowerBoundOnSends of the OTHER threads plus the lookahead.
+	 */
+	int computeHorizon(int threadIndex) {
+
+		int min = Integer.MAX_VALUE;
 		for (int i = 0; i < threads.length; i++) {
-			threads[i].addReconcileEvent(threads[i].getCurrentTime());
+			if (i != threadIndex) {
+				min = Math.min(min, threads[i].lowerBoundOnSends());
+			}
+		}
+
+		if (min > Integer.MAX_VALUE - lookaheadTicks) {
+			return Integer.MAX_VALUE;
+		}
+		return min + lookaheadTicks;
+	}
+
+
+	/** @return - True if the WorkerThreads should stop processing (CONSERVATIVE/OPTIMISTIC). */
+	boolean stopRequested() {
+		return stopRequested;
+	}
+
+
+	/** @return - True if the model is paused. */
+	boolean isPaused() {
+		return paused;
+	}
+
+
+	/** CONSERVATIVE engine -- Run one thread until a stop is requested. */
+	private static class ConservativeJob implements Runnable {
+
+		private final WorkerThread thread;
+
+
+		ConservativeJob(WorkerThread thread) {
+			this.thread = thread;
+		}
+
+
+		@Override
+		public void run() {
+			thread.runConservatively();
+		}
+	}
+
+
+	/** OPTIMISTIC engine -- Run one thread until a stop is requested. */
+	private static class OptimisticJob implements Runnable {
+
+		private final WorkerThread thread;
+
+
+		OptimisticJob(WorkerThread thread) {
+			this.thread = thread;
+		}
+
+
+		@Override
+		public void run() {
+			thread.runOptimistically();
 		}
 	}
 
@@ -226,7 +620,7 @@ public class ThreadManager {
 		int numInitialCase = props.numInitialCases();
 
 		for (int i = 0; i < numInitialCase; i++) {
-			ModelPlace biggestPlace = threads[population.threadOwners[biggestIndex]].getPlace(biggestIndex);
+			ModelPlace biggestPlace = threads[threadOwners[biggestIndex]].getPlace(biggestIndex);
 			biggestPlace.locals().exposeRandomAdult();
 		}
 	}
@@ -234,18 +628,230 @@ public class ThreadManager {
 
 	private void advanceReconcileNum() {
 
+		//no thread has a ReconcileEvent or an undelivered contact -- a safe point to migrate
+		String balancing = props.loadBalancing();
+		if (balancing.equals("MIGRATE")) {
+			rebalance();
+		} else if (!balancing.equals("NONE")) {
+			throw new IllegalArgumentException("Unknown load balancing :: " + balancing);
+		}
+
 		//add a Reconcilation Event
 		this.recNum++;
 		System.out.println("\nNow at Reconcile Num :: " + recNum);
-		for (int i = 0; i < threads.length; i++) {
-			threads[i].addReconcileEvent(
-					threads[i].getCurrentTime().add(ReconcileEvent.getFrequency()));
+
+		File checkpointDirectory = requestedCheckpoint.getAndSet(null);
+		if (checkpointDirectory == null && recNum == props.checkpointAtReconcile()) {
+			checkpointDirectory = new File(props.checkpointDirectory());
+		}
+		if (checkpointDirectory != null) {
+			writeCheckpoint(checkpointDirectory);
 		}
 
+		pool.doWorkInParallel(advanceJobs);
+
 		gsam.updateGUI();
 	}
 
 
+	/**
+	 * Save the run at the next reconcile point (see Checkpoint). The run continues afterwards.
+	 *
+	 * @param directory - The directory the Checkpoint is written to (an older Checkpoint in this
+	 * directory is replaced)
+	 */
+	public void requestCheckpoint(File directory) {
+		if (!props.engineType().equals("RECONCILE")) {
+			throw new IllegalStateException(
+					"Checkpoints require the RECONCILE engine :: " + props.engineType());
+		}
+		if (!props.threadInvariant()) {
+			throw new IllegalStateException("Checkpoints require threadInvariant=true");
+		}
+		requestedCheckpoint.set(directory);
+	}
+
+
+	/**
+	 * Write a Checkpoint of the run (all threads are stopped at a reconcile point). Each thread
+	 * saves and writes its own places in parallel, the manifest is written last. A Checkpoint that
+	 * cannot be written is reported and the run continues.
+	 */
+	private void writeCheckpoint(File directory) {
+
+		long startTime = System.currentTimeMillis();
+
+		if (!props.threadInvariant()) {
+			System.out.println("The checkpoint could not be written :: "
+					+ "checkpoints require threadInvariant=true");
+			return;
+		}
+
+		int tick = threads[0].getCurrentTime().asNumTicks();
+		for (WorkerThread thread : threads) {
+			if (thread.getCurrentTime().asNumTicks() != tick) {
+				System.out.println("The checkpoint could not be written :: "
+						+ "the threads are not at the same reconcile point");
+				return;
+			}
+		}
+		if (getNumberOfQueuedOTCEWaiting() != 0) {
+			System.out.println("The checkpoint could not be written :: "
+					+ "contacts are in flight at a reconcile point");
+			return;
+		}
+
+		try {
+			Checkpoint.prepareDirectory(directory);
+		} catch (IOException ex) {
+			System.out.println("The checkpoint could not be written :: " + ex.getMessage());
+			return;
+		}
+
+		CheckpointJob[] jobs = new CheckpointJob[numThreads];
+		for (int i = 0; i < numThreads; i++) {
+			jobs[i] = new CheckpointJob(threads[i], directory);
+		}
+		pool.doWorkInParallel(jobs);
+
+		Checkpoint.Place[] places = new Checkpoint.Place[population.numPlaces];
+		for (CheckpointJob job : jobs) {
+			if (job.failure != null) {
+				System.out.println("The checkpoint could not be written :: " + job.failure.getMessage());
+				return;
+			}
+			for (Checkpoint.Place place : job.saved) {
+				places[place.placeIndex] = place;
+			}
+		}
+
+		try {
+			new Checkpoint(gsam.getRunNumber(), population.identity(), recNum, tick, places)
+					.writeManifest(directory, numThreads);
+		} catch (IOException ex) {
+			System.out.println("The checkpoint could not be written :: " + ex.getMessage());
+			return;
+		}
+
+		System.out.println("Checkpoint written to " + directory + " in "
+				+ (System.currentTimeMillis() - startTime) + " ms");
+	}
+
+
+	/** Save the places of one thread and write them to that thread's part of a Checkpoint. */
+	private static class CheckpointJob implements Runnable {
+
+		private final WorkerThread thread;
+
+		private final File directory;
+
+		private Checkpoint.Place[] saved;
+
+		/** The IOException or IllegalStateException that stopped this job (null if none did). */
+		private Exception failure;
+
+
+		CheckpointJob(WorkerThread thread, File directory) {
+			this.thread = thread;
+			this.directory = directory;
+		}
+
+
+		@Override
+		public void run() {
+			try {
+				saved = thread.checkpointPlaces();
+				Checkpoint.writePart(directory, thread.threadIDNum(), saved);
+			} catch (IOException | IllegalStateException ex) {
+				failure = ex;
+			}
+		}
+	}
+
+
+	/**
+	 * Migrate ModelPlaces from the busiest threads to the idlest threads. Every piece of state
+	 * that belongs to a place (its AgentGroup, RNG, queued AgentEvents and LogUpdateEvent) moves
+	 * with it. Events keep their times and idNums, so they are implemented in the same order on
+	 * the new thread.<p>
+	 *
+	 * The cost of a place is estimated as (events implemented at the place) * (the average time
+	 * its current thread spent per event). Places are moved one at a time from the thread with the
+	 * largest estimated load to the thread with the smallest. Each move must shrink the gap
+	 * between the 2 threads.
+	 */
+	private void rebalance() {
+
+		double[] load = new double[numThreads];
+		double totalLoad = 0;
+		for (int i = 0; i < numThreads; i++) {
+			load[i] = threads[i].nanosSinceRebalance();
+			totalLoad += load[i];
+		}
+		double meanLoad = totalLoad / numThreads;
+
+		boolean[] releasedPlaces = new boolean[numThreads];
+		int numMoves = 0;
+		while (numMoves < MAX_MIGRATIONS_PER_ROUND) {
+
+			int hot = 0;
+			int cold = 0;
+			for (int i = 1; i < numThreads; i++) {
+				hot = (load[i] > load[hot]) ? i : hot;
+				cold = (load[i] < load[cold]) ? i : cold;
+			}
+			if (load[hot] <= MIGRATION_THRESHOLD * meanLoad || threads[hot].numPlaces() <= 1) {
+				break;
+			}
+
+			double nanosPerEvent = threads[hot].nanosSinceRebalance()
+					/ (double) Math.max(1, threads[hot].eventsSinceRebalance());
+			double gap = load[hot] - load[cold];
+
+			//the place whose cost is closest to half the gap
+			ModelPlace best = null;
+			double bestCost = 0;
+			for (ModelPlace place : threads[hot]) {
+				double cost = place.eventsSinceRebalance * nanosPerEvent;
+				if (cost > 0 && cost < gap
+						&& (best == null || Math.abs(gap / 2 - cost) < Math.abs(gap / 2 - bestCost))) {
+					best = place;
+					bestCost = cost;
+				}
+			}
+			if (best == null) {
+				break;
+			}
+
+			threads[hot].releasePlace(best);
+			threads[cold].adoptPlace(best);
+			releasedPlaces[hot] = true;
+			best.eventsSinceRebalance = 0;
+			load[hot] -= bestCost;
+			load[cold] += bestCost;
+			numMoves++;
+
+			if (props.verbose()) {
+				System.out.println("Migrating place :: " + best.placeIDNum()
+						+ " from thread " + hot + " to thread " + cold);
+			}
+		}
+
+		//move the queued events of each migrated place to its new thread
+		for (int i = 0; i < numThreads; i++) {
+			if (releasedPlaces[i]) {
+				for (SimulationEvent e : threads[i].removeEventsOfDepartedPlaces()) {
+					e.getPlace().thread().addEvent(e);
+				}
+			}
+		}
+
+		for (WorkerThread thread : threads) {
+			thread.resetLoadMeasurements();
+		}
+	}
+
+
 	/** Examine the threads and determine if all processing is complete. */
 	private boolean isFinished() {
 
@@ -384,5 +990,6 @@ public class ThreadManager {
 	private void cleanUpAndClose() {
 		//@todo --
 		System.out.println("Clean Up And Close");
+		pool.shutdown();
 	}
 }
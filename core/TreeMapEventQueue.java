@@ -0,0 +1,53 @@
+package core;
+
+
+import java.util.TreeMap;
+import model.events.SimulationEvent;
+
+
+/**
+ * The original SimulationEventQueue -- a red-black tree. Every operation is O(log n) and every
+ * insert allocates an Entry object. This implementation is kept as a reference for the
+ * CalendarEventQueue.
+ */
+class TreeMapEventQueue implements SimulationEventQueue {
+
+	/** The events, keyed by themselves so that SimulationEvent.compareTo defines the order. */
+	private final TreeMap<SimulationEvent, SimulationEvent> tree = new TreeMap<>();
+
+
+	@Override
+	public void add(SimulationEvent e) {
+		tree.put(e, e);
+	}
+
+
+	@Override
+	public SimulationEvent poll() {
+		return (tree.isEmpty()) ? null : tree.pollFirstEntry().getValue();
+	}
+
+
+	@Override
+	public SimulationEvent peek() {
+		return (tree.isEmpty()) ? null : tree.firstKey();
+	}
+
+
+	@Override
+	public boolean remove(SimulationEvent e) {
+		return (tree.remove(e) != null);
+	}
+
+
+	@Override
+	public int size() {
+		return tree.size();
+	}
+
+
+	@Override
+	public boolean isEmpty() {
+		return tree.isEmpty();
+	}
+}
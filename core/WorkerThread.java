@@ -1,18 +1,22 @@
 package core;
 
 
+import cern.jet.random.engine.MersenneTwister;
+import cern.jet.random.engine.RandomEngine;
 import model.events.AgentEvent;
 import model.events.OffThreadContactEvent;
 import model.events.ReconcileEvent;
 import model.events.SimulationEvent;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.TreeMap;
-import model.ContactInfo;
-import model.events.RecordOfOffThreadContactEvent;
+import model.people.AgentStorage;
 import time.TimeStamp;
 import time.TimeStamps;
+import util.LongPairList;
+import util.OffHeapArena;
+import util.SpscLongPairQueue;
 
 
 /**
@@ -34,16 +38,94 @@ public class WorkerThread implements Runnable, Iterable<ModelPlace> {
 	private TimeStamp currentTime = TimeStamps.initalTime();
 
 	/** The queue of events that need processing. */
-	private TreeMap<SimulationEvent, SimulationEvent> eventQueue;
+	private SimulationEventQueue eventQueue;
+
+	/** The off heap memory of the agents built by this thread (null if agents live on the heap). */
+	private final OffHeapArena agentArena;
+
+	/**
+	 * outboundContacts[i] = The packed OffThreadContactEvents that need to be sent to thread i.
+	 * This thread is the only producer of these queues, thread i is the only consumer.
+	 */
+	private final SpscLongPairQueue[] outboundContacts;
+
+	/**
+	 * The packed records drained from the other threads. They are sorted before they become
+	 * OffThreadContactEvents, so the events get their idNums in an order that does not depend on
+	 * which thread sent each record (or on the order the threads are drained).
+	 */
+	private final LongPairList importedContacts;
+
+	/**
+	 * RECONCILE engine with threadInvariant -- True if contacts between 2 places on this thread
+	 * are sent through the queues like any other contact. The contact is then implemented at the
+	 * same point of the simulation no matter how the places are divided among threads, so a run
+	 * gives identical results with any number of threads.
+	 */
+	private final boolean deferLocalContacts;
+
+	/**
+	 * CONSERVATIVE engine only -- No contact this thread exports in the future will have a tick
+	 * smaller than this value. Other threads read this bound to compute their horizon.
+	 */
+	private volatile int lowerBoundOnSends;
+
+	/** The number of OffThreadContactEvents this thread has exported (this thread only). */
+	private long numContactsSent;
+
+	/** The number of OffThreadContactEvents this thread has implemented (this thread only). */
+	private long numContactsApplied;
+
+	/** CONSERVATIVE engine only -- The last published value of numContactsSent. */
+	private volatile long publishedContactsSent;
+
+	/** CONSERVATIVE engine only -- The last published value of numContactsApplied. */
+	private volatile long publishedContactsApplied;
+
+	/** CONSERVATIVE engine only -- The last published number of sick agents. */
+	private volatile int publishedNumSick;
+
+	/**
+	 * RECONCILE and CONSERVATIVE engines -- OffThreadContactEvents that have been implemented and
+	 * can be reused for imported contacts (the OPTIMISTIC engine keeps its events for rollbacks,
+	 * so it never adds any).
+	 */
+	private final ArrayList<OffThreadContactEvent> spareContactEvents;
+
+	/** Records how to undo speculative state changes (only used by the OPTIMISTIC engine). */
+	private final StateJournal journal;
+
+	/** The number of events this thread has started to implement. */
+	private long eventSerial;
+
+	/** OPTIMISTIC engine -- Turns packed records (and anti-messages) into queue changes. */
+	private final SpscLongPairQueue.RecordHandler optimisticImporter;
 
 	/**
-	 * offThreadEventQueues.get(i) = The seeds of OffThreadContactEvents that need to be sent to
-	 * thread i.
+	 * OPTIMISTIC engine -- receivedContacts.get(tick) = The imported OffThreadContactEvents that
+	 * occur at tick (so anti-messages can find them). Ticks before GVT are discarded.
 	 */
-	private ArrayList<ArrayDeque<RecordOfOffThreadContactEvent>> queuesOfOffThreadEventSeeds;
+	private final HashMap<Integer, ArrayList<OffThreadContactEvent>> receivedContacts;
+
+	/** OPTIMISTIC engine -- The smallest tick of any record sent since the last GVT report. */
+	private int sendMin = Integer.MAX_VALUE;
+
+	/** OPTIMISTIC engine -- The last GVT epoch this thread reported a local minimum for. */
+	private int lastReportedEpoch = 0;
+
+	/** OPTIMISTIC engine -- The GVT of the last fossil collection. */
+	private int lastFossilGvt = 0;
+
+	/** The number of events implemented by run() since the threads were last rebalanced. */
+	private long eventsSinceRebalance;
 
-	/** This field is used to assign each SimulationEvent a unique idNum used to break ties. */
-	private int nextEventID;
+	/** The time (in nanoseconds) spent inside run() since the threads were last rebalanced. */
+	private long nanosSinceRebalance;
+
+	/** OPTIMISTIC engine -- The number of rollbacks and the number of events they undid. */
+	private long numRollbacks;
+
+	private long numEventsRolledBack;
 
 
 	/** Create a WorkerThread (Should make one per CPU). */
@@ -53,24 +135,149 @@ public class WorkerThread implements Runnable, Iterable<ModelPlace> {
 		this.threadIndex = threadIndex;
 
 		this.places = new TreeMap<>();
-		this.eventQueue = new TreeMap<>();
+		this.eventQueue = makeEventQueue(threadManager.getModel().simProps().eventQueueType());
+		this.agentArena = makeAgentArena(threadManager.getModel().simProps().agentStorage());
+
+		this.outboundContacts = new SpscLongPairQueue[threadManager.numThreads()];
+		for (int i = 0; i < outboundContacts.length; i++) {
+			outboundContacts[i] = new SpscLongPairQueue();
+		}
+
+		this.importedContacts = new LongPairList();
+		this.deferLocalContacts = threadManager.getModel().simProps().engineType().equals("RECONCILE")
+				&& threadManager.getModel().simProps().threadInvariant();
+
+		this.spareContactEvents = new ArrayList<>();
+		this.journal = new StateJournal();
+		this.receivedContacts = new HashMap<>();
+		this.optimisticImporter = new SpscLongPairQueue.RecordHandler() {
+			@Override
+			public void handle(long timeAndPlace, long contact) {
+				importSpeculatively(timeAndPlace, contact);
+			}
+		};
+	}
+
 
-		this.queuesOfOffThreadEventSeeds = new ArrayList<>(threadManager.numThreads());
-		for (int i = 0; i < threadManager.numThreads(); i++) {
-			queuesOfOffThreadEventSeeds.add(i, new ArrayDeque<RecordOfOffThreadContactEvent>());
+	/**
+	 * @param queueType - The type of SimulationEventQueue requested in the properties file
+	 *
+	 * @return - An empty SimulationEventQueue of the requested type
+	 */
+	private static SimulationEventQueue makeEventQueue(String queueType) {
+
+		if (queueType.equals("CALENDAR")) {
+			return new CalendarEventQueue();
+		}
+		if (queueType.equals("TREE_MAP")) {
+			return new TreeMapEventQueue();
 		}
+
+		throw new IllegalArgumentException("Unknown event queue type :: " + queueType);
 	}
 
 
-	/** Prompt this thread to create all the ModelPlaces this WorkerThread is responsible for. */
+	/**
+	 * @param agentStorage - The agent storage requested in the properties file
+	 *
+	 * @return - The arena agents are allocated from (null if agents live on the heap)
+	 */
+	private static OffHeapArena makeAgentArena(String agentStorage) {
+
+		if (agentStorage.equals("HEAP")) {
+			return null;
+		}
+		if (agentStorage.equals("OFF_HEAP")) {
+			return new OffHeapArena();
+		}
+
+		throw new IllegalArgumentException("Unknown agent storage :: " + agentStorage);
+	}
+
+
+	/**
+	 * @param numAgents - The number of agents in an AgentGroup being built by (or for) this thread
+	 *
+	 * @return - Storage for the agents (from this thread's arena if agents live off the heap)
+	 */
+	public AgentStorage allocateAgents(int numAgents) {
+
+		if (agentArena == null) {
+			return AgentStorage.onHeap(numAgents);
+		}
+		return AgentStorage.inBuffer(
+				agentArena.allocate(numAgents * AgentStorage.bytesPerAgent(numAgents)),
+				numAgents);
+	}
+
+
+	/**
+	 * Prompt this thread to create all the ModelPlaces this WorkerThread is responsible for (or to
+	 * restore them when the run resumes from a Checkpoint).
+	 */
 	public void buildThisThreadsPlaces() {
 
+		Checkpoint checkpoint = manager.restoredFrom();
+
 		//add all places
 		for (int i = 0; i < manager.population.numPlaces; i++) {
-			if (threadIndex == manager.population.threadOwners[i]) {
-				buildAndAddPlace(i);
+			if (threadIndex == manager.threadOwners[i]) {
+				if (checkpoint == null) {
+					buildAndAddPlace(i);
+				} else {
+					restorePlace(checkpoint.place(i));
+				}
 			}
 		}
+
+		//resume at the reconcile point where the run was saved
+		if (checkpoint != null && !places.isEmpty()) {
+			currentTime = checkpoint.time();
+			addNextReconcileEvent();
+		}
+	}
+
+
+	/** Add a ModelPlace saved in a Checkpoint to this Thread's processing workload. */
+	private void restorePlace(Checkpoint.Place saved) {
+
+		long rngKey = CounterRandomEngine.streamKey(
+				this.manager.getModel().getRunNumber(),
+				saved.placeIndex);
+
+		ModelPlace place = new ModelPlace(
+				this,
+				rngKey,
+				manager.population.getSeed(saved.placeIndex),
+				saved);
+
+		places.put(saved.placeIndex, place);
+	}
+
+
+	/**
+	 * Copy the state of every place on this thread (see Checkpoint). The thread must be stopped at
+	 * a reconcile point.
+	 *
+	 * @throws IllegalStateException - If an event other than a LogUpdateEvent or an AgentEvent is
+	 * queued (ie the thread is not at a reconcile point)
+	 */
+	Checkpoint.Place[] checkpointPlaces() {
+
+		Checkpoint.Place[] saved = new Checkpoint.Place[places.size()];
+		int numEvents = 0;
+		int k = 0;
+		for (ModelPlace place : places.values()) {
+			saved[k] = place.checkpoint();
+			numEvents += 1 + saved[k].agents.numActiveAgents();
+			k++;
+		}
+
+		if (numEvents != eventQueue.size()) {
+			throw new IllegalStateException("Thread " + threadIndex + " has " + eventQueue.size()
+					+ " queued events, a checkpoint accounts for " + numEvents);
+		}
+		return saved;
 	}
 
 
@@ -86,26 +293,42 @@ public class WorkerThread implements Runnable, Iterable<ModelPlace> {
 //				"Creating place :: " + placeIndex
 //				+ " :: on thread :: " + threadIndex);
 
-		int rngSeed = placeIndex + this.manager.getModel().getRunNumber();
-
 		ModelPlace place = new ModelPlace(
 				this,
 				placeIndex,
-				rngSeed,
-				manager.population.extraction.getSeed(placeIndex)); //<-- @todo - fix this train
+				makePlaceRand(placeIndex),
+				manager.population.getSeed(placeIndex));
 
 		places.put(placeIndex, place);
 
 		//seed the reconcile Events when this WorkerThread gets its first ModelPlace
 		if (places.size() == 1) {
 			addEvent(new ReconcileEvent(
-					TimeStamps.initalTime().add(ReconcileEvent.getFrequency()),
+					TimeStamps.initalTime().add(manager.getModel().simProps().reconcileEventFreq()),
 					place));
 
 		}
 	}
 
 
+	/**
+	 * @return - A new RNG for a place. The stream of a CounterRandomEngine is keyed by the run and
+	 * the place (not by the thread that owns it) and its draws can be counted and rewound, so it
+	 * is used when threadInvariant is requested and by the OPTIMISTIC engine. Otherwise the place
+	 * gets a MersenneTwister seeded with placeIndex + runNumber.
+	 */
+	private RandomEngine makePlaceRand(int placeIndex) {
+
+		SimulationProperties props = manager.getModel().simProps();
+		int runNumber = manager.getModel().getRunNumber();
+
+		if (props.threadInvariant() || props.engineType().equals("OPTIMISTIC")) {
+			return new CounterRandomEngine(CounterRandomEngine.streamKey(runNumber, placeIndex));
+		}
+		return new MersenneTwister(placeIndex + runNumber);
+	}
+
+
 	/** @return - The ThreadManager that manages all the threads. */
 	public ThreadManager manager() {
 		return this.manager;
@@ -124,38 +347,57 @@ public class WorkerThread implements Runnable, Iterable<ModelPlace> {
 	}
 
 
-	/** @return a uniformly increasing identification number for SimulationEvents to use. */
-	public int generateUniqueEventID() {
-		return ++nextEventID;
-	}
-
-
 	/** Get the current time. */
 	public TimeStamp getCurrentTime() {
 		return currentTime;
 	}
 
 
+	/** Set the current time to the time of the event about to be implemented. */
+	private void advanceClock(SimulationEvent e) {
+		//most events share their tick with the previous event -- keep the TimeStamp
+		if (currentTime.asNumTicks() != e.getTick()) {
+			currentTime = e.getTime();
+		}
+	}
+
+
 	/** Add a SimulationEvent to the eventQueue. */
 	public void addEvent(SimulationEvent e) {
-		eventQueue.put(e, e);
+		eventQueue.add(e);
+		if (journal.isRecording()) {
+			journal.record(new QueueAdd(e));
+		}
 	}
 
 
-	/** Create an OffThreadContactEvent and add it to the event queue. */
-	public void buildAndAddOffThreadContactEvent(RecordOfOffThreadContactEvent record) {
-
-		//ensure that the OffThreadContactEvent should be added to this WorkerThread
-		if (places.containsKey(record.placeIndex())) {
+	/**
+	 * Create an OffThreadContactEvent and add it to the event queue.
+	 *
+	 * @param timeAndPlace - See OffThreadContactEvent.packTimeAndPlace
+	 * @param contact - See OffThreadContactEvent.packContact
+	 */
+	private OffThreadContactEvent buildAndAddOffThreadContactEvent(long timeAndPlace, long contact) {
 
-			//build OffThreadContactEvent and add it to the queue
-			ModelPlace placeEventOccurs = places.get(record.placeIndex());
-			OffThreadContactEvent event = record.makeEvent(placeEventOccurs);
+		int placeIndex = OffThreadContactEvent.unpackPlaceIndex(timeAndPlace);
 
-			eventQueue.put(event, event);
+		//ensure that the OffThreadContactEvent should be added to this WorkerThread
+		ModelPlace placeEventOccurs = places.get(placeIndex);
+		if (placeEventOccurs != null) {
+
+			//build (or reuse) an OffThreadContactEvent and add it to the queue
+			OffThreadContactEvent event;
+			if (spareContactEvents.isEmpty()) {
+				event = OffThreadContactEvent.unpack(timeAndPlace, contact, placeEventOccurs);
+			} else {
+				event = spareContactEvents.remove(spareContactEvents.size() - 1);
+				event.reuse(timeAndPlace, contact, placeEventOccurs);
+			}
+			eventQueue.add(event);
+			return event;
 		} else {
 			throw new IllegalArgumentException(
-					"Attempting to add an OffThreadContactEventSeed that references a Place not "
+					"Attempting to add an OffThreadContactEvent that references a Place not "
 					+ "managed by this thread");
 		}
 	}
@@ -164,6 +406,9 @@ public class WorkerThread implements Runnable, Iterable<ModelPlace> {
 	/** Remove an AgentEvent from the executionQueue. */
 	public void removeEvent(AgentEvent e) {
 		eventQueue.remove(e);
+		if (journal.isRecording()) {
+			journal.record(new QueueRemove(e));
+		}
 	}
 
 
@@ -186,51 +431,79 @@ public class WorkerThread implements Runnable, Iterable<ModelPlace> {
 	 *
 	 * @param zipcode - The zipcode of the contactie
 	 * @param index - The index of the contactie (if known) (will be negative if not known)
-	 * @param ageOfContactor - The AgeChort of the contactor (sick person)
-	 * @param ssOfContactor - The DiseaseState of the contactor (sick person)
-	 * @param contactType - The ContactType being made, lets us know how intimate a contact is made.
+	 * @param contactCode - The code of the contactor's ContactInfo (see ContactInfo.encode), it
+	 * describes the contactor's age and DiseaseState and the ContactType being made.
 	 */
-	public void exportContact(int zipcode, int index, ContactInfo contactorSummary) {
+	public void exportContact(int zipcode, int index, int contactCode) {
 
-		//if contact is local (on this thread)
-		if (places.containsKey(zipcode)) {
+		//if contact is local (on this thread) and need not be deferred (see deferLocalContacts)
+		if (!deferLocalContacts && places.containsKey(zipcode)) {
 			//implement the contact at the 2nd ModelPlace that this node manages
 			ModelPlace place = this.places.get(zipcode);
 
-			place.locals().contact(index, contactorSummary);
+			place.locals().contact(index, contactCode);
 		} else {
-			//contact isn't local - so send if up to the Node
-			int destinationThread = this.manager.population.threadOwners[zipcode];
-			this.queuesOfOffThreadEventSeeds.get(destinationThread).
-					add(
-					new RecordOfOffThreadContactEvent(currentTime, zipcode, index, contactorSummary));
+			//otherwise send a packed record to the owning thread (possibly this thread)
+			int destinationThread = this.manager.threadOwners[zipcode];
+			long timeAndPlace = OffThreadContactEvent.packTimeAndPlace(currentTime, zipcode);
+			long contact = OffThreadContactEvent.packContact(index, contactCode);
+			this.outboundContacts[destinationThread].offer(timeAndPlace, contact);
+			numContactsSent++;
+			sendMin = Math.min(sendMin, currentTime.asNumTicks());
+
+			if (journal.isRecording()) {
+				journal.record(new ContactSent(destinationThread, timeAndPlace, contact));
+			}
 		}
 	}
 
 
 	/**
-	 * Load the OffThreadContactEvents that were queued up on other threads during the last round
-	 * of processing.
+	 * Load the OffThreadContactEvents that other threads have queued up for this thread. The other
+	 * threads do not need to be paused while this method runs.
 	 */
 	void retrieveOffThreadContactEventsFromOtherThreads() {
 
+		int totalOTCECount = importOffThreadContactEvents();
+
+		if (manager.getModel().simProps().verbose()) {
+			System.out.println("Thread :: " + threadIndex + " imported " + totalOTCECount + " OTCEs");
+		}
+	}
+
+
+	/**
+	 * Import the records other threads have sent, in a canonical order (see importedContacts).
+	 *
+	 * @return - The number of OffThreadContactEvents imported from the other threads.
+	 */
+	private int importOffThreadContactEvents() {
+
+		importedContacts.clear();
+		int totalOTCECount = importOffThreadContactEvents(importedContacts);
+
+		importedContacts.sort();
+		for (int i = 0; i < importedContacts.size(); i++) {
+			buildAndAddOffThreadContactEvent(importedContacts.first(i), importedContacts.second(i));
+		}
+
+		return totalOTCECount;
+	}
+
+
+	/** @return - The number of records the handler received from the other threads. */
+	private int importOffThreadContactEvents(SpscLongPairQueue.RecordHandler handler) {
+
 		int totalOTCECount = 0;
 
 		for (int i = 0; i < manager.numThreads(); i++) {
 
 			WorkerThread otherThread = manager.getThread(i);
 
-			ArrayDeque<RecordOfOffThreadContactEvent> loadTheseEvents = otherThread.queuesOfOffThreadEventSeeds.
-					get(threadIndex);
-
-			totalOTCECount += loadTheseEvents.size();
-			while (loadTheseEvents.size() > 0) {
-				buildAndAddOffThreadContactEvent(loadTheseEvents.removeFirst());
-			}
+			totalOTCECount += otherThread.outboundContacts[threadIndex].drain(handler);
 		}
 
-		System.out.println("Thread :: " + threadIndex + " imported " + totalOTCECount + " OTCEs");
-
+		return totalOTCECount;
 	}
 
 
@@ -250,14 +523,19 @@ public class WorkerThread implements Runnable, Iterable<ModelPlace> {
 	/** Add a ReconcileEvent to this WorkerThread. This event will fire at the given time). */
 	public void addReconcileEvent(TimeStamp time) {
 		//associate the ReconcileEvent with an arbitrary ModelPlace
-		ModelPlace arbitraryPlace = this.eventQueue.lastEntry().getValue().getPlace();
-		this.eventQueue.lastEntry().getValue();
+		ModelPlace arbitraryPlace = this.places.firstEntry().getValue();
 		addEvent(new ReconcileEvent(time, arbitraryPlace));
 
 //		System.out.println("Adding ReconcileEvent at time :: " + time);
 	}
 
 
+	/** Add the ReconcileEvent that follows the current time by the reconcile frequency. */
+	public void addNextReconcileEvent() {
+		addReconcileEvent(currentTime.add(manager.getModel().simProps().reconcileEventFreq()));
+	}
+
+
 	/** Process events from the processQueue until you reach a ReconcileEvent. */
 	@Override
 	public void run() {
@@ -270,33 +548,493 @@ public class WorkerThread implements Runnable, Iterable<ModelPlace> {
 		 * (at low X) and seems to have no performance increase above the
 		 * no loop version when X is high
 		 */
+		long startTime = System.nanoTime();
+
 		while (true) {
 
 			if (eventQueue.isEmpty()) {
 				throw new IllegalStateException("The PriorityQueue should never be empty");
 			}
 
-			SimulationEvent e = eventQueue.pollFirstEntry().getValue();
+			SimulationEvent e = eventQueue.poll();
 //			System.out.println(e.toString());
 
 			//set the proper time
-			currentTime = e.getTime();
+			advanceClock(e);
 
 			e.implementEvent();
+			e.getPlace().eventsSinceRebalance++;
+			eventsSinceRebalance++;
+
+			if (e instanceof OffThreadContactEvent) {
+				spareContactEvents.add((OffThreadContactEvent) e);
+			}
 
 			if (e instanceof ReconcileEvent) {
 //				executionHistory.endCurrentRecord();
+				nanosSinceRebalance += System.nanoTime() - startTime;
 				return;
 			}
 		}
 	}
 
 
+	/** @return - The number of events run() implemented since the threads were last rebalanced. */
+	long eventsSinceRebalance() {
+		return eventsSinceRebalance;
+	}
+
+
+	/** @return - The nanoseconds spent inside run() since the threads were last rebalanced. */
+	long nanosSinceRebalance() {
+		return nanosSinceRebalance;
+	}
+
+
+	/** Reset the load measurements of this thread and its places. */
+	void resetLoadMeasurements() {
+		eventsSinceRebalance = 0;
+		nanosSinceRebalance = 0;
+		for (ModelPlace place : places.values()) {
+			place.eventsSinceRebalance = 0;
+		}
+	}
+
+
+	/**
+	 * Remove a ModelPlace from this thread. The place's events stay in this thread's queue until
+	 * removeEventsOfDepartedPlaces is called. (All threads must be stopped.)
+	 */
+	void releasePlace(ModelPlace place) {
+		if (places.remove(place.placeIDNum()) == null) {
+			throw new IllegalArgumentException(
+					"This thread does not contain ModelPlace: " + place.placeIDNum());
+		}
+	}
+
+
+	/** Take ownership of a ModelPlace released by another thread. (All threads must be stopped.) */
+	void adoptPlace(ModelPlace place) {
+		places.put(place.placeIDNum(), place);
+		place.moveTo(this);
+		manager.threadOwners[place.placeIDNum()] = threadIndex;
+	}
+
+
+	/**
+	 * Remove every queued event whose place is now owned by a different thread.
+	 *
+	 * @return - The events that were removed (they keep their times and idNums).
+	 */
+	ArrayList<SimulationEvent> removeEventsOfDepartedPlaces() {
+
+		ArrayList<SimulationEvent> kept = new ArrayList<>(eventQueue.size());
+		ArrayList<SimulationEvent> departed = new ArrayList<>();
+
+		while (!eventQueue.isEmpty()) {
+			SimulationEvent e = eventQueue.poll();
+			if (e.getPlace().thread() == this) {
+				kept.add(e);
+			} else {
+				departed.add(e);
+			}
+		}
+
+		for (SimulationEvent e : kept) {
+			eventQueue.add(e);
+		}
+		return departed;
+	}
+
+
+	/** The number of events processed between updates of lowerBoundOnSends. */
+	private static final int EVENTS_PER_BOUND_UPDATE = 1024;
+
+
+	/**
+	 * Process events (CONSERVATIVE engine) until the ThreadManager requests a stop.<p>
+	 *
+	 * A contact imported from another thread can be implemented up to one lookahead period "late"
+	 * without changing the outcome because a newly exposed agent cannot contact anyone until its
+	 * latent period is over. Therefore, each round this thread :: <br>
+	 * (1) reads the other threads' lowerBoundOnSends and computes horizon = min + lookahead <br>
+	 * (2) imports every OffThreadContactEvent that has been exported to it <br>
+	 * (3) publishes its own lowerBoundOnSends <br>
+	 * (4) implements events that occur before the horizon (or until a ReconcileEvent is reached) <p>
+	 *
+	 * Any contact exported after step 1 occurs no earlier than (horizon - lookahead), so it is
+	 * imported before this thread implements an event one lookahead period after it. Threads only
+	 * wait when they get a full lookahead period ahead of the slowest thread.
+	 */
+	void runConservatively() {
+
+		while (!manager.stopRequested()) {
+
+			if (manager.isPaused()) {
+				pauseBriefly();
+				continue;
+			}
+
+			int horizon = manager.computeHorizon(threadIndex);
+
+			importOffThreadContactEvents();
+
+			publishLowerBoundOnSends(horizon);
+
+			boolean madeProgress = implementEventsBefore(horizon);
+
+			publishProgress();
+
+			if (!madeProgress) {
+				Thread.yield();
+			}
+		}
+	}
+
+
+	/**
+	 * Implement events that occur before the horizon. Stop early if a ReconcileEvent is reached
+	 * (ReconcileEvents merely mark rounds in the CONSERVATIVE engine, they do not pause anything).
+	 *
+	 * @return - True if at least one event was implemented.
+	 */
+	private boolean implementEventsBefore(int horizon) {
+
+		int numImplemented = 0;
+
+		while (eventQueue.peek().getTick() < horizon) {
+
+			SimulationEvent e = eventQueue.poll();
+			advanceClock(e);
+
+			e.implementEvent();
+			numImplemented++;
+
+			if (e instanceof OffThreadContactEvent) {
+				numContactsApplied++;
+				spareContactEvents.add((OffThreadContactEvent) e);
+			}
+
+			if (e instanceof ReconcileEvent) {
+				addNextReconcileEvent();
+				break;
+			}
+
+			if (numImplemented % EVENTS_PER_BOUND_UPDATE == 0) {
+				publishLowerBoundOnSends(horizon);
+			}
+		}
+
+		return (numImplemented > 0);
+	}
+
+
+	/**
+	 * Every future export will occur at the time of an event that is already queued or at least
+	 * one lookahead period after a contact that has not been imported yet (ie at or after horizon).
+	 */
+	private void publishLowerBoundOnSends(int horizon) {
+		lowerBoundOnSends = Math.min(eventQueue.peek().getTick(), horizon);
+	}
+
+
+	/**
+	 * Publish the values the ThreadManager uses to detect termination. The counters are written
+	 * before the number of sick agents so a reader that sees a new numSick also sees counters that
+	 * are at least as new.
+	 */
+	void publishProgress() {
+		publishedContactsSent = numContactsSent;
+		publishedContactsApplied = numContactsApplied;
+		publishedNumSick = getNumSick();
+	}
+
+
+	private void pauseBriefly() {
+		try {
+			Thread.sleep(50);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+
+	/** @return - No contact this thread exports in the future will occur before this tick. */
+	int lowerBoundOnSends() {
+		return lowerBoundOnSends;
+	}
+
+
+	/** @return - The number of sick agents when publishProgress was last called. */
+	int publishedNumSick() {
+		return publishedNumSick;
+	}
+
+
+	/** @return - The number of exported contacts when publishProgress was last called. */
+	long publishedContactsSent() {
+		return publishedContactsSent;
+	}
+
+
+	/** @return - The number of implemented imported contacts when publishProgress was last called. */
+	long publishedContactsApplied() {
+		return publishedContactsApplied;
+	}
+
+
+	/** The maximum number of events implemented between checks for incoming records. */
+	private static final int EVENTS_PER_OPTIMISTIC_BATCH = 256;
+
+
+	/**
+	 * Process events (OPTIMISTIC engine) until the ThreadManager requests a stop.<p>
+	 *
+	 * This thread implements events as soon as they reach the front of its queue (limited to one
+	 * optimism window past GVT) and journals every state change it makes. When a contact arrives
+	 * for a tick this thread has already passed (a straggler) the affected events are undone
+	 * newest first, and an anti-message is sent for each record those events exported.<p>
+	 *
+	 * Each round this thread :: <br>
+	 * (1) reads the current GVT epoch <br>
+	 * (2) imports records and anti-messages (rolling back when necessary) <br>
+	 * (3) reports its local minimum if it has not done so for this epoch <br>
+	 * (4) discards journal entries that GVT has committed <br>
+	 * (5) implements a batch of events
+	 */
+	void runOptimistically() {
+
+		int windowTicks = TimeStamps.initalTime().add(
+				manager.getModel().simProps().optimismWindow()).asNumTicks();
+
+		while (!manager.stopRequested()) {
+
+			if (manager.isPaused()) {
+				pauseBriefly();
+				continue;
+			}
+
+			int epoch = manager.gvtEpoch();
+
+			importOffThreadContactEvents(optimisticImporter);
+
+			if (epoch != lastReportedEpoch) {
+				reportLocalMinimum(epoch);
+			}
+
+			int gvt = manager.gvt();
+			if (gvt > lastFossilGvt) {
+				fossilCollect(gvt);
+			}
+
+			int limit = (gvt > Integer.MAX_VALUE - windowTicks) ? Integer.MAX_VALUE : gvt + windowTicks;
+			if (!implementEventsSpeculatively(limit)) {
+				Thread.yield();
+			}
+		}
+
+		System.out.println("Thread :: " + threadIndex + " rolled back " + numEventsRolledBack
+				+ " events in " + numRollbacks + " rollbacks");
+	}
+
+
+	/**
+	 * Implement (and journal) up to EVENTS_PER_OPTIMISTIC_BATCH events that occur before limit.
+	 *
+	 * @return - True if at least one event was implemented.
+	 */
+	private boolean implementEventsSpeculatively(int limit) {
+
+		int numImplemented = 0;
+
+		while (numImplemented < EVENTS_PER_OPTIMISTIC_BATCH
+				&& eventQueue.peek().getTick() < limit) {
+
+			SimulationEvent e = eventQueue.poll();
+			advanceClock(e);
+
+			eventSerial++;
+			journal.beginEvent(currentTime.asNumTicks());
+			journal.record(new QueueRemove(e));
+
+			e.implementEvent();
+
+			//ReconcileEvents merely mark rounds in the OPTIMISTIC engine
+			if (e instanceof ReconcileEvent) {
+				addNextReconcileEvent();
+			}
+
+			journal.endEvent();
+			numImplemented++;
+		}
+
+		return (numImplemented > 0);
+	}
+
+
+	/** Import one record (or anti-message), roll back first if the record is a straggler. */
+	private void importSpeculatively(long timeAndPlace, long contact) {
+
+		int tick = OffThreadContactEvent.unpackTick(timeAndPlace);
+
+		if (tick <= journal.lastTick()) {
+			rollbackTo(tick);
+		}
+
+		if (OffThreadContactEvent.isAntiMessage(timeAndPlace)) {
+			annihilate(tick, timeAndPlace, contact);
+		} else {
+			OffThreadContactEvent event = buildAndAddOffThreadContactEvent(timeAndPlace, contact);
+
+			ArrayList<OffThreadContactEvent> sameTick = receivedContacts.get(tick);
+			if (sameTick == null) {
+				sameTick = new ArrayList<>(4);
+				receivedContacts.put(tick, sameTick);
+			}
+			sameTick.add(event);
+		}
+	}
+
+
+	/**
+	 * Remove the (unprocessed) OffThreadContactEvent an anti-message cancels. Records from one
+	 * thread arrive in the order they were sent, so the matching record has already arrived.
+	 */
+	private void annihilate(int tick, long timeAndPlace, long contact) {
+
+		ArrayList<OffThreadContactEvent> sameTick = receivedContacts.get(tick);
+
+		if (sameTick != null) {
+			for (int i = 0; i < sameTick.size(); i++) {
+				OffThreadContactEvent event = sameTick.get(i);
+				if (event.matches(timeAndPlace, contact)) {
+					sameTick.remove(i);
+					eventQueue.remove(event);
+					return;
+				}
+			}
+		}
+
+		throw new IllegalStateException("An anti-message did not match any record :: tick " + tick);
+	}
+
+
+	/** Undo every event this thread implemented at or after the given tick. */
+	private void rollbackTo(int tick) {
+
+		numEventsRolledBack += journal.rollbackTo(tick);
+		numRollbacks++;
+	}
+
+
+	/** Report min(next event, smallest tick sent since the last report) to the ThreadManager. */
+	private void reportLocalMinimum(int epoch) {
+
+		boolean isIdle = (sendMin == Integer.MAX_VALUE && !hasInfections());
+		int localMin = Math.min(eventQueue.peek().getTick(), sendMin);
+
+		sendMin = Integer.MAX_VALUE;
+		lastReportedEpoch = epoch;
+
+		manager.reportLocalMinimum(threadIndex, localMin, isIdle);
+	}
+
+
+	/** Discard the journal entries and received records that occur before gvt. */
+	private void fossilCollect(int gvt) {
+
+		journal.fossilCollect(gvt);
+
+		for (int tick = lastFossilGvt; tick < gvt && !receivedContacts.isEmpty(); tick++) {
+			receivedContacts.remove(tick);
+		}
+		lastFossilGvt = gvt;
+	}
+
+
+	/** @return - The StateJournal that records this thread's speculative state changes. */
+	public StateJournal journal() {
+		return journal;
+	}
+
+
+	/** @return - The serial number of the event currently being implemented. */
+	long eventSerial() {
+		return eventSerial;
+	}
+
+
+	/** Undo an addition to the event queue. */
+	private class QueueAdd extends StateJournal.Entry {
+
+		private final SimulationEvent event;
+
+
+		QueueAdd(SimulationEvent event) {
+			this.event = event;
+		}
+
+
+		@Override
+		protected void undo() {
+			eventQueue.remove(event);
+		}
+	}
+
+
+	/** Undo a removal from the event queue (the event's time may have changed since). */
+	private class QueueRemove extends StateJournal.Entry {
+
+		private final SimulationEvent event;
+
+		private final int tick;
+
+
+		QueueRemove(SimulationEvent event) {
+			this.event = event;
+			this.tick = event.getTick();
+		}
+
+
+		@Override
+		protected void undo() {
+			event.setTick(tick);
+			eventQueue.add(event);
+		}
+	}
+
+
+	/** Undo an exported contact by sending an anti-message. */
+	private class ContactSent extends StateJournal.Entry {
+
+		private final int destinationThread;
+
+		private final long timeAndPlace;
+
+		private final long contact;
+
+
+		ContactSent(int destinationThread, long timeAndPlace, long contact) {
+			this.destinationThread = destinationThread;
+			this.timeAndPlace = timeAndPlace;
+			this.contact = contact;
+		}
+
+
+		@Override
+		protected void undo() {
+			outboundContacts[destinationThread].offer(
+					OffThreadContactEvent.asAntiMessage(timeAndPlace), contact);
+			sendMin = Math.min(sendMin, OffThreadContactEvent.unpackTick(timeAndPlace));
+		}
+	}
+
+
 	/** @return - The number of events waiting to be sent to another thread. */
 	public int getNumQueueOTCE() {
 		int sum = 0;
-		for (ArrayDeque<RecordOfOffThreadContactEvent> deque : queuesOfOffThreadEventSeeds) {
-			sum += deque.size();
+		for (SpscLongPairQueue queue : outboundContacts) {
+			sum += queue.size();
 		}
 		return sum;
 	}
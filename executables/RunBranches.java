@@ -0,0 +1,32 @@
+package executables;
+
+
+import core.Checkpoint;
+import core.EnsembleRunner;
+import core.SimulationProperties;
+import java.io.File;
+import java.io.IOException;
+import model.people.DeployablePopulation;
+
+
+/**
+ * Fork ensembleSize branches from the Checkpoint in checkpointDirectory (see Checkpoint) and run
+ * them like the replicates of an ensemble. Branch k uses runNumber + k.
+ */
+public class RunBranches {
+
+	public static void main(String[] args) throws IOException {
+
+		SimulationProperties props = SimulationProperties.getDefaultProperties();
+
+		DeployablePopulation population = DeployablePopulation.loadPopulation(props);
+		Checkpoint checkpoint = Checkpoint.read(new File(props.checkpointDirectory()));
+
+		System.out.println("Forking from run " + checkpoint.runNumber() + " at Reconcile Num :: "
+				+ checkpoint.recNum() + " (" + checkpoint.time() + ")");
+
+		EnsembleRunner branches = new EnsembleRunner(props, population, checkpoint);
+
+		branches.run();
+	}
+}
@@ -0,0 +1,19 @@
+package executables;
+
+
+import core.EnsembleRunner;
+import core.SimulationProperties;
+
+
+/**
+ * Run ensembleSize replicates of the scenario in the properties file (see EnsembleRunner). The
+ * population is loaded once for the whole ensemble.
+ */
+public class RunEnsemble {
+
+	public static void main(String[] args) {
+		EnsembleRunner ensemble = new EnsembleRunner(SimulationProperties.getDefaultProperties());
+
+		ensemble.run();
+	}
+}
@@ -13,6 +13,7 @@ import java.io.Serializable;
 import java.util.Arrays;
 import javax.imageio.ImageIO;
 import landScan.LandScanExtractor;
+import util.FlatStore;
 
 
 
@@ -165,132 +166,111 @@ public class GridExtraction implements Serializable {
 	}
 
 
-	/** Return a distance matrix for this population */
-	private double[][] calculateDistanceMatrix() {
+	/**
+	 * Compute f(distance) between two places -- the denominator of the gravity model.
+	 * 
+	 * @return - (sqrt(x^2 + y^2)) ^ DISTANCE_EXPONENT (or 1.0 if the places are at the same spot)
+	 */
+	double distanceFactor(int i, int j) {
+		return distanceFactor(i, gridPlaces[j].x, gridPlaces[j].y);
+	}
+	
+	
+	/**
+	 * Compute f(distance) between a place and a point (ie the centroid of a group of places).
+	 * 
+	 * @return - (sqrt(x^2 + y^2)) ^ DISTANCE_EXPONENT (or 1.0 if the place is at the point)
+	 */
+	double distanceFactor(int i, double x, double y) {
+		
+		double squared = squaredDistance(i, x, y);
+		double distance = (DISTANCE_EXPONENT == 2.0) 
+			? squared 
+			: Math.pow(Math.sqrt(squared), DISTANCE_EXPONENT);
+
+		//zero distance isn't allowed - treat zips as same place (distance = 1.0)
+		return (distance == 0.0) ? 1.0 : distance;
+	}
+	
+	
+	/** @return - The squared distance between place i and the point (x, y). */
+	double squaredDistance(int i, double x, double y) {
 		
 		if(xDistance == 0.0 || yDistance == 0.0) {
 			throw new IllegalStateException(
-				"Both xDistance and yDistance must be set prior to computing a distance matrix");
+				"Both xDistance and yDistance must be set prior to computing distances");
 		}
 
-		double[][] distMatrix = new double[numZips][numZips];
-		double distance1;
-		double distance2;
 		double xDist;
-		double yDist;
-		for (int i = 0; i < numZips; i++) {
-			for (int j = 0; j < numZips; j++) {
-				
-				if (distanceWraps) {
-					distance1 = Math.abs(Math.abs(gridPlaces[i].x - gridPlaces[j].x) * xDistance);
-					distance2 = Math.abs(Math.abs(gridPlaces[i].x + mapWidth - gridPlaces[j].x) * xDistance);
-					xDist = Math.min(distance1, distance2);
-				} else {
-					xDist = Math.abs(Math.abs(gridPlaces[i].x - gridPlaces[j].x) * xDistance);
-				}
-
-				yDist = Math.abs(gridPlaces[i].y - gridPlaces[j].y) * yDistance;
-				distMatrix[i][j] = Math.pow(Math.sqrt((xDist * xDist + yDist * yDist)), DISTANCE_EXPONENT);
-
-				//zero distance isn't allowed - treat zips as same place (distance = 1.0)
-				if (distMatrix[i][j] == 0.0) {
-					distMatrix[i][j] = 1.0;
-				}
-			}
-		}
-
-		//System.out.println("Error checking calculate distance matrix");
-		for (int i = 0; i < distMatrix.length; i++) {
-			for (int j = 0; j < distMatrix.length; j++) {
-				if (distMatrix[i][j] <= 0.0) {
-					throw new IllegalStateException(
-						"distMatrix[" + i + "][" + j + "] :: " +
-						distMatrix[i][j]);
-				}
-			}
+		if (distanceWraps) {
+			double distance1 = Math.abs(Math.abs(gridPlaces[i].x - x) * xDistance);
+			double distance2 = Math.abs(Math.abs(gridPlaces[i].x + mapWidth - x) * xDistance);
+			xDist = Math.min(distance1, distance2);
+		} else {
+			xDist = Math.abs(Math.abs(gridPlaces[i].x - x) * xDistance);
 		}
-		//System.out.println("Calculate Distance Matrix has all postive values");
+		double yDist = Math.abs(gridPlaces[i].y - y) * yDistance;
 
-		return distMatrix;
+		return xDist * xDist + yDist * yDist;
 	}
-
-
-	/**  Return a matrix with entries equal to Population_i * Population_j / f(distance_ij). */
-	private double[][] calculatePopOverDist(double[][] distMatrix) {
-		
-		double[][] popOverDist = new double[distMatrix.length][distMatrix.length];	//this will be a symetric matrix
-		for(int i = 0 ; i < distMatrix.length ; i++) {
-			for(int j = i ; j < numZips ; j++) {
-				//do 2 seperate cast so that you don't cast the result of an integer overflow
-				popOverDist[i][j] = ((double)gridPlaces[i].pop) * ((double)gridPlaces[j].pop) / distMatrix[i][j];
-				popOverDist[j][i] = popOverDist[i][j];
-			}
-		}
-		
-		//System.out.println("Error checking Population Over Distance matrix");
-		for (int i = 0 ; i < popOverDist.length ; i++) {
-			for (int j = 0 ; j < popOverDist.length ; j++) {
-				if(popOverDist[i][j] <= 0.0) {
-					throw new IllegalStateException(
-						"popOverDist[" + i + "][" + j + "] :: " +
-						popOverDist[i][j] + "\n\n" +
-						"places[" + i + "].pop :: " + gridPlaces[i].pop + "\n\n" +
-						"places[" + j + "].pop :: " + gridPlaces[j].pop + "\n\n" +
-						"distMatrix[" + i + "][" + j + "] :: " + distMatrix[i][j]
-						);
-				}
-			}
-		}
-		//System.out.println("Population Over Distance Matrix has all postive values");
-		
-		return popOverDist;
+	
+	
+	/** @return - The distance between two adjacent columns. */
+	double xStepSize() {
+		return xDistance;
 	}
 	
 	
-	/**  Return a matrix with entries equal to prob of ij interaction. */
-	private double[][] calculateInteractionMatrix(double[][] popOverDist) {
-		
-		double[][] interactionMatrix = new double[popOverDist.length][popOverDist.length];
-		//we now have to rescale the popOverDist matrix into a probability.
-		//Thus creating the interactionMatrix.
-		//prob that a NYCer travels to rural NY is not equal to prob
-		//rural NYer travels to NYC.  (interactionMatrix shouldn't be symetric)
-		double rowSum;
-		for(int i = 0 ; i < popOverDist.length ; i++) {
-			//calculate a row sum
-			rowSum = 0;
-			for(int j = 0 ; j < popOverDist.length ; j++) {
-				rowSum += popOverDist[i][j];
-			}
-			
-			//for each entry in that row enter the fraction of the rowSum that was
-			for(int k = 0 ; k < popOverDist.length ; k++) {
-				interactionMatrix[i][k] = popOverDist[i][k]/rowSum;
-			}
-		}
-		return interactionMatrix;
+	/** @return - The distance between two adjacent rows. */
+	double yStepSize() {
+		return yDistance;
 	}
 	
 	
-	/**  Return a matrix with entries equal to prob of ij interaction. */
-	public double[][] computeInteractionMatrix() {
-		System.out.println("\ncalculating distMatix");
-		double[][] distMatrix = this.calculateDistanceMatrix();
-		
-		System.out.println("calculating popOverDist");
-		double[][] popOverDist = calculatePopOverDist(distMatrix);
-		System.out.println("Reclaiming distMatrix");
-		distMatrix = null;				//reclaim mem
+	/**
+	 * Compute the (row normalized) probability of ij interaction without building an N x N matrix.
+	 * 
+	 * @param kernelType - "QUADTREE" (a Barnes-Hut style hierarchy, O(N log N) memory) or
+	 * "SPARSE" (the heaviest entries of each row plus a coarse far field grid, O(N^2) work)
+	 * @param openingAngle - QUADTREE only -- a cluster of places is aggregated when its width 
+	 * divided by its distance is below this value (smaller is more accurate)
+	 * @param farGridSize - SPARSE only -- the far field grid has farGridSize x farGridSize cells
+	 * @param numThreads - The number of threads used to compute the kernel
+	 */
+	public InteractionKernel computeInteractionKernel(String kernelType, double openingAngle, int farGridSize,
+			int numThreads) {
+		System.out.println("\ncalculating " + kernelType + " interaction kernel");
 		
-		System.out.println("calculating interactionMatrix");
-		double[][] interactionMatrix = calculateInteractionMatrix(popOverDist);		
-		System.out.println("Reclaiming popOverDist");
-		popOverDist = null;				//reclaim mem
+		if (kernelType.equals("QUADTREE")) {
+			return new QuadTreeKernel(this, openingAngle, numThreads);
+		}
+		if (kernelType.equals("SPARSE")) {
+			return new SparseInteractionKernel(this, farGridSize, numThreads);
+		}
 		
-		return interactionMatrix;
+		throw new IllegalArgumentException("Unknown interaction kernel :: " + kernelType);
 	}	
 	
 	
+	/**
+	 * Read an interaction kernel that was saved with InteractionKernel.writeTo.
+	 * 
+	 * @param kernelType - The type of kernel that was saved ("QUADTREE" or "SPARSE")
+	 * @param in - A FlatStore positioned at the start of the kernel
+	 */
+	public static InteractionKernel readInteractionKernel(String kernelType, FlatStore.Reader in) {
+		
+		if (kernelType.equals("QUADTREE")) {
+			return new QuadTreeKernel(in);
+		}
+		if (kernelType.equals("SPARSE")) {
+			return new SparseInteractionKernel(in);
+		}
+		
+		throw new IllegalArgumentException("Unknown interaction kernel :: " + kernelType);
+	}
+	
+	
 	/** 
 	 * Draw a map of this Extraction.
 	 * 
@@ -0,0 +1,45 @@
+package gridBasedData;
+
+import java.io.IOException;
+import util.FlatStore;
+
+
+/**
+ * An InteractionKernel describes where the random contacts of each place occur (the row normalized
+ * gravity model of a GridExtraction) without storing an N x N interaction matrix.
+ *
+ * A kernel is saved with writeTo and restored with GridExtraction.readInteractionKernel (it is not
+ * Serializable -- its arrays are stored flat in a FlatStore).
+ */
+public interface InteractionKernel {
+
+	/**
+	 * Select the home of a random contact of place i.
+	 *
+	 * @param i - The index of a place
+	 * @param randomDraw - A random number 0 - 1
+	 *
+	 * @return - The index of the place where the contact lives
+	 */
+	int sample(int i, double randomDraw);
+
+	/** @return - The places that the kernel stores individually for place i (the heaviest ones). */
+	int[] nearPlaces(int i);
+
+	/** @return - output[n] = The fraction of place i's contacts that occur at nearPlaces(i)[n]. */
+	double[] nearFractions(int i);
+
+	/**
+	 * Compute, for every place, the probability that a contact drawn by sample() lives in each
+	 * group.
+	 *
+	 * @param owners - owners[j] = The group place j is assigned to
+	 * @param numGroups - The number of groups
+	 *
+	 * @return - output[i][g] = The probability a contact of place i lives in group g
+	 */
+	double[][] groupShares(int[] owners, int numGroups);
+
+	/** Write this kernel to a FlatStore (it is read back by GridExtraction.readInteractionKernel). */
+	void writeTo(FlatStore.Writer out) throws IOException;
+}
@@ -0,0 +1,177 @@
+package gridBasedData;
+
+
+import java.util.Random;
+
+
+/**
+ * Compares a SparseInteractionKernel with the exact (dense) gravity model on a small synthetic
+ * grid -- the row normalized pop_j / f(distance_ij) matrix that the sparse kernel replaced. For
+ * several far field grid sizes it prints :: <br>
+ * (1) the largest deviation of a row sum from 1 <br>
+ * (2) the mean and largest L1 distance between a sparse row and the dense row <br>
+ * (3) the largest relative error of a column sum (the contacts a place receives, when every place
+ * sends contacts in proportion to its population) <br>
+ * (4) the population weighted histogram of contact distances (one bin per doubling of the
+ * distance) for both kernels, and the total variation distance between the two histograms.
+ */
+public class KernelAccuracyCheck {
+
+	/** The synthetic grid is GRID_SIZE x GRID_SIZE squares. */
+	private static final int GRID_SIZE = 96;
+
+	/** The number of places extracted from the grid. */
+	private static final int NUM_PLACES = 1500;
+
+	/** The far field grid sizes that are compared. */
+	private static final int[] FAR_GRID_SIZES = {4, 8, 16, 32};
+
+	/** Distances are binned as floor(log2(distance)) + 1 (bin 0 is a contact within a place). */
+	private static final int NUM_BINS = 10;
+
+
+	public static void main(String[] args) {
+
+		PopulatedGrid grid = new PopulatedGrid(syntheticGrid(new Random(11)));
+		GridExtraction extraction = new GridExtraction(grid, NUM_PLACES, GRID_SIZE, GRID_SIZE, 1.0, false);
+		extraction.setXStepSize(1.0);
+		extraction.setYStepSize(1.0);
+		int numPlaces = extraction.numZips;
+		int numThreads = Runtime.getRuntime().availableProcessors();
+
+		double[][] dense = new double[numPlaces][];
+		for (int i = 0; i < numPlaces; i++) {
+			dense[i] = denseRow(extraction, i);
+		}
+		double[] denseHistogram = distanceHistogram(extraction, dense);
+		double[] denseColumns = columnSums(extraction, dense);
+
+		System.out.println(numPlaces + " places on a " + GRID_SIZE + " x " + GRID_SIZE + " grid");
+		System.out.println("dense distance histogram :: " + format(denseHistogram));
+
+		for (int farGridSize : FAR_GRID_SIZES) {
+
+			SparseInteractionKernel kernel = new SparseInteractionKernel(extraction, farGridSize, numThreads);
+			double[][] sparse = new double[numPlaces][];
+			double maxRowSumError = 0;
+			double sumL1 = 0;
+			double maxL1 = 0;
+			for (int i = 0; i < numPlaces; i++) {
+				sparse[i] = kernel.rowProbabilities(i);
+				double rowSum = 0;
+				double l1 = 0;
+				for (int j = 0; j < numPlaces; j++) {
+					rowSum += sparse[i][j];
+					l1 += Math.abs(sparse[i][j] - dense[i][j]);
+				}
+				maxRowSumError = Math.max(maxRowSumError, Math.abs(rowSum - 1.0));
+				sumL1 += l1;
+				maxL1 = Math.max(maxL1, l1);
+			}
+
+			double[] columns = columnSums(extraction, sparse);
+			double maxColumnError = 0;
+			for (int j = 0; j < numPlaces; j++) {
+				maxColumnError = Math.max(maxColumnError, Math.abs(columns[j] / denseColumns[j] - 1.0));
+			}
+
+			double[] histogram = distanceHistogram(extraction, sparse);
+			double totalVariation = 0;
+			for (int b = 0; b < NUM_BINS; b++) {
+				totalVariation += 0.5 * Math.abs(histogram[b] - denseHistogram[b]);
+			}
+
+			System.out.println("\nfarGridSize = " + farGridSize);
+			System.out.println("  max |row sum - 1| = " + maxRowSumError);
+			System.out.println("  row L1 error (mean / max) = " + (sumL1 / numPlaces) + " / " + maxL1);
+			System.out.println("  max column sum error = " + maxColumnError);
+			System.out.println("  distance histogram :: " + format(histogram));
+			System.out.println("  total variation vs dense = " + totalVariation);
+		}
+	}
+
+
+	/** @return - A grid with a few dense "cities" on a sparse rural background. */
+	private static int[][] syntheticGrid(Random rand) {
+
+		int[][] grid = new int[GRID_SIZE][GRID_SIZE];
+		for (int i = 0; i < GRID_SIZE; i++) {
+			for (int j = 0; j < GRID_SIZE; j++) {
+				grid[i][j] = 50 + rand.nextInt(200);
+			}
+		}
+		for (int city = 0; city < 12; city++) {
+			int ci = rand.nextInt(GRID_SIZE);
+			int cj = rand.nextInt(GRID_SIZE);
+			double size = 20_000 + rand.nextInt(200_000);
+			double radius = 1 + 4 * rand.nextDouble();
+			for (int i = 0; i < GRID_SIZE; i++) {
+				for (int j = 0; j < GRID_SIZE; j++) {
+					double d2 = (i - ci) * (i - ci) + (j - cj) * (j - cj);
+					grid[i][j] += (int) (size * Math.exp(-d2 / (2 * radius * radius)));
+				}
+			}
+		}
+		return grid;
+	}
+
+
+	/** @return - Row i of the dense gravity model. */
+	private static double[] denseRow(GridExtraction extraction, int i) {
+		double[] row = new double[extraction.numZips];
+		double sum = 0;
+		for (int j = 0; j < row.length; j++) {
+			row[j] = extraction.gridPlaces[j].pop / extraction.distanceFactor(i, j);
+			sum += row[j];
+		}
+		for (int j = 0; j < row.length; j++) {
+			row[j] /= sum;
+		}
+		return row;
+	}
+
+
+	/** @return - output[j] = The contacts place j receives when place i sends pop_i contacts. */
+	private static double[] columnSums(GridExtraction extraction, double[][] kernel) {
+		double[] columns = new double[kernel.length];
+		for (int i = 0; i < kernel.length; i++) {
+			int pop = extraction.gridPlaces[i].pop;
+			for (int j = 0; j < kernel.length; j++) {
+				columns[j] += pop * kernel[i][j];
+			}
+		}
+		return columns;
+	}
+
+
+	/** @return - The fraction of all contacts (population weighted) in each distance bin. */
+	private static double[] distanceHistogram(GridExtraction extraction, double[][] kernel) {
+		double[] histogram = new double[NUM_BINS];
+		double total = 0;
+		for (int i = 0; i < kernel.length; i++) {
+			int pop = extraction.gridPlaces[i].pop;
+			for (int j = 0; j < kernel.length; j++) {
+				double distance = Math.sqrt(extraction.squaredDistance(
+						i, extraction.gridPlaces[j].x, extraction.gridPlaces[j].y));
+				int bin = (distance < 1.0)
+						? 0
+						: Math.min(NUM_BINS - 1, 1 + (int) (Math.log(distance) / Math.log(2)));
+				histogram[bin] += pop * kernel[i][j];
+				total += pop * kernel[i][j];
+			}
+		}
+		for (int b = 0; b < NUM_BINS; b++) {
+			histogram[b] /= total;
+		}
+		return histogram;
+	}
+
+
+	private static String format(double[] histogram) {
+		StringBuilder sb = new StringBuilder();
+		for (double fraction : histogram) {
+			sb.append(String.format("%.4f ", fraction));
+		}
+		return sb.toString().trim();
+	}
+}
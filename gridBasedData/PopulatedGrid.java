@@ -1,6 +1,7 @@
 package gridBasedData;
 
 import util.ImageUtility;
+import util.Parallelizer;
 import util.Utility;
 import java.awt.Color;
 import java.awt.Graphics;
@@ -9,8 +10,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 import java.text.DecimalFormat;
-import java.util.Collections;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.imageio.ImageIO;
@@ -129,6 +129,12 @@ public class PopulatedGrid implements Serializable {
 	/**
 	 * This method creates an array that contains the largest squares in the grid
 	 * 
+	 * The squares are selected without creating an object per square :: every square is packed 
+	 * into a long (scaled population in the high 32 bits, i * grid[0].length + j in the low 32 
+	 * bits) and blocks of columns are scanned in parallel, each keeping a bounded min-heap of the 
+	 * numberToExtract largest keys.  Ties are broken in favor of the larger (i, j) exactly like 
+	 * the stable sort this replaces.
+	 * 
 	 * @param numberToExtract - The length or the returned array.
 	 * @param scale - Scale the population in the GridExtraction by this fraction.  For
 	 * instance, if scale = .5, this method will extract the biggest grid sqaures and then
@@ -137,31 +143,69 @@ public class PopulatedGrid implements Serializable {
 	 * @return - An array of maximum length "numberToExtract".  The largest grid square will 
 	 * be the last entry in this array.
 	 */
-	public GridPlace[] getLargestSquares(int numberToExtract, double scale) {
+	public GridPlace[] getLargestSquares(final int numberToExtract, final double scale) {
+
+		final int rowLength = grid[0].length;
+		if ((long) grid.length * rowLength > 0xFFFFFFFFL) {
+			throw new IllegalStateException("The grid is too large to pack :: " + grid.length + " x " + rowLength);
+		}
 
-		LinkedList<GridPlace> gridSizes = new LinkedList<GridPlace>();
-		for (int i = 0; i < grid.length; i++) {
-			for (int j = 0; j < grid[i].length; j++) {
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		int numJobs = Math.max(1, Math.min(grid.length, numThreads));
+		final long[][] heaps = new long[numJobs][];
+		final int[] heapSizes = new int[numJobs];
 
-				if (grid[i][j] > 0) {
-					gridSizes.addLast(new GridPlace(
-						i, //the column forms the x coor
-						j, //the row forms the y coor
-						(int)(grid[i][j] * scale)));
+		Runnable[] jobs = new Runnable[numJobs];
+		for (int b = 0; b < numJobs; b++) {
+			final int job = b;
+			final int firstI = (int) ((long) grid.length * b / numJobs);
+			final int lastI = (int) ((long) grid.length * (b + 1) / numJobs);
+			jobs[b] = new Runnable() {
+				@Override
+				public void run() {
+					long[] heap = new long[Math.min(numberToExtract, (lastI - firstI) * rowLength)];
+					int size = 0;
+					for (int i = firstI; i < lastI; i++) {
+						for (int j = 0; j < rowLength; j++) {
+							if (grid[i][j] > 0) {
+								long key = packSquare((int) (grid[i][j] * scale), (long) i * rowLength + j);
+								size = offer(heap, size, key);
+							}
+						}
+					}
+					heaps[job] = heap;
+					heapSizes[job] = size;
 				}
+			};
+		}
+		new Parallelizer(numThreads).doWorkInParallel(jobs);
+
+		//merge the per-job heaps
+		long[] heap = new long[numberToExtract];
+		int size = 0;
+		for (int b = 0; b < numJobs; b++) {
+			for (int k = 0; k < heapSizes[b]; k++) {
+				size = offer(heap, size, heaps[b][k]);
 			}
+			heaps[b] = null;
 		}
-		Collections.sort(gridSizes);
-		//trim the list to the correct size
-		while (gridSizes.size() > numberToExtract) {
-			gridSizes.removeFirst();
+		long[] keys = Arrays.copyOf(heap, size);
+		Arrays.sort(keys);
+
+		GridPlace[] output = new GridPlace[keys.length];
+		for (int k = 0; k < keys.length; k++) {
+			long index = keys[k] & 0xFFFFFFFFL;
+			output[k] = new GridPlace(
+				(int) (index / rowLength), //the column forms the x coor
+				(int) (index % rowLength), //the row forms the y coor
+				(int) (keys[k] >>> 32));
 		}
 		
-		drawGrid(grid, gridSizes.getFirst().pop, 
-			"extraction_" + gridSizes.getFirst().pop +".bmp");
+		if (output.length > 0) {
+			drawGrid(grid, output[0].pop, 
+				"extraction_" + output[0].pop +".bmp");
+		}
 		
-		GridPlace[] output = gridSizes.toArray(new GridPlace[0]);
-
 		//print a record of the mapping from (i,j) coordinate to ModelPlace Index
 		printMapping(output);
 
@@ -169,6 +213,60 @@ public class PopulatedGrid implements Serializable {
 	}
 
 
+	/** @return - A key that orders squares by (scaled) population, then by position. */
+	private static long packSquare(int pop, long index) {
+		return ((long) pop << 32) | index;
+	}
+
+
+	/**
+	 * Offer a key to a bounded min-heap (heap.length is the bound).  If the heap is full the key 
+	 * replaces the smallest key when it is larger.
+	 * 
+	 * @return - The new size of the heap
+	 */
+	private static int offer(long[] heap, int size, long key) {
+
+		if (size < heap.length) {
+			//sift up
+			int k = size;
+			while (k > 0) {
+				int parent = (k - 1) >>> 1;
+				if (heap[parent] <= key) {
+					break;
+				}
+				heap[k] = heap[parent];
+				k = parent;
+			}
+			heap[k] = key;
+			return size + 1;
+		}
+
+		if (size == 0 || key <= heap[0]) {
+			return size;
+		}
+
+		//replace the root and sift down
+		int k = 0;
+		while (true) {
+			int child = 2 * k + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && heap[child + 1] < heap[child]) {
+				child++;
+			}
+			if (key <= heap[child]) {
+				break;
+			}
+			heap[k] = heap[child];
+			k = child;
+		}
+		heap[k] = key;
+		return size;
+	}
+
+
 	/**
 	 * Print the mapping of coordinates to ModelPlace Indexes
 	 * 
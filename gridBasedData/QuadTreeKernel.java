@@ -0,0 +1,482 @@
+package gridBasedData;
+
+import java.io.IOException;
+import java.util.Arrays;
+import util.AliasTableBlock;
+import util.FlatStore;
+import util.Parallelizer;
+
+
+
+/**
+ * A QuadTreeKernel samples the home of a random contact in two stages (in the style of the
+ * Barnes-Hut n-body approximation).
+ *
+ * The places are stored in a quadtree. Every node of the tree covers a contiguous range of the
+ * places (listed in tree order) and knows the total population and the population weighted
+ * centroid of that range. Row i of the kernel is built by walking the tree from the root :: <br>
+ * (1) a node that is far from place i (its width / distance to place i < openingAngle) is kept as
+ * a single entry with mass = population / f(distance to centroid) <br>
+ * (2) a leaf that is close to place i is expanded into one exact entry per place <br>
+ * (3) any other node is opened and its children are visited <p>
+ *
+ * A contact that is drawn from an aggregated node is assigned to a member of that node in
+ * proportion to the member's population. Each row has O(log N) entries so both the memory and the
+ * precomputation are O(N log N). The openingAngle controls the approximation error (a smaller
+ * angle opens more nodes).
+ *
+ * The rows are sampled through an AliasTableBlock. When a kernel is read from a FlatStore its
+ * segments are views of the mapped file.
+ */
+public class QuadTreeKernel implements InteractionKernel {
+
+	/** A node with at most this many places is a leaf. */
+	private static final int LEAF_SIZE = 8;
+
+	/** The number of blocks of rows each building thread should expect to process. */
+	private static final int BLOCKS_PER_THREAD = 8;
+
+	/** The number of places (rows) in this kernel. */
+	public final int numPlaces;
+
+	/** order[k] = The place at position k of the tree order. */
+	private final int[] order;
+
+	/** cumPop[k] = The population of the places at positions 0 ... k of the tree order. */
+	private final long[] cumPop;
+
+	/** The number of nodes in the tree (node 0 is the root). */
+	private int numNodes;
+
+	/** Each node covers the places at positions nodeStart[n] ... nodeEnd[n]-1 of the tree order. */
+	private int[] nodeStart;
+
+	private int[] nodeEnd;
+
+	/** The population weighted centroid of each node. */
+	private double[] nodeX;
+
+	private double[] nodeY;
+
+	/** The width of each node (in the same units as the distance between places). */
+	private double[] nodeWidth;
+
+	/** The first child of each node (-1 for a leaf). */
+	private int[] firstChild;
+
+	/** The next child of the same parent (-1 for the last child). */
+	private int[] nextSibling;
+
+	/**
+	 * Row i holds the entries of place i -- a place index (if >= 0) or the complement (~n) of an
+	 * aggregated node n.
+	 */
+	private final AliasTableBlock table;
+
+
+	/**
+	 * Build the kernel of a GridExtraction.
+	 *
+	 * @param extraction - The places (and distance settings) of the kernel
+	 * @param openingAngle - A node is aggregated when its width / distance is below this value
+	 * @param numThreads - The number of threads used to build the rows
+	 */
+	QuadTreeKernel(final GridExtraction extraction, final double openingAngle, int numThreads) {
+
+		if (openingAngle <= 0) {
+			throw new IllegalArgumentException("openingAngle must be positive :: " + openingAngle);
+		}
+
+		this.numPlaces = extraction.numZips;
+		GridPlace[] places = extraction.gridPlaces;
+
+		for (int i = 0; i < numPlaces; i++) {
+			if (places[i].pop <= 0) {
+				throw new IllegalStateException("places[" + i + "].pop :: " + places[i].pop);
+			}
+		}
+
+		this.order = new int[numPlaces];
+		for (int i = 0; i < numPlaces; i++) {
+			order[i] = i;
+		}
+		buildTree(extraction);
+
+		this.cumPop = new long[numPlaces];
+		long sum = 0;
+		for (int k = 0; k < numPlaces; k++) {
+			sum += places[order[k]].pop;
+			cumPop[k] = sum;
+		}
+
+		final int[] positionOf = new int[numPlaces];
+		for (int k = 0; k < numPlaces; k++) {
+			positionOf[order[k]] = k;
+		}
+
+		final int[][] entries = new int[numPlaces][];
+		final double[][] masses = new double[numPlaces][];
+
+		//build the rows in parallel -- each job owns a contiguous block of rows
+		int numJobs = Math.min(numPlaces, Math.max(1, numThreads * BLOCKS_PER_THREAD));
+		Runnable[] jobs = new Runnable[numJobs];
+		for (int b = 0; b < numJobs; b++) {
+			final int firstRow = (int) ((long) numPlaces * b / numJobs);
+			final int lastRow = (int) ((long) numPlaces * (b + 1) / numJobs);
+			jobs[b] = new Runnable() {
+				@Override
+				public void run() {
+					buildRows(extraction, openingAngle, positionOf, firstRow, lastRow, entries, masses);
+				}
+			};
+		}
+
+		Parallelizer para = new Parallelizer(Math.max(1, numThreads));
+		para.doWorkInParallel(jobs);
+
+		this.table = AliasTableBlock.build(entries, masses, numThreads);
+	}
+
+
+	/** Read a kernel that was written with writeTo. */
+	QuadTreeKernel(FlatStore.Reader in) {
+		this.numPlaces = in.getInt();
+		this.order = in.getIntArray();
+		this.cumPop = in.getLongArray();
+		this.nodeStart = in.getIntArray();
+		this.nodeEnd = in.getIntArray();
+		this.nodeX = in.getDoubleArray();
+		this.nodeY = in.getDoubleArray();
+		this.nodeWidth = in.getDoubleArray();
+		this.firstChild = in.getIntArray();
+		this.nextSibling = in.getIntArray();
+		this.numNodes = nodeStart.length;
+		this.table = new AliasTableBlock(in);
+
+		if (order.length != numPlaces || table.numRows() != numPlaces) {
+			throw new IllegalStateException("Inconsistent QuadTreeKernel :: " + numPlaces + " places");
+		}
+	}
+
+
+	@Override
+	public void writeTo(FlatStore.Writer out) throws IOException {
+		out.putInt(numPlaces);
+		out.putIntArray(order);
+		out.putLongArray(cumPop);
+		out.putIntArray(nodeStart);
+		out.putIntArray(nodeEnd);
+		out.putDoubleArray(nodeX);
+		out.putDoubleArray(nodeY);
+		out.putDoubleArray(nodeWidth);
+		out.putIntArray(firstChild);
+		out.putIntArray(nextSibling);
+		table.writeTo(out);
+	}
+
+
+	/** Arrange the places in tree order and compute every node of the quadtree. */
+	private void buildTree(GridExtraction extraction) {
+
+		GridPlace[] places = extraction.gridPlaces;
+
+		int minX = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE;
+		int minY = Integer.MAX_VALUE;
+		int maxY = Integer.MIN_VALUE;
+		for (GridPlace place : places) {
+			minX = Math.min(minX, place.x);
+			maxX = Math.max(maxX, place.x);
+			minY = Math.min(minY, place.y);
+			maxY = Math.max(maxY, place.y);
+		}
+
+		int side = 1;
+		while (side < maxX - minX + 1 || side < maxY - minY + 1) {
+			side *= 2;
+		}
+
+		int capacity = Math.max(16, 2 * numPlaces / LEAF_SIZE);
+		this.nodeStart = new int[capacity];
+		this.nodeEnd = new int[capacity];
+		this.nodeX = new double[capacity];
+		this.nodeY = new double[capacity];
+		this.nodeWidth = new double[capacity];
+		this.firstChild = new int[capacity];
+		this.nextSibling = new int[capacity];
+		this.numNodes = 0;
+
+		if (numPlaces > 0) {
+			double cellWidth = Math.max(extraction.xStepSize(), extraction.yStepSize());
+			buildNode(places, new int[numPlaces], 0, numPlaces, minX, minY, side, cellWidth);
+		}
+
+		this.nodeStart = Arrays.copyOf(nodeStart, numNodes);
+		this.nodeEnd = Arrays.copyOf(nodeEnd, numNodes);
+		this.nodeX = Arrays.copyOf(nodeX, numNodes);
+		this.nodeY = Arrays.copyOf(nodeY, numNodes);
+		this.nodeWidth = Arrays.copyOf(nodeWidth, numNodes);
+		this.firstChild = Arrays.copyOf(firstChild, numNodes);
+		this.nextSibling = Arrays.copyOf(nextSibling, numNodes);
+	}
+
+
+	/**
+	 * Create the node covering order[start ... end-1] (which all lie inside the square with the
+	 * given corner and side length) and, recursively, its children.
+	 *
+	 * @return - The index of the new node
+	 */
+	private int buildNode(GridPlace[] places, int[] scratch, int start, int end, int x0, int y0,
+			int side, double cellWidth) {
+
+		int node = newNode();
+		nodeStart[node] = start;
+		nodeEnd[node] = end;
+		nodeWidth[node] = side * cellWidth;
+		firstChild[node] = -1;
+		nextSibling[node] = -1;
+
+		double popSum = 0;
+		double xSum = 0;
+		double ySum = 0;
+		for (int k = start; k < end; k++) {
+			GridPlace place = places[order[k]];
+			popSum += place.pop;
+			xSum += (double) place.pop * place.x;
+			ySum += (double) place.pop * place.y;
+		}
+		nodeX[node] = xSum / popSum;
+		nodeY[node] = ySum / popSum;
+
+		if (end - start <= LEAF_SIZE || side == 1) {
+			return node;
+		}
+
+		//sort the places into quadrants (counting sort through the scratch array)
+		int half = side / 2;
+		int[] count = new int[5];
+		for (int k = start; k < end; k++) {
+			count[quadrant(places[order[k]], x0, y0, half) + 1]++;
+		}
+		for (int q = 0; q < 4; q++) {
+			count[q + 1] += count[q];
+		}
+		int[] fill = Arrays.copyOf(count, 4);
+		for (int k = start; k < end; k++) {
+			int j = order[k];
+			scratch[start + fill[quadrant(places[j], x0, y0, half)]++] = j;
+		}
+		System.arraycopy(scratch, start, order, start, end - start);
+
+		int previous = -1;
+		for (int q = 0; q < 4; q++) {
+			if (count[q + 1] == count[q]) {
+				continue;
+			}
+			int child = buildNode(places, scratch, start + count[q], start + count[q + 1],
+					x0 + (q & 1) * half, y0 + (q >> 1) * half, half, cellWidth);
+			if (previous == -1) {
+				firstChild[node] = child;
+			} else {
+				nextSibling[previous] = child;
+			}
+			previous = child;
+		}
+		return node;
+	}
+
+
+	private static int quadrant(GridPlace place, int x0, int y0, int half) {
+		return ((place.x >= x0 + half) ? 1 : 0) + ((place.y >= y0 + half) ? 2 : 0);
+	}
+
+
+	/** @return - The index of a new node (the node arrays grow as needed). */
+	private int newNode() {
+		if (numNodes == nodeStart.length) {
+			int capacity = 2 * numNodes;
+			nodeStart = Arrays.copyOf(nodeStart, capacity);
+			nodeEnd = Arrays.copyOf(nodeEnd, capacity);
+			nodeX = Arrays.copyOf(nodeX, capacity);
+			nodeY = Arrays.copyOf(nodeY, capacity);
+			nodeWidth = Arrays.copyOf(nodeWidth, capacity);
+			firstChild = Arrays.copyOf(firstChild, capacity);
+			nextSibling = Arrays.copyOf(nextSibling, capacity);
+		}
+		return numNodes++;
+	}
+
+
+	/** Compute rows firstRow ... lastRow-1 of this kernel. */
+	private void buildRows(GridExtraction extraction, double openingAngle, int[] positionOf,
+			int firstRow, int lastRow, int[][] entries, double[][] masses) {
+
+		double angleSquared = openingAngle * openingAngle;
+
+		//scratch space that is reused for every row
+		int[] stack = new int[Math.max(16, numNodes)];
+		int[] rowEntries = new int[64];
+		double[] rowMass = new double[64];
+
+		for (int i = firstRow; i < lastRow; i++) {
+
+			int position = positionOf[i];
+			int numEntries = 0;
+
+			int stackSize = 0;
+			if (numNodes > 0) {
+				stack[stackSize++] = 0;
+			}
+
+			while (stackSize > 0) {
+				int node = stack[--stackSize];
+
+				boolean containsRow = (position >= nodeStart[node] && position < nodeEnd[node]);
+				double squared = extraction.squaredDistance(i, nodeX[node], nodeY[node]);
+				boolean isFar = !containsRow
+						&& nodeWidth[node] * nodeWidth[node] < angleSquared * squared;
+
+				if (isFar || (firstChild[node] == -1)) {
+					int numNew = (isFar) ? 1 : nodeEnd[node] - nodeStart[node];
+					if (numEntries + numNew > rowEntries.length) {
+						int capacity = Math.max(2 * rowEntries.length, numEntries + numNew);
+						rowEntries = Arrays.copyOf(rowEntries, capacity);
+						rowMass = Arrays.copyOf(rowMass, capacity);
+					}
+
+					if (isFar) {
+						long pop = popOf(node);
+						rowEntries[numEntries] = ~node;
+						rowMass[numEntries] = pop / extraction.distanceFactor(i, nodeX[node], nodeY[node]);
+						numEntries++;
+					} else {
+						for (int k = nodeStart[node]; k < nodeEnd[node]; k++) {
+							int j = order[k];
+							rowEntries[numEntries] = j;
+							rowMass[numEntries] = extraction.gridPlaces[j].pop / extraction.distanceFactor(i, j);
+							numEntries++;
+						}
+					}
+				} else {
+					for (int child = firstChild[node]; child != -1; child = nextSibling[child]) {
+						stack[stackSize++] = child;
+					}
+				}
+			}
+
+			entries[i] = Arrays.copyOf(rowEntries, numEntries);
+			masses[i] = Arrays.copyOf(rowMass, numEntries);
+		}
+	}
+
+
+	/** @return - The population of a node. */
+	private long popOf(int node) {
+		int start = nodeStart[node];
+		return cumPop[nodeEnd[node] - 1] - ((start == 0) ? 0 : cumPop[start - 1]);
+	}
+
+
+	@Override
+	public int sample(int i, double randomDraw) {
+
+		int entry = table.sample(i, randomDraw);
+		if (entry >= 0) {
+			return entry;
+		}
+
+		//the contact is in an aggregated node -- use the rest of the draw to select a member
+		int node = ~entry;
+		int start = nodeStart[node];
+		long base = (start == 0) ? 0 : cumPop[start - 1];
+		long target = base + (long) (table.residual(i, randomDraw) * popOf(node));
+
+		int lo = start;
+		int hi = nodeEnd[node] - 1;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (cumPop[mid] > target) {
+				hi = mid;
+			} else {
+				lo = mid + 1;
+			}
+		}
+		return order[lo];
+	}
+
+
+	@Override
+	public int[] nearPlaces(int i) {
+		int[] row = table.outcomes(i);
+		int count = 0;
+		for (int entry : row) {
+			if (entry >= 0) {
+				row[count++] = entry;
+			}
+		}
+		return Arrays.copyOf(row, count);
+	}
+
+
+	@Override
+	public double[] nearFractions(int i) {
+		int[] row = table.outcomes(i);
+		double[] probs = table.probabilities(i);
+		int count = 0;
+		for (int e = 0; e < row.length; e++) {
+			if (row[e] >= 0) {
+				probs[count++] = probs[e];
+			}
+		}
+		return Arrays.copyOf(probs, count);
+	}
+
+
+	@Override
+	public double[][] groupShares(int[] owners, int numGroups) {
+
+		if (owners.length != numPlaces) {
+			throw new IllegalArgumentException(
+				"owners.length != numPlaces :: " + owners.length + " != " + numPlaces);
+		}
+
+		//nodeGroupPop[n][g] = The population of node n that lives in group g (children follow
+		//their parent in node order so a reverse sweep visits children first)
+		double[][] nodeGroupPop = new double[numNodes][numGroups];
+		for (int node = numNodes - 1; node >= 0; node--) {
+			if (firstChild[node] == -1) {
+				for (int k = nodeStart[node]; k < nodeEnd[node]; k++) {
+					long prior = (k == 0) ? 0 : cumPop[k - 1];
+					nodeGroupPop[node][owners[order[k]]] += cumPop[k] - prior;
+				}
+			} else {
+				for (int child = firstChild[node]; child != -1; child = nextSibling[child]) {
+					for (int g = 0; g < numGroups; g++) {
+						nodeGroupPop[node][g] += nodeGroupPop[child][g];
+					}
+				}
+			}
+		}
+
+		double[][] shares = new double[numPlaces][numGroups];
+		for (int i = 0; i < numPlaces; i++) {
+			int[] row = table.outcomes(i);
+			double[] probs = table.probabilities(i);
+			for (int e = 0; e < row.length; e++) {
+				double mass = probs[e];
+				int entry = row[e];
+				if (entry >= 0) {
+					shares[i][owners[entry]] += mass;
+				} else {
+					int node = ~entry;
+					double pop = popOf(node);
+					for (int g = 0; g < numGroups; g++) {
+						shares[i][g] += mass * nodeGroupPop[node][g] / pop;
+					}
+				}
+			}
+		}
+		return shares;
+	}
+}
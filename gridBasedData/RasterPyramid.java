@@ -0,0 +1,198 @@
+package gridBasedData;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import util.Parallelizer;
+
+
+/**
+ * A RasterPyramid is a full resolution TiledRaster plus precomputed block sums of it at coarser
+ * resolutions (ie 2x2, 5x5, 20x20 and 60x60 blocks). Every level is its own memory mapped
+ * TiledRaster so any rectangle at any resolution is answered by reading a few tiles :: <br>
+ * (1) if the block size is a stored level the rectangle is read from that level <br>
+ * (2) otherwise it is summed from the coarsest stored level whose block size divides it. <p>
+ *
+ * Level files are named prefix_[blockSize].tiles, prefix_1.tiles is the full resolution raster.
+ * Missing levels are built (in parallel) the first time the pyramid is opened, every level is
+ * built from the coarsest finer level that divides it.
+ */
+public class RasterPyramid {
+
+	/** The block sizes stored by default (in addition to the full resolution). */
+	public static final int[] DEFAULT_BLOCK_SIZES = {2, 5, 10, 20, 60, 120};
+
+	/** blockSizes[k] = The block size of levels[k] (ascending, blockSizes[0] = 1). */
+	private final int[] blockSizes;
+
+	private final TiledRaster[] levels;
+
+
+	/**
+	 * Open (building any missing levels) the pyramid of a full resolution raster.
+	 *
+	 * @param prefix - prefix_1.tiles must already exist
+	 * @param blockSizes - The coarser levels to store (in ascending order)
+	 * @param numThreads - The number of threads used to build missing levels
+	 */
+	public RasterPyramid(String prefix, int[] blockSizes, int numThreads) throws IOException {
+
+		this.blockSizes = new int[blockSizes.length + 1];
+		this.blockSizes[0] = 1;
+		for (int k = 0; k < blockSizes.length; k++) {
+			if (blockSizes[k] <= this.blockSizes[k]) {
+				throw new IllegalArgumentException("The block sizes must be ascending and > 1");
+			}
+			this.blockSizes[k + 1] = blockSizes[k];
+		}
+
+		this.levels = new TiledRaster[this.blockSizes.length];
+		this.levels[0] = new TiledRaster(levelFile(prefix, 1));
+
+		for (int k = 1; k < levels.length; k++) {
+			File file = levelFile(prefix, this.blockSizes[k]);
+			if (file.exists()) {
+				try {
+					levels[k] = new TiledRaster(file);
+					if (levels[k].numColumns == ceilDiv(levels[0].numColumns, this.blockSizes[k])
+							&& levels[k].numRows == ceilDiv(levels[0].numRows, this.blockSizes[k])) {
+						continue;
+					}
+				} catch (IllegalStateException ex) {
+					System.out.println(ex.getMessage());
+				}
+			}
+			int source = sourceLevel(this.blockSizes[k], k);
+			System.out.println("building the " + this.blockSizes[k] + "x" + this.blockSizes[k] +
+					" level of " + prefix + " from the " + this.blockSizes[source] + "x" + this.blockSizes[source] + " level");
+			levels[k] = buildLevel(levels[source], this.blockSizes[k] / this.blockSizes[source], file, numThreads);
+		}
+	}
+
+
+	/** @return - The file that stores the level with the given block size. */
+	public static File levelFile(String prefix, int blockSize) {
+		return new File(prefix + "_" + blockSize + ".tiles");
+	}
+
+
+	private static int ceilDiv(int a, int b) {
+		return (a + b - 1) / b;
+	}
+
+
+	/** @return - The index of the coarsest level (below maxLevel) whose block size divides blockSize. */
+	private int sourceLevel(int blockSize, int maxLevel) {
+		for (int k = maxLevel - 1; k > 0; k--) {
+			if (blockSize % blockSizes[k] == 0) {
+				return k;
+			}
+		}
+		return 0;
+	}
+
+
+	/**
+	 * Build a coarser level by summing factor x factor blocks of a source level. Every band of the
+	 * new level is built by its own job, from the source bands it covers.
+	 */
+	private static TiledRaster buildLevel(final TiledRaster source, final int factor, File file,
+			int numThreads) throws IOException {
+
+		final int numColumns = ceilDiv(source.numColumns, factor);
+		final int numRows = ceilDiv(source.numRows, factor);
+		final int size = TiledRaster.TILE_SIZE;
+
+		File partial = new File(file.getPath() + ".partial");
+		try (final TiledRaster.Writer writer = new TiledRaster.Writer(partial, numColumns, numRows)) {
+
+			int numBands = ceilDiv(numRows, size);
+			Runnable[] jobs = new Runnable[numBands];
+			for (int b = 0; b < numBands; b++) {
+				final int firstRow = b * size;
+				final int bandRows = Math.min(size, numRows - firstRow);
+				jobs[b] = new Runnable() {
+					@Override
+					public void run() {
+						int[] band = new int[bandRows * numColumns];
+
+						int fromRow = firstRow * factor;
+						int toRow = Math.min((firstRow + bandRows) * factor, source.numRows);
+						for (int sb = fromRow / size; sb * size < toRow; sb++) {
+							int[] sourceBand = source.readBand(sb);
+							int first = Math.max(fromRow, sb * size);
+							int last = Math.min(toRow, (sb + 1) * size);
+							for (int i = first; i < last; i++) {
+								int offset = (i - sb * size) * source.numColumns;
+								int target = (i / factor - firstRow) * numColumns;
+								for (int j = 0; j < source.numColumns; j++) {
+									band[target + j / factor] += sourceBand[offset + j];
+								}
+							}
+						}
+
+						try {
+							writer.writeBand(band, firstRow, bandRows);
+						} catch (IOException ex) {
+							throw new IllegalStateException(ex);
+						}
+					}
+				};
+			}
+			new Parallelizer(numThreads).doWorkInParallel(jobs);
+		}
+
+		Files.move(partial.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		return new TiledRaster(file);
+	}
+
+
+	/** @return - The full resolution raster. */
+	public TiledRaster fullResolution() {
+		return levels[0];
+	}
+
+
+	/**
+	 * Get a rectangle of blockSize x blockSize block sums.
+	 *
+	 * @param blockSize - The block size of the output (ie 1 = full resolution)
+	 * @param x - The first column of the rectangle (in blocks)
+	 * @param y - The first row of the rectangle (in blocks)
+	 * @param width - The number of columns in the rectangle (in blocks)
+	 * @param height - The number of rows in the rectangle (in blocks)
+	 *
+	 * @return - output[i][j] = The sum of block (x + i, y + j). (Like PopulatedGrid.grid the first
+	 * index is the column)
+	 */
+	public int[][] getGrid(int blockSize, int x, int y, int width, int height) {
+
+		int level = sourceLevel(blockSize, levels.length);
+		int factor = blockSize / blockSizes[level];
+
+		int[][] rows = levels[level].region(x * factor, y * factor, width * factor, height * factor);
+
+		int[][] outGrid = new int[width][height];
+		for (int i = 0; i < rows.length; i++) {
+			for (int j = 0; j < rows[i].length; j++) {
+				outGrid[j / factor][i / factor] += rows[i][j];
+			}
+		}
+		return outGrid;
+	}
+
+
+	/**
+	 * Get the entire raster as blockSize x blockSize block sums. Partial blocks along the right
+	 * and bottom edges are dropped.
+	 *
+	 * @return - output[i][j] = The sum of block (i, j). (Like PopulatedGrid.grid the first index
+	 * is the column)
+	 */
+	public int[][] getGrid(int blockSize) {
+		return getGrid(blockSize, 0, 0,
+				levels[0].numColumns / blockSize, levels[0].numRows / blockSize);
+	}
+}
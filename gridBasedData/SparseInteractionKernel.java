@@ -0,0 +1,443 @@
+package gridBasedData;
+
+import java.io.IOException;
+import java.util.Arrays;
+import util.AliasTableBlock;
+import util.FlatStore;
+import util.Parallelizer;
+
+
+
+/**
+ * A SparseInteractionKernel replaces the dense interaction matrix of a GridExtraction. The dense
+ * matrix (and the distance and popOverDist matrices used to build it) required three N x N arrays
+ * which capped the number of places far below what a LandScan dataset can provide.
+ *
+ * Row i of the kernel describes where the random contacts of place i occur. Place j receives mass
+ * proportional to pop_j / f(distance_ij) (the row normalized gravity model of GridExtraction).
+ * Each row is stored as :: <br>
+ * (1) the "near field" -- the NUM_NEAR places that receive the most mass (stored exactly) <br>
+ * (2) the "far field" -- the remaining mass aggregated into the cells of a coarse spatial grid
+ * (farGridSize x farGridSize cells over the bounding box of the places). A contact that lands in a
+ * far field cell is assigned to a member of that cell in proportion to the member's population. <p>
+ *
+ * A finer far field grid follows the gravity model more closely but every row stores one entry per
+ * occupied cell, so the memory grows with farGridSize^2. KernelAccuracyCheck compares the kernel
+ * with the exact gravity model for several grid sizes.
+ *
+ * The far field mass of a cell is spread over every member of the cell (including members that
+ * are in the near field), therefore the sampling mass of each near place is reduced by the amount
+ * it receives through its cell. This keeps the mass every near place receives exact (unless the
+ * reduction would be negative) and the mass every cell receives exact.
+ *
+ * Rows are built in parallel, one block of rows per job. Each job scans its rows one at a time so
+ * only O(N) scratch memory is required per job -- an N x N array is never materialized.
+ *
+ * The rows are sampled through an AliasTableBlock. When a kernel is read from a FlatStore its
+ * segments are views of the mapped file.
+ */
+public class SparseInteractionKernel implements InteractionKernel {
+
+	/** The number of places stored exactly in each row. */
+	public static final int NUM_NEAR = 64;
+
+	/** The largest far field grid (farGridSize x farGridSize cells) that is accepted. */
+	private static final int MAX_FAR_GRID_SIZE = 1024;
+
+	/** The number of blocks of rows each building thread should expect to process. */
+	private static final int BLOCKS_PER_THREAD = 8;
+
+	/** The number of places (rows) in this kernel. */
+	public final int numPlaces;
+
+	/** nearPlaces[i] = The places that receive the most mass from place i. */
+	private final int[][] nearPlaces;
+
+	/** nearFractions[i][n] = The exact fraction of place i's contacts that occur at nearPlaces[i][n]. */
+	private final double[][] nearFractions;
+
+	/**
+	 * Row i holds the sampling mass of place i -- a place index (if >= 0) for each near place and
+	 * the complement (~c) of each far field cell c.
+	 */
+	private final AliasTableBlock table;
+
+	/** cellOf[j] = The far field cell that contains place j. */
+	private final int[] cellOf;
+
+	/** The members of cell c are stored at indices cellStart[c] ... cellStart[c+1]-1. */
+	private final int[] cellStart;
+
+	/** The places in each cell (grouped by cell). */
+	private final int[] cellMembers;
+
+	/** cellCumPop[k] = The population of cellMembers[cellStart[c] ... k] (where k is in cell c). */
+	private final long[] cellCumPop;
+
+
+	/**
+	 * Build the kernel of a GridExtraction.
+	 *
+	 * @param extraction - The places (and distance settings) of the kernel
+	 * @param farGridSize - The far field grid has farGridSize x farGridSize cells (empty cells are
+	 * dropped)
+	 * @param numThreads - The number of threads used to build the rows
+	 */
+	SparseInteractionKernel(final GridExtraction extraction, int farGridSize, int numThreads) {
+
+		if (farGridSize < 1 || farGridSize > MAX_FAR_GRID_SIZE) {
+			throw new IllegalArgumentException(
+					"farGridSize must be 1 - " + MAX_FAR_GRID_SIZE + " :: " + farGridSize);
+		}
+
+		this.numPlaces = extraction.numZips;
+
+		for (int i = 0; i < numPlaces; i++) {
+			if (extraction.gridPlaces[i].pop <= 0) {
+				throw new IllegalStateException(
+					"places[" + i + "].pop :: " + extraction.gridPlaces[i].pop);
+			}
+		}
+
+		this.cellOf = new int[numPlaces];
+		int numCells = assignCells(extraction.gridPlaces, farGridSize);
+
+		//group the places by cell
+		this.cellStart = new int[numCells + 1];
+		for (int j = 0; j < numPlaces; j++) {
+			cellStart[cellOf[j] + 1]++;
+		}
+		for (int c = 0; c < numCells; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+		this.cellMembers = new int[numPlaces];
+		this.cellCumPop = new long[numPlaces];
+		int[] fill = Arrays.copyOf(cellStart, numCells);
+		for (int j = 0; j < numPlaces; j++) {
+			cellMembers[fill[cellOf[j]]++] = j;
+		}
+		for (int c = 0; c < numCells; c++) {
+			long sum = 0;
+			for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+				sum += extraction.gridPlaces[cellMembers[k]].pop;
+				cellCumPop[k] = sum;
+			}
+		}
+
+		this.nearPlaces = new int[numPlaces][];
+		this.nearFractions = new double[numPlaces][];
+		final int[][] outcomes = new int[numPlaces][];
+		final double[][] weights = new double[numPlaces][];
+
+		//build the rows in parallel -- each job owns a contiguous block of rows
+		int numJobs = Math.min(numPlaces, Math.max(1, numThreads * BLOCKS_PER_THREAD));
+		Runnable[] jobs = new Runnable[numJobs];
+		for (int b = 0; b < numJobs; b++) {
+			final int firstRow = (int) ((long) numPlaces * b / numJobs);
+			final int lastRow = (int) ((long) numPlaces * (b + 1) / numJobs);
+			jobs[b] = new Runnable() {
+				@Override
+				public void run() {
+					buildRows(extraction, firstRow, lastRow, outcomes, weights);
+				}
+			};
+		}
+
+		Parallelizer para = new Parallelizer(Math.max(1, numThreads));
+		para.doWorkInParallel(jobs);
+
+		this.table = AliasTableBlock.build(outcomes, weights, numThreads);
+	}
+
+
+	/** Read a kernel that was written with writeTo. */
+	SparseInteractionKernel(FlatStore.Reader in) {
+		this.numPlaces = in.getInt();
+		this.cellOf = in.getIntArray();
+		this.cellStart = in.getIntArray();
+		this.cellMembers = in.getIntArray();
+		this.cellCumPop = in.getLongArray();
+		this.nearPlaces = new int[numPlaces][];
+		this.nearFractions = new double[numPlaces][];
+		for (int i = 0; i < numPlaces; i++) {
+			nearPlaces[i] = in.getIntArray();
+			nearFractions[i] = in.getDoubleArray();
+		}
+		this.table = new AliasTableBlock(in);
+
+		if (cellOf.length != numPlaces || table.numRows() != numPlaces) {
+			throw new IllegalStateException("Inconsistent SparseInteractionKernel :: " + numPlaces + " places");
+		}
+	}
+
+
+	@Override
+	public void writeTo(FlatStore.Writer out) throws IOException {
+		out.putInt(numPlaces);
+		out.putIntArray(cellOf);
+		out.putIntArray(cellStart);
+		out.putIntArray(cellMembers);
+		out.putLongArray(cellCumPop);
+		for (int i = 0; i < numPlaces; i++) {
+			out.putIntArray(nearPlaces[i]);
+			out.putDoubleArray(nearFractions[i]);
+		}
+		table.writeTo(out);
+	}
+
+
+	/**
+	 * Assign each place to a cell of the far field grid and renumber the cells so that only
+	 * occupied cells are kept.
+	 *
+	 * @return - The number of occupied cells
+	 */
+	private int assignCells(GridPlace[] places, int farGridSize) {
+
+		int minX = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE;
+		int minY = Integer.MAX_VALUE;
+		int maxY = Integer.MIN_VALUE;
+		for (GridPlace place : places) {
+			minX = Math.min(minX, place.x);
+			maxX = Math.max(maxX, place.x);
+			minY = Math.min(minY, place.y);
+			maxY = Math.max(maxY, place.y);
+		}
+
+		long width = (long) maxX - minX + 1;
+		long height = (long) maxY - minY + 1;
+
+		int[] renumber = new int[farGridSize * farGridSize];
+		Arrays.fill(renumber, -1);
+		int numCells = 0;
+
+		for (int j = 0; j < places.length; j++) {
+			int cx = (int) ((places[j].x - minX) * farGridSize / width);
+			int cy = (int) ((places[j].y - minY) * farGridSize / height);
+			int cell = cy * farGridSize + cx;
+			if (renumber[cell] == -1) {
+				renumber[cell] = numCells++;
+			}
+			cellOf[j] = renumber[cell];
+		}
+		return numCells;
+	}
+
+
+	/** Compute rows firstRow ... lastRow-1 of this kernel. */
+	private void buildRows(GridExtraction extraction, int firstRow, int lastRow,
+			int[][] outcomes, double[][] weights) {
+
+		int numCells = cellStart.length - 1;
+		int k = Math.min(NUM_NEAR, numPlaces);
+
+		//scratch space that is reused for every row
+		double[] mass = new double[numPlaces];
+		double[] farMass = new double[numCells];
+		boolean[] isNear = new boolean[numPlaces];
+
+		for (int i = firstRow; i < lastRow; i++) {
+
+			double rowSum = 0;
+			for (int j = 0; j < numPlaces; j++) {
+				mass[j] = extraction.gridPlaces[j].pop / extraction.distanceFactor(i, j);
+				rowSum += mass[j];
+			}
+
+			int[] near = heaviestEntries(mass, k);
+			for (int j : near) {
+				isNear[j] = true;
+			}
+
+			Arrays.fill(farMass, 0);
+			for (int j = 0; j < numPlaces; j++) {
+				if (!isNear[j]) {
+					farMass[cellOf[j]] += mass[j];
+				}
+			}
+
+			//remove the mass each near place will receive through its cell
+			double[] fractions = new double[near.length];
+			int[] rowOutcomes = new int[near.length + numCells];
+			double[] rowWeights = new double[near.length + numCells];
+			for (int n = 0; n < near.length; n++) {
+				int j = near[n];
+				int c = cellOf[j];
+				double cellPop = cellCumPop[cellStart[c + 1] - 1];
+				fractions[n] = mass[j] / rowSum;
+				rowOutcomes[n] = j;
+				rowWeights[n] = Math.max(0, mass[j] - farMass[c] * extraction.gridPlaces[j].pop / cellPop);
+				isNear[j] = false;
+			}
+			for (int c = 0; c < numCells; c++) {
+				rowOutcomes[near.length + c] = ~c;
+				rowWeights[near.length + c] = farMass[c];
+			}
+
+			nearPlaces[i] = near;
+			nearFractions[i] = fractions;
+			outcomes[i] = rowOutcomes;
+			weights[i] = rowWeights;
+		}
+	}
+
+
+	/** @return - The indices of the k largest entries of row (heaviest first). */
+	private static int[] heaviestEntries(double[] row, int k) {
+
+		//a min-heap of the k heaviest entries seen so far
+		int[] heap = new int[k];
+		int size = 0;
+
+		for (int j = 0; j < row.length; j++) {
+			if (size < k) {
+				heap[size] = j;
+				int c = size++;
+				while (c > 0 && row[heap[(c - 1) / 2]] > row[heap[c]]) {
+					swap(heap, c, (c - 1) / 2);
+					c = (c - 1) / 2;
+				}
+			} else if (row[j] > row[heap[0]]) {
+				heap[0] = j;
+				siftDown(heap, size, row);
+			}
+		}
+
+		//drain the heap (lightest first) into the back of the output
+		int[] output = new int[size];
+		for (int n = size - 1; n >= 0; n--) {
+			output[n] = heap[0];
+			heap[0] = heap[--size];
+			siftDown(heap, size, row);
+		}
+		return output;
+	}
+
+
+	private static void siftDown(int[] heap, int size, double[] row) {
+		int p = 0;
+		while (true) {
+			int c = 2 * p + 1;
+			if (c >= size) {
+				break;
+			}
+			if (c + 1 < size && row[heap[c + 1]] < row[heap[c]]) {
+				c++;
+			}
+			if (row[heap[p]] <= row[heap[c]]) {
+				break;
+			}
+			swap(heap, p, c);
+			p = c;
+		}
+	}
+
+
+	private static void swap(int[] array, int i, int j) {
+		int temp = array[i];
+		array[i] = array[j];
+		array[j] = temp;
+	}
+
+
+	@Override
+	public int sample(int i, double randomDraw) {
+
+		int outcome = table.sample(i, randomDraw);
+		if (outcome >= 0) {
+			return outcome;
+		}
+
+		//the contact is in the far field -- use the rest of the draw to select a member of the cell
+		int c = ~outcome;
+		int first = cellStart[c];
+		int last = cellStart[c + 1] - 1;
+		long target = (long) (table.residual(i, randomDraw) * cellCumPop[last]);
+		int lo = first;
+		int hi = last;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (cellCumPop[mid] > target) {
+				hi = mid;
+			} else {
+				lo = mid + 1;
+			}
+		}
+		return cellMembers[lo];
+	}
+
+
+	/** @return - output[j] = The probability that sample(i, ...) returns place j. */
+	double[] rowProbabilities(int i) {
+
+		double[] probs = new double[numPlaces];
+		int[] outcomes = table.outcomes(i);
+		double[] outcomeProbs = table.probabilities(i);
+		for (int k = 0; k < outcomes.length; k++) {
+			if (outcomes[k] >= 0) {
+				probs[outcomes[k]] += outcomeProbs[k];
+				continue;
+			}
+			//a far field cell -- its members are drawn in proportion to their population
+			int c = ~outcomes[k];
+			double cellPop = cellCumPop[cellStart[c + 1] - 1];
+			long before = 0;
+			for (int m = cellStart[c]; m < cellStart[c + 1]; m++) {
+				probs[cellMembers[m]] += outcomeProbs[k] * (cellCumPop[m] - before) / cellPop;
+				before = cellCumPop[m];
+			}
+		}
+		return probs;
+	}
+
+
+	@Override
+	public int[] nearPlaces(int i) {
+		return nearPlaces[i];
+	}
+
+
+	@Override
+	public double[] nearFractions(int i) {
+		return nearFractions[i];
+	}
+
+
+	@Override
+	public double[][] groupShares(int[] owners, int numGroups) {
+
+		if (owners.length != numPlaces) {
+			throw new IllegalArgumentException(
+				"owners.length != numPlaces :: " + owners.length + " != " + numPlaces);
+		}
+
+		//cellShare[c][g] = The fraction of cell c's population that lives in group g
+		int numCells = cellStart.length - 1;
+		double[][] cellShare = new double[numCells][numGroups];
+		for (int c = 0; c < numCells; c++) {
+			long prior = 0;
+			long cellPop = cellCumPop[cellStart[c + 1] - 1];
+			for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+				cellShare[c][owners[cellMembers[k]]] += (double) (cellCumPop[k] - prior) / cellPop;
+				prior = cellCumPop[k];
+			}
+		}
+
+		double[][] shares = new double[numPlaces][numGroups];
+		for (int i = 0; i < numPlaces; i++) {
+			int[] row = table.outcomes(i);
+			double[] probs = table.probabilities(i);
+			for (int e = 0; e < row.length; e++) {
+				if (row[e] >= 0) {
+					shares[i][owners[row[e]]] += probs[e];
+				} else {
+					for (int g = 0; g < numGroups; g++) {
+						shares[i][g] += probs[e] * cellShare[~row[e]][g];
+					}
+				}
+			}
+		}
+		return shares;
+	}
+}
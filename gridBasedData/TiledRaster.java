@@ -0,0 +1,296 @@
+package gridBasedData;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * A TiledRaster is a memory mapped grid of ints (ie populations) stored as TILE_SIZE x TILE_SIZE
+ * tiles. Tiles that only contain zeros are not stored at all. Any rectangle can be read from the
+ * tiles that overlap it, the rest of the file is never touched.
+ *
+ * File layout (little endian) :: <br>
+ * MAGIC, VERSION, numColumns, numRows, TILE_SIZE, numStoredTiles, <br>
+ * slotOf[tileRow * tilesAcross + tileColumn] (-1 if the tile is empty), <br>
+ * the stored tiles (each tile is row major)
+ */
+public class TiledRaster {
+
+	/** The width and height of a tile (also the number of rows in a band). */
+	public static final int TILE_SIZE = 256;
+
+	private static final int TILE_BYTES = TILE_SIZE * TILE_SIZE * 4;
+
+	/** The tiles are mapped in segments of this many tiles (1 GB). */
+	private static final int TILES_PER_SEGMENT = (1 << 30) / TILE_BYTES;
+
+	private static final int MAGIC = 0x4C535452;
+
+	private static final int VERSION = 1;
+
+	/** MAGIC, VERSION, numColumns, numRows, TILE_SIZE, numStoredTiles */
+	private static final int HEADER_BYTES = 24;
+
+	public final int numColumns;
+
+	public final int numRows;
+
+	private final int tilesAcross;
+
+	private final int tilesDown;
+
+	/** slotOf[tile] = The position of the tile in the data section (-1 if the tile is empty). */
+	private final int[] slotOf;
+
+	/** The stored tiles -- only absolute get methods are used so concurrent readers are safe. */
+	private final MappedByteBuffer[] segments;
+
+
+	/**
+	 * Map a TiledRaster file.
+	 *
+	 * @throws IllegalStateException - If the file is not a (complete) TiledRaster
+	 */
+	public TiledRaster(File file) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+			if (channel.size() < HEADER_BYTES) {
+				throw new IllegalStateException("Truncated tile file :: " + file);
+			}
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(16) != TILE_SIZE) {
+				throw new IllegalStateException("Unrecognized tile file :: " + file);
+			}
+			this.numColumns = header.getInt(8);
+			this.numRows = header.getInt(12);
+			int numStored = header.getInt(20);
+
+			this.tilesAcross = (numColumns + TILE_SIZE - 1) / TILE_SIZE;
+			this.tilesDown = (numRows + TILE_SIZE - 1) / TILE_SIZE;
+			long indexBytes = 4L * tilesAcross * tilesDown;
+			long dataStart = HEADER_BYTES + indexBytes;
+
+			if (channel.size() != dataStart + (long) numStored * TILE_BYTES) {
+				throw new IllegalStateException("Truncated tile file :: " + file);
+			}
+
+			this.slotOf = new int[tilesAcross * tilesDown];
+			channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, indexBytes)
+					.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(slotOf);
+
+			this.segments = new MappedByteBuffer[(numStored + TILES_PER_SEGMENT - 1) / TILES_PER_SEGMENT];
+			for (int s = 0; s < segments.length; s++) {
+				long start = dataStart + (long) s * TILES_PER_SEGMENT * TILE_BYTES;
+				long size = (long) Math.min(TILES_PER_SEGMENT, numStored - s * TILES_PER_SEGMENT) * TILE_BYTES;
+				segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+				segments[s].order(ByteOrder.LITTLE_ENDIAN);
+			}
+		}
+	}
+
+
+	/** @return - The number of tile rows (ie bands). */
+	public int numBands() {
+		return tilesDown;
+	}
+
+
+	/**
+	 * Copy part of one row of one tile.
+	 *
+	 * @param tileRow - The tile's row (in tiles)
+	 * @param tileColumn - The tile's column (in tiles)
+	 * @param row - The row within the tile
+	 * @param column - The first column within the tile
+	 * @param length - The number of values to copy
+	 * @param dest - Receives the values (zeros if the tile is empty)
+	 * @param destPos - The position of the first value in dest
+	 */
+	private void copyTileRow(int tileRow, int tileColumn, int row, int column, int length,
+			int[] dest, int destPos) {
+
+		int slot = slotOf[tileRow * tilesAcross + tileColumn];
+		if (slot < 0) {
+			Arrays.fill(dest, destPos, destPos + length, 0);
+			return;
+		}
+		IntBuffer tile = segments[slot / TILES_PER_SEGMENT].asIntBuffer();
+		tile.position((slot % TILES_PER_SEGMENT) * TILE_SIZE * TILE_SIZE + row * TILE_SIZE + column);
+		tile.get(dest, destPos, length);
+	}
+
+
+	/**
+	 * Read one band.
+	 *
+	 * @param band - The band (ie tile row) to read
+	 * @return - output[r * numColumns + c] = The value at row band * TILE_SIZE + r, column c
+	 */
+	public int[] readBand(int band) {
+
+		int bandRows = Math.min(TILE_SIZE, numRows - band * TILE_SIZE);
+		int[] values = new int[bandRows * numColumns];
+		for (int tc = 0; tc < tilesAcross; tc++) {
+			if (slotOf[band * tilesAcross + tc] < 0) {
+				continue;	//an empty tile
+			}
+			int firstColumn = tc * TILE_SIZE;
+			int width = Math.min(TILE_SIZE, numColumns - firstColumn);
+			for (int r = 0; r < bandRows; r++) {
+				copyTileRow(band, tc, r, 0, width, values, r * numColumns + firstColumn);
+			}
+		}
+		return values;
+	}
+
+
+	/**
+	 * Read a rectangle (cells outside the raster are 0).
+	 *
+	 * @param startX - The first column of the rectangle
+	 * @param startY - The first row of the rectangle
+	 * @param width - The number of columns in the rectangle
+	 * @param height - The number of rows in the rectangle
+	 * @return - output[i][j] = The value at row startY + i, column startX + j
+	 */
+	public int[][] region(int startX, int startY, int width, int height) {
+
+		int[][] outGrid = new int[height][width];
+
+		int fromColumn = Math.max(startX, 0);
+		int toColumn = Math.min(startX + width, numColumns);
+		int fromRow = Math.max(startY, 0);
+		int toRow = Math.min(startY + height, numRows);
+
+		for (int i = fromRow; i < toRow; i++) {
+			int column = fromColumn;
+			while (column < toColumn) {
+				int tc = column / TILE_SIZE;
+				int length = Math.min(toColumn, (tc + 1) * TILE_SIZE) - column;
+				copyTileRow(i / TILE_SIZE, tc, i % TILE_SIZE, column % TILE_SIZE, length,
+						outGrid[i - startY], column - startX);
+				column += length;
+			}
+		}
+		return outGrid;
+	}
+
+
+	/** Writes a TiledRaster file one band at a time (bands may arrive in any order, from any thread). */
+	public static class Writer implements AutoCloseable {
+
+		private final FileChannel channel;
+
+		private final int numColumns;
+
+		private final int numRows;
+
+		private final int tilesAcross;
+
+		private final int[] slotOf;
+
+		private final AtomicInteger numStored;
+
+		private final long dataStart;
+
+
+		/**
+		 * @param file - The file to create (or overwrite)
+		 * @param numColumns - The width of the raster
+		 * @param numRows - The height of the raster
+		 */
+		public Writer(File file, int numColumns, int numRows) throws IOException {
+			this.channel = FileChannel.open(file.toPath(),
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			this.numColumns = numColumns;
+			this.numRows = numRows;
+			this.tilesAcross = (numColumns + TILE_SIZE - 1) / TILE_SIZE;
+			int tilesDown = (numRows + TILE_SIZE - 1) / TILE_SIZE;
+			this.slotOf = new int[tilesAcross * tilesDown];
+			Arrays.fill(slotOf, -1);
+			this.numStored = new AtomicInteger(0);
+			this.dataStart = HEADER_BYTES + 4L * slotOf.length;
+		}
+
+
+		/**
+		 * Split a band into tiles and write the non-empty ones.
+		 *
+		 * @param band - band[r * numColumns + c] = The value at row firstRow + r, column c
+		 * @param firstRow - A multiple of TILE_SIZE
+		 * @param bandRows - TILE_SIZE (or fewer for the last band)
+		 */
+		public void writeBand(int[] band, int firstRow, int bandRows) throws IOException {
+
+			if (firstRow % TILE_SIZE != 0 || bandRows > TILE_SIZE) {
+				throw new IllegalArgumentException("Bands must be aligned to tiles :: " + firstRow + ", " + bandRows);
+			}
+
+			ByteBuffer tile = ByteBuffer.allocate(TILE_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			int tileRow = firstRow / TILE_SIZE;
+
+			for (int tc = 0; tc < tilesAcross; tc++) {
+				int firstColumn = tc * TILE_SIZE;
+				int width = Math.min(TILE_SIZE, numColumns - firstColumn);
+
+				boolean isEmpty = true;
+				tile.clear();
+				for (int r = 0; r < TILE_SIZE; r++) {
+					for (int c = 0; c < TILE_SIZE; c++) {
+						int value = (r < bandRows && c < width) ? band[r * numColumns + firstColumn + c] : 0;
+						isEmpty &= (value == 0);
+						tile.putInt(value);
+					}
+				}
+				if (isEmpty) {
+					continue;
+				}
+
+				int slot = numStored.getAndIncrement();
+				slotOf[tileRow * tilesAcross + tc] = slot;
+				writeFully(tile, dataStart + (long) slot * TILE_BYTES);
+			}
+		}
+
+
+		private void writeFully(ByteBuffer buffer, long position) throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				position += channel.write(buffer, position);
+			}
+		}
+
+
+		/** Write the header and the tile index. */
+		@Override
+		public void close() throws IOException {
+			try {
+				ByteBuffer header = ByteBuffer.allocate((int) dataStart).order(ByteOrder.LITTLE_ENDIAN);
+				header.putInt(MAGIC);
+				header.putInt(VERSION);
+				header.putInt(numColumns);
+				header.putInt(numRows);
+				header.putInt(TILE_SIZE);
+				header.putInt(numStored.get());
+				for (int slot : slotOf) {
+					header.putInt(slot);
+				}
+				writeFully(header, 0);
+				channel.force(true);
+			} finally {
+				channel.close();
+			}
+		}
+	}
+}
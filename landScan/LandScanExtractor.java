@@ -2,12 +2,6 @@ package landScan;
 
 import gridBasedData.GridExtraction;
 import gridBasedData.PopulatedGrid;
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileReader;
-import java.io.ObjectInputStream;
-import java.util.StringTokenizer;
 
 
 /**
@@ -15,15 +9,6 @@ import java.util.StringTokenizer;
  */
 public class LandScanExtractor {
 
-	/** The original ascii raster file generated from ArcCatalog. (About 3.92 GB)*/
-	private static String filePath = "C:\\MyFiles\\JPARKER\\extraction\\asciiraster.txt";
-
-	/** The number of rows in the ORIGINAL dataset. */
-	private static int numRows = 20880;
-
-	/** The number of col in the ORIGINAL dataset. */
-	private static int numColumns = 43200;
-	
 	/** The US map is 57.56 units across. */
 	private static double actualXDistance = 360.0;
 	
@@ -63,113 +48,18 @@ public class LandScanExtractor {
 	}
 	
 	
-	private static String getFilePrefix(int startI, int startJ, int width, int height) {
-		//first look for the file before making the extraction
-		String fileName = "HighRes_LS_Extract_" + startI + "_" + startJ + "_" + width + "_" + height;
-		return fileName;
-	}
-	
-
-	public static int[][] getHighResLandScanExtraction(int startI, int startJ, int width, int height) {
-		//first look for the file before making the extraction
-		String fileName = getFilePrefix(startI, startJ, width, height) + ".ser";
-
-		File f = new File(fileName);
-		if (f.exists()) {
-			System.out.println("deserializing grid file");
-			int[][] outputGrid = null;
-
-			try {
-				FileInputStream fis = new FileInputStream(f);
-				ObjectInputStream ois = new ObjectInputStream(fis);
-				outputGrid = (int[][]) ois.readObject();
-
-				ois.close();
-				fis.close();
-
-				if (outputGrid == null) {
-					throw new IllegalStateException("outputGrid == null");
-				}
-
-			} catch (Exception ex) {
-				ex.printStackTrace();
-				System.exit(0);
-			}
-
-			return outputGrid;
-		} else {
-			System.out.println("Cannot find a serialized grid file");
-			int[][] outputGrid = buildGrid(startI, startJ, width, height);
-			LandScanUtility.serialize(outputGrid, fileName);
-			return outputGrid;
-		}
-	}	
-	
-
 	/**
+	 * Copy a full resolution rectangle out of the LandScan raster (cells outside the raster are 0).
+	 * Only the tiles that overlap the rectangle are read.
 	 * 
-	 * 
-	 * @param startX
-	 * @param startY
-	 * @param width
-	 * @param height
-	 * @return
+	 * @param startI - The first column of the rectangle
+	 * @param startJ - The first row of the rectangle
+	 * @param width - The number of columns in the rectangle
+	 * @param height - The number of rows in the rectangle
+	 * @return - output[i][j] = The population at row startJ + i, column startI + j
 	 */
-	private static int[][] buildGrid(int startX, int startY, int width, int height) {
-				
-		//read an asci file
-		BufferedReader br = null;
-
-		try {
-			br = new BufferedReader(new FileReader(filePath));
-			br.readLine();	//remove: ncols         43200
-			br.readLine();	//remove: nrows         20880
-			br.readLine();	//remove: xllcorner     -180
-			br.readLine();	//remove: yllcorner     -90
-			br.readLine();	//remove: cellsize      0.0083333333333333
-			br.readLine();	//remove: NODATA_value  -9999
-
-			int[][] outGrid = new int[height][width];
-
-			for (int i = 0; i < numRows; i++) {
-				
-				StringTokenizer tokenizer = new StringTokenizer(br.readLine());
-				
-				if(startY <= i && i < (startY + height)) {
-			
-					int j = 0;
-					while (tokenizer.hasMoreTokens()) {
-						int val = Integer.parseInt(tokenizer.nextToken());
-
-						if (startX <= j && j < (startX + width)) {
-							if (val != -9999) {
-								outGrid[i - startY][j - startX] = val;
-							} 
-						}
-						j++;
-						
-						if( j > (startX + width)) {
-							break;
-						}
-					}
-				}
-				
-				if( i > (startY + height)) {
-					break;
-				}
-
-				if (i % 250 == 0) {
-					System.out.println("Completed Row " + i);
-				}
-			}
-
-			return outGrid;
-
-		} catch (Exception ex) {
-			ex.printStackTrace();
-			System.exit(0);
-		}
-		throw new IllegalStateException("Should never get here");
+	public static int[][] getHighResLandScanExtraction(int startI, int startJ, int width, int height) {
+		return LandScanRaster.pyramid().fullResolution().region(startI, startJ, width, height);
 	}
 	
 	
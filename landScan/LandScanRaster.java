@@ -0,0 +1,261 @@
+package landScan;
+
+
+import gridBasedData.RasterPyramid;
+import gridBasedData.TiledRaster;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import util.Parallelizer;
+
+
+/**
+ * LandScanRaster provides fast, parallel access to the LandScan population raster.
+ *
+ * The original ascii raster (about 3.92 GB) is parsed at most once :: <br>
+ * (1) the file is memory mapped and split into byte ranges that are scanned (in parallel) for
+ * newlines -- this gives the byte offset of every row <br>
+ * (2) bands of TiledRaster.TILE_SIZE rows are parsed in parallel -- integers are parsed directly
+ * from the mapped bytes (no Strings, no StringTokenizer, no Integer.parseInt) <br>
+ * (3) each parsed band is written to a full resolution TiledRaster (NODATA is stored as 0). <p>
+ *
+ * The coarser levels of the RasterPyramid are then built from the tiles. Every later request
+ * (any block size, any extraction rectangle) is answered by the pyramid instead of parsing the
+ * ascii raster again.
+ */
+class LandScanRaster {
+
+	/** The original ascii raster file generated from ArcCatalog. (About 3.92 GB)*/
+	static final String ASCII_FILE = "C:\\MyFiles\\JPARKER\\extraction\\asciiraster.txt";
+
+	/** The pyramid's level files are named LandScan_[blockSize].tiles */
+	static final String PYRAMID_PREFIX = "LandScan";
+
+	/** The ascii raster is scanned for newlines in ranges no bigger than this. */
+	private static final long MAX_SCAN_BYTES = 1L << 28;
+
+	/** The pyramid (opened the first time it is needed). */
+	private static RasterPyramid pyramid = null;
+
+
+	/** Disallow instantiation of this class. */
+	private LandScanRaster() {
+		throw new RuntimeException("Creating a \"LandScanRaster\" object is not allowed");
+	}
+
+
+	/**
+	 * Get the LandScan RasterPyramid. The first call parses the ascii raster (if the full
+	 * resolution tiles do not exist yet) and builds any missing levels.
+	 */
+	static synchronized RasterPyramid pyramid() {
+
+		if (pyramid == null) {
+			int numThreads = Runtime.getRuntime().availableProcessors();
+			try {
+				File tiles = RasterPyramid.levelFile(PYRAMID_PREFIX, 1);
+				if (!tiles.exists()) {
+					System.out.println("parsing the LandScan ascii raster");
+					parseAscii(new File(ASCII_FILE), tiles, numThreads);
+				}
+				pyramid = new RasterPyramid(PYRAMID_PREFIX, RasterPyramid.DEFAULT_BLOCK_SIZES, numThreads);
+			} catch (IOException ex) {
+				ex.printStackTrace();
+				System.exit(0);
+			}
+		}
+		return pyramid;
+	}
+
+
+	/**
+	 * Parse the ascii raster in parallel.
+	 *
+	 * @param ascii - The ascii raster
+	 * @param tiles - The full resolution TiledRaster to create
+	 */
+	private static void parseAscii(File ascii, File tiles, int numThreads) throws IOException {
+
+		try (final FileChannel channel = FileChannel.open(ascii.toPath(), StandardOpenOption.READ)) {
+
+			final long fileSize = channel.size();
+
+			//parse the header -- "ncols 43200", "nrows 20880", ..., "NODATA_value -9999"
+			ByteBuffer head = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(fileSize, 4096));
+			int numColumns = -1;
+			int numRows = -1;
+			int noData = -9999;
+			int pos = 0;
+			while (pos < head.limit() && Character.isLetter((char) head.get(pos))) {
+				int lineEnd = pos;
+				while (lineEnd < head.limit() && head.get(lineEnd) != '\n') {
+					lineEnd++;
+				}
+				byte[] line = new byte[lineEnd - pos];
+				for (int k = 0; k < line.length; k++) {
+					line[k] = head.get(pos + k);
+				}
+				String[] tokens = new String(line, StandardCharsets.US_ASCII).trim().split("\\s+");
+				if (tokens[0].equalsIgnoreCase("ncols")) {
+					numColumns = Integer.parseInt(tokens[1]);
+				} else if (tokens[0].equalsIgnoreCase("nrows")) {
+					numRows = Integer.parseInt(tokens[1]);
+				} else if (tokens[0].equalsIgnoreCase("NODATA_value")) {
+					noData = Integer.parseInt(tokens[1]);
+				}
+				pos = lineEnd + 1;
+			}
+			if (numColumns <= 0 || numRows <= 0) {
+				throw new IllegalStateException("The ascii raster header is missing ncols or nrows");
+			}
+
+			final long[] rowStart = findRowStarts(channel, pos, fileSize, numRows, numThreads);
+
+			File partial = new File(tiles.getPath() + ".partial");
+			final TiledRaster.Writer writer = new TiledRaster.Writer(partial, numColumns, numRows);
+
+			final int cols = numColumns;
+			final int rows = numRows;
+			final int missing = noData;
+			final int size = TiledRaster.TILE_SIZE;
+			int numBands = (numRows + size - 1) / size;
+			Runnable[] jobs = new Runnable[numBands];
+			for (int b = 0; b < numBands; b++) {
+				final int firstRow = b * size;
+				final int bandRows = Math.min(size, rows - firstRow);
+				jobs[b] = new Runnable() {
+					@Override
+					public void run() {
+						try {
+							long start = rowStart[firstRow];
+							long end = (firstRow + bandRows < rows) ? rowStart[firstRow + bandRows] : fileSize;
+							ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+
+							int[] band = new int[bandRows * cols];
+							for (int r = 0; r < bandRows; r++) {
+								int from = (int) (rowStart[firstRow + r] - start);
+								int to = (firstRow + r + 1 < rows) ? (int) (rowStart[firstRow + r + 1] - start) : bytes.limit();
+								parseRow(bytes, from, to, band, r * cols, cols, missing, firstRow + r);
+							}
+
+							writer.writeBand(band, firstRow, bandRows);
+						} catch (IOException ex) {
+							throw new IllegalStateException(ex);
+						}
+					}
+				};
+			}
+			new Parallelizer(numThreads).doWorkInParallel(jobs);
+
+			writer.close();
+			Files.move(partial.toPath(), tiles.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			System.out.println("done parsing the LandScan ascii raster");
+		}
+	}
+
+
+	/**
+	 * Scan the data section of the ascii raster (in parallel) for newlines.
+	 *
+	 * @return - output[r] = The byte offset where row r begins
+	 */
+	private static long[] findRowStarts(final FileChannel channel, long dataStart, long fileSize,
+			int numRows, int numThreads) throws IOException {
+
+		int numRanges = (int) Math.max(numThreads * 4L, (fileSize - dataStart) / MAX_SCAN_BYTES + 1);
+		final long[][] found = new long[numRanges][];
+		final int[] numFound = new int[numRanges];
+
+		Runnable[] jobs = new Runnable[numRanges];
+		for (int k = 0; k < numRanges; k++) {
+			final int range = k;
+			final long from = dataStart + (fileSize - dataStart) * k / numRanges;
+			final long to = dataStart + (fileSize - dataStart) * (k + 1) / numRanges;
+			jobs[k] = new Runnable() {
+				@Override
+				public void run() {
+					try {
+						ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+						long[] starts = new long[64];
+						int n = 0;
+						int limit = bytes.limit();
+						for (int i = 0; i < limit; i++) {
+							if (bytes.get(i) == '\n') {
+								if (n == starts.length) {
+									starts = Arrays.copyOf(starts, 2 * n);
+								}
+								starts[n++] = from + i + 1;
+							}
+						}
+						found[range] = starts;
+						numFound[range] = n;
+					} catch (IOException ex) {
+						throw new IllegalStateException(ex);
+					}
+				}
+			};
+		}
+		new Parallelizer(numThreads).doWorkInParallel(jobs);
+
+		long[] rowStart = new long[numRows];
+		rowStart[0] = dataStart;
+		int row = 1;
+		for (int k = 0; k < numRanges && row < numRows; k++) {
+			for (int i = 0; i < numFound[k] && row < numRows; i++) {
+				rowStart[row++] = found[k][i];
+			}
+		}
+		if (row < numRows) {
+			throw new IllegalStateException("The ascii raster has " + row + " rows, expected " + numRows);
+		}
+		return rowStart;
+	}
+
+
+	/**
+	 * Parse one row of the ascii raster into band[offset ... offset+numColumns-1].
+	 *
+	 * @param bytes - The mapped bytes of a band
+	 * @param from - The index of the row's first byte
+	 * @param to - The index after the row's last byte
+	 */
+	private static void parseRow(ByteBuffer bytes, int from, int to, int[] band, int offset,
+			int numColumns, int noData, int rowNum) {
+
+		int column = 0;
+		int pos = from;
+		while (pos < to) {
+			byte c = bytes.get(pos);
+			if (c == '-' || (c >= '0' && c <= '9')) {
+				boolean isNegative = (c == '-');
+				if (isNegative) {
+					pos++;
+				}
+				int value = 0;
+				while (pos < to && (c = bytes.get(pos)) >= '0' && c <= '9') {
+					value = 10 * value + (c - '0');
+					pos++;
+				}
+				if (isNegative) {
+					value = -value;
+				}
+				if (column == numColumns) {
+					throw new IllegalStateException("Row " + rowNum + " has too many columns");
+				}
+				band[offset + column++] = (value == noData) ? 0 : value;
+			} else {
+				pos++;
+			}
+		}
+		if (column != numColumns) {
+			throw new IllegalStateException(
+					"Row " + rowNum + " has " + column + " columns, expected " + numColumns);
+		}
+	}
+}
@@ -13,6 +13,10 @@ import model.people.HouseholdFactory.AgeCohort;
  *
  * For instance, if you need to know which stage of disease the "contactor" was in as well as how
  * intimate the contact is this object might store a "DiseaseStatus" and "IntimacyLevel" variables
+ *
+ * There are only a few distinct ContactInfos, so every one of them is created once (a flyweight).
+ * Contacts are passed around as their primitive code (see encode) and decode returns the shared
+ * instance, so implementing a contact never allocates a ContactInfo.
  */
 public class ContactInfo {
 
@@ -25,17 +29,77 @@ public class ContactInfo {
 	/** The type of contact to implement. */
 	public final ContactType contactType;
 
+	/** See encode(). */
+	private final int code;
+
 
 	/**
-	 * Creates a new instance of ContactInfo
+	 * Creates a new instance of ContactInfo (only used to fill the code table)
 	 *
 	 * @param age - The AgeCohort of the contactor
 	 * @param diseaseState - The DiseaseState of the contactor
 	 * @param contactType - The type of contact being implemented
 	 */
-	public ContactInfo(HouseholdFactory.AgeCohort age, DiseaseState diseaseState, ContactType contactType) {
+	private ContactInfo(HouseholdFactory.AgeCohort age, DiseaseState diseaseState, ContactType contactType) {
 		this.age = age;
 		this.diseaseState = diseaseState;
 		this.contactType = contactType;
+		this.code = encode(age.ordinal(), diseaseState.ordinal(), contactType.ordinal());
+	}
+
+
+	/** Cached copies of the enum values (values() clones its array on every call). */
+	private static final DiseaseState[] diseaseStates = DiseaseState.values();
+
+	private static final ContactType[] contactTypes = ContactType.values();
+
+	/** The number of distinct (age, diseaseState, contactType) combinations. */
+	private static final int NUM_CODES =
+			HouseholdFactory.ages.length * diseaseStates.length * contactTypes.length;
+
+	/** codeTable[code] = The ContactInfo with that code. */
+	private static final ContactInfo[] codeTable = buildCodeTable();
+
+
+	private static ContactInfo[] buildCodeTable() {
+
+		ContactInfo[] table = new ContactInfo[NUM_CODES];
+		for (AgeCohort age : HouseholdFactory.ages) {
+			for (DiseaseState state : diseaseStates) {
+				for (ContactType type : contactTypes) {
+					ContactInfo info = new ContactInfo(age, state, type);
+					table[info.encode()] = info;
+				}
+			}
+		}
+		return table;
+	}
+
+
+	/** @return - A small non-negative integer that uniquely identifies this ContactInfo's values. */
+	public int encode() {
+		return code;
+	}
+
+
+	/**
+	 * @param age - The ordinal of the contactor's AgeCohort
+	 * @param diseaseState - The ordinal of the contactor's DiseaseState
+	 * @param contactType - The ordinal of the ContactType
+	 *
+	 * @return - The code of the ContactInfo with these values (without looking it up).
+	 */
+	public static int encode(int age, int diseaseState, int contactType) {
+		return (age * diseaseStates.length + diseaseState) * contactTypes.length + contactType;
+	}
+
+
+	/**
+	 * @param code - The result of a call to ContactInfo.encode()
+	 *
+	 * @return - A shared (immutable) ContactInfo with the encoded values.
+	 */
+	public static ContactInfo decode(int code) {
+		return codeTable[code];
 	}
 }
@@ -166,8 +166,8 @@ public class GlobalModelRecord {
 
 		for (int i = 0; i < pop.numPlaces; i++) {
 
-			x = pop.extraction.gridPlaces[i].x;
-			y = pop.extraction.gridPlaces[i].y;
+			x = pop.placeX[i];
+			y = pop.placeY[i];
 
 
 			infections = contagious[i][entryNum];
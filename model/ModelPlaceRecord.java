@@ -113,6 +113,51 @@ public class ModelPlaceRecord implements Externalizable {
 		recVec.add(rec);
 	}
 
+
+
+	/**
+	 * @return - Every data point in the order they were added (6 values per data point, in the
+	 * order of addDataPoint's arguments).
+	 */
+	public int[] copyDataPoints() {
+
+		int[] dataPoints = new int[6 * susVec.size()];
+		for (int i = 0; i < susVec.size(); i++) {
+			dataPoints[6 * i] = susVec.get(i);
+			dataPoints[6 * i + 1] = contagiousVec.get(i);
+			dataPoints[6 * i + 2] = nonContagiousVec.get(i);
+			dataPoints[6 * i + 3] = symptomaticVec.get(i);
+			dataPoints[6 * i + 4] = nonSymptomaticVec.get(i);
+			dataPoints[6 * i + 5] = recVec.get(i);
+		}
+		return dataPoints;
+	}
+
+
+	/** Add the data points returned by copyDataPoints (used when a run resumes from a Checkpoint). */
+	public void addDataPoints(int[] dataPoints) {
+		for (int i = 0; i + 5 < dataPoints.length; i += 6) {
+			addDataPoint(dataPoints[i], dataPoints[i + 1], dataPoints[i + 2],
+					dataPoints[i + 3], dataPoints[i + 4], dataPoints[i + 5]);
+		}
+	}
+
+
+	/** Remove the most recent data point (used when the OPTIMISTIC engine rolls back). */
+	public void removeLastDataPoint() {
+
+		if (susVec.isEmpty()) {
+			throw new IllegalStateException("There is no data point to remove");
+		}
+
+		susVec.remove(susVec.size() - 1);
+		contagiousVec.remove(contagiousVec.size() - 1);
+		nonContagiousVec.remove(nonContagiousVec.size() - 1);
+		symptomaticVec.remove(symptomaticVec.size() - 1);
+		nonSymptomaticVec.remove(nonSymptomaticVec.size() - 1);
+		recVec.remove(recVec.size() - 1);
+	}
+
 	
 	/**  Return the history of susceptibles in this record. */
 	public int[] getSusHistory() {
@@ -39,4 +39,11 @@ public interface Disease {
 	
 	
 	double baseInfectiousness();
+
+
+	/**
+	 * @return - A lower bound on the time between exposure and becoming contagious. A newly
+	 * exposed agent cannot contact (and therefore infect) anyone sooner than this.
+	 */
+	LengthOfTime minimumLatentPeriod();
 }
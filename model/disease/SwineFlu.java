@@ -14,6 +14,9 @@ public class SwineFlu implements Disease {
 
 	private final static double BASE_INFECTIOUSNESS = 0.0255;
 
+	/** The shortest latent period getTimeContagious can produce. */
+	private final static LengthOfTime MIN_LATENT_PERIOD = new LengthOfTime(24, ModelTimeUnit.HOURS);
+
 
 	/**
 	 * @param randDraw - A uniformly distributed random number between 0 and 1
@@ -114,4 +117,10 @@ public class SwineFlu implements Disease {
 	public double baseInfectiousness() {
 		return BASE_INFECTIOUSNESS;
 	}
+
+
+	@Override
+	public LengthOfTime minimumLatentPeriod() {
+		return MIN_LATENT_PERIOD;
+	}
 }
@@ -1,15 +1,18 @@
 package model.events;
 
 
+import cern.jet.random.engine.RandomEngine;
 import core.ModelPlace;
-import model.disease.DiseaseTimeLine;
+import core.StateJournal;
+import model.disease.DiseaseState;
+import model.disease.Diseases;
+import time.LengthOfTime;
 import time.TimeStamp;
-import time.TimeStamps;
 
 
 /**
  * An AgentEvent keeps track of all the events that might effect a single agent. Currently, this
- * list includes: (1) FamilyContactEvents, (2) RandomContactEvents, and (3) DiseaseProgressEvents
+ * list includes: (1) FamilyContactEvents, (2) RandomContactEvents, and (3) disease progress
  *
  * An AgentEvent is stored in a WorkerThread's PriorityQueue. The priority of this event is
  * determined by the minimum timeOfEvent that each of the above events (family,random,disease) is
@@ -18,6 +21,9 @@ import time.TimeStamps;
  * object will then create the next event of that type (if appropriate) and insert itself back into
  * the queue (if appropriate).
  *
+ * The state of the agent's schedule lives in the AgentEventStore of the agent's AgentGroup. An
+ * AgentEvent only remembers the agent and its row.
+ *
  * Creating only ONE AgentEvent object per infected agent allows the global model to:
  * (1) Have a shorter, faster, more efficient PriorityQueue that runs the model. (The faster this PQ
  * is the faster we can push events to and pop events from the PQ)
@@ -33,15 +39,8 @@ public class AgentEvent extends SimulationEvent {
 
 	public final int personIndex;
 
-	protected DiseaseTimeLine diseaseTimeLine;
-
-	protected TimeStamp diseaseEventTime;
-
-	protected TimeStamp familyEventTime;
-
-	protected TimeStamp randomEventTime;
-
-	protected TimeStamp repeatableEventTime;
+	/** This agent's row in its AgentGroup's AgentEventStore. */
+	private final int slot;
 
 
 	/**
@@ -55,35 +54,86 @@ public class AgentEvent extends SimulationEvent {
 	public AgentEvent(TimeStamp timeOfExposure, ModelPlace place, int personIndex, boolean hasFamily) {
 		super(null, place);
 		this.personIndex = personIndex;
+		this.slot = store().allocate(this);
 
 		computeEventTimes(timeOfExposure, hasFamily);
 	}
 
 
+	/** Rebuild the AgentEvent of an agent in a Checkpoint (see restore). */
+	private AgentEvent(ModelPlace place, int personIndex, int tick, int idNum, int[] rows, int offset) {
+		super(null, place);
+		this.personIndex = personIndex;
+		this.slot = store().allocate(this);
+		this.myId = idNum;
+
+		store().setRow(slot, rows, offset);
+		setTick(tick);
+	}
+
+
+	/**
+	 * Rebuild the AgentEvent of an agent whose schedule was saved in a Checkpoint. No random
+	 * numbers are drawn. The caller must restore the place's event counter afterwards (creating
+	 * this event consumed an idNum).
+	 *
+	 * @param place - The ModelPlace that owns this agent
+	 * @param personIndex - The index of the agent that this object manages
+	 * @param tick - The tick of the saved AgentEvent
+	 * @param idNum - The idNum of the saved AgentEvent
+	 * @param rows - The agent's schedule (written by AgentEventStore.copyRow) starts at rows[offset]
+	 */
+	public static AgentEvent restore(ModelPlace place, int personIndex, int tick, int idNum,
+			int[] rows, int offset) {
+		return new AgentEvent(place, personIndex, tick, idNum, rows, offset);
+	}
+
+
+	/** @return - The store that holds this agent's schedule. */
+	private AgentEventStore store() {
+		return place.locals().eventStore();
+	}
+
+
 	private void computeEventTimes(TimeStamp timeOfExposure, boolean hasFamily) {
 
-		this.diseaseTimeLine = new DiseaseTimeLine(timeOfExposure, place.getRand());
+		AgentEventStore store = store();
+		RandomEngine rng = place.getRand();
+
+		TimeStamp infectiousTime = Diseases.disease().getTimeContagious(
+				timeOfExposure, rng.nextDouble());
+
+		TimeStamp symptomaticTime = Diseases.disease().getTimeSymptomatic(
+				timeOfExposure, rng.nextDouble());
+
+		LengthOfTime contagiousPeriod = Diseases.disease().getContagiousPeriod(
+				rng.nextDouble());
 
-		this.diseaseEventTime = diseaseTimeLine.curTime();
-		
-		this.setTime(diseaseEventTime);
+		store.exposureTick[slot] = timeOfExposure.asNumTicks();
+		store.infectiousTick[slot] = infectiousTime.asNumTicks();
+		store.symptomaticTick[slot] = symptomaticTime.asNumTicks();
+		store.recoveryTick[slot] = infectiousTime.add(contagiousPeriod).asNumTicks();
+		store.stagesReached[slot] = 0;
+		store.diseaseTick[slot] = store.stageTick(slot, 0);
+
+		setTick(store.diseaseTick[slot]);
 
 		//create the FamilyContactEvent if required
 		if (hasFamily) {
-			familyEventTime = FamilyContactEvent.setNextTime(place, diseaseTimeLine.infectiousTime());
+			store.familyTick[slot] = FamilyContactEvent.setNextTime(place, store.infectiousTick[slot]);
 		} else {
-			familyEventTime = TimeStamps.neverOccuringTime();
+			store.familyTick[slot] = AgentEventStore.NEVER;
 		}
 
 		//schedule the RandomContactEvent
-		this.randomEventTime = RandomContactEvent.setNextTime(
+		store.randomTick[slot] = RandomContactEvent.setNextTime(
 				place,
-				diseaseTimeLine.infectiousTime());
+				store.infectiousTick[slot]);
 
 		//schedule the Repeatable Contacts
-		this.repeatableEventTime = RepeatableContactEvent.setNextTime(
+		store.repeatableTick[slot] = RepeatableContactEvent.setNextTime(
 				place,
-				diseaseTimeLine.infectiousTime());
+				store.infectiousTick[slot]);
 	}
 
 
@@ -92,20 +142,37 @@ public class AgentEvent extends SimulationEvent {
 	 * thought.
 	 */
 	public void recomputeEventTimes(TimeStamp updatedTimeOfExposure) {
+		journalState();
 		computeEventTimes(
 				updatedTimeOfExposure,
-				familyEventTime.occurs());
+				store().familyTick[slot] != AgentEventStore.NEVER);
 	}
 
 
-	/** Return the time this agent was 1st exposed to disease. */
-	public TimeStamp getTimeOfExposure() {
-		return diseaseTimeLine.timeOfExposure();
+	/** @return - This agent's row in its AgentGroup's AgentEventStore. */
+	public int slot() {
+		return slot;
 	}
 
 
-	public DiseaseTimeLine diseaseHistory() {
-		return this.diseaseTimeLine;
+	/** Return the tick this agent was 1st exposed to disease. */
+	public int exposureTick() {
+		return store().exposureTick[slot];
+	}
+
+
+	/**
+	 * The agent recovered (or its exposure was undone) -- return this agent's row to the store.
+	 * This AgentEvent must not be queued afterwards.
+	 */
+	public void releaseSlot() {
+		store().release(slot);
+	}
+
+
+	/** OPTIMISTIC engine -- Undo releaseSlot(). */
+	public void reclaimSlot() {
+		store().reclaim(slot, this);
 	}
 
 
@@ -113,65 +180,139 @@ public class AgentEvent extends SimulationEvent {
 	 * Basically a switch statement that implements the correct event and then adds itself
 	 * back to the PriorityQueue if appropiate. If 2 events have the same timeOfEvent then only
 	 * 1 event is actually executed. In the event of a timeOfEvent tie the events are executed in
-	 * this order :: DiseaseProgressEvent, RandomContactEvent, FamilyContactEvent.
+	 * this order :: disease progress, RandomContactEvent, RepeatableContactEvent, FamilyContactEvent.
 	 */
 	@Override
 	public void implementEvent() {
 
-		implementProperEvent();
+		journalState();
 
 		//add this object back to the queue if this agent hasn't recovered
-		if (diseaseEventTime.occurs()) {
+		if (implementProperEvent()) {
 
-			timeOfEvent = TimeStamps.firstOf(
-					diseaseEventTime,
-					randomEventTime,
-					repeatableEventTime,
-					familyEventTime);
+			AgentEventStore store = store();
+			setTick(Math.min(
+					Math.min(store.diseaseTick[slot], store.randomTick[slot]),
+					Math.min(store.repeatableTick[slot], store.familyTick[slot])));
 
 			(place.thread()).addEvent(this);
-		} else {
-//			System.out.println("Agent :: " + this.place.placeIDNum() + "-" + this.personIndex + " is done");
 		}
 	}
 
 
 	/**
-	 * Return the SimulationEvent that this AgentEvent will implement when implementEvent
-	 * is called on this object.
+	 * Implement the event (disease progress, random, family or repeatable contact) that occurs at
+	 * this AgentEvent's time and compute the next time of that type of event.
+	 *
+	 * @return - False if the agent recovered (its row has been released)
 	 */
-	private void implementProperEvent() {
+	private boolean implementProperEvent() {
+
+		AgentEventStore store = store();
+		int tick = getTick();
+
+		if (tick == store.diseaseTick[slot]) {
+
+			int stage = store.stagesReached[slot];
+			DiseaseState resultingState = store.stageState(slot, stage);
+
+			store.stagesReached[slot] = (byte) (stage + 1);
+			store.diseaseTick[slot] = store.stageTick(slot, stage + 1);
+
+			//may release this agent's row (if the agent recovered)
+			place.locals().setDiseaseState(personIndex, resultingState);
 
-		if (timeOfEvent == diseaseEventTime) {
-			
-			DiseaseProgressEvent event = diseaseTimeLine.popDiseaseProgressEvent();
-			event.implementEvent(place, personIndex, this);
-			
-			diseaseEventTime = diseaseTimeLine.curTime();
+			return (resultingState != DiseaseState.RECOVERED);
 
-		} else if (timeOfEvent == randomEventTime) {
+		} else if (tick == store.randomTick[slot]) {
 
-			randomEventTime = RandomContactEvent.implementEvent(
+			store.randomTick[slot] = RandomContactEvent.implementEvent(
 					place,
 					personIndex,
-					randomEventTime);
+					tick);
 
-		} else if (timeOfEvent == familyEventTime) {
+		} else if (tick == store.repeatableTick[slot]) {
 
-			familyEventTime = FamilyContactEvent.implementEvent(
+			store.repeatableTick[slot] = RepeatableContactEvent.implementEvent(
 					place,
 					personIndex,
-					familyEventTime);
+					tick);
 
-		} else if (timeOfEvent == repeatableEventTime) {
+		} else if (tick == store.familyTick[slot]) {
 
-			repeatableEventTime = RepeatableContactEvent.implementEvent(
+			store.familyTick[slot] = FamilyContactEvent.implementEvent(
 					place,
 					personIndex,
-					repeatableEventTime);
+					tick);
+
 		} else {
 			throw new IllegalStateException("time was an invalid value, object malformed");
 		}
+		return true;
+	}
+
+
+	/** OPTIMISTIC engine -- Save every field this object is about to change. */
+	private void journalState() {
+		StateJournal journal = place.thread().journal();
+		if (journal.isRecording()) {
+			journal.record(new SavedState());
+		}
+	}
+
+
+	/** OPTIMISTIC engine -- A copy of the enclosing AgentEvent's tick and row. */
+	private class SavedState extends StateJournal.Entry {
+
+		private final int savedTick = getTick();
+
+		private final int exposureTick;
+
+		private final int infectiousTick;
+
+		private final int symptomaticTick;
+
+		private final int recoveryTick;
+
+		private final byte stagesReached;
+
+		private final int diseaseTick;
+
+		private final int familyTick;
+
+		private final int randomTick;
+
+		private final int repeatableTick;
+
+
+		SavedState() {
+			AgentEventStore store = store();
+			this.exposureTick = store.exposureTick[slot];
+			this.infectiousTick = store.infectiousTick[slot];
+			this.symptomaticTick = store.symptomaticTick[slot];
+			this.recoveryTick = store.recoveryTick[slot];
+			this.stagesReached = store.stagesReached[slot];
+			this.diseaseTick = store.diseaseTick[slot];
+			this.familyTick = store.familyTick[slot];
+			this.randomTick = store.randomTick[slot];
+			this.repeatableTick = store.repeatableTick[slot];
+		}
+
+
+		@Override
+		protected void undo() {
+			AgentEventStore store = store();
+			setTick(savedTick);
+			store.exposureTick[slot] = exposureTick;
+			store.infectiousTick[slot] = infectiousTick;
+			store.symptomaticTick[slot] = symptomaticTick;
+			store.recoveryTick[slot] = recoveryTick;
+			store.stagesReached[slot] = stagesReached;
+			store.diseaseTick[slot] = diseaseTick;
+			store.familyTick[slot] = familyTick;
+			store.randomTick[slot] = randomTick;
+			store.repeatableTick[slot] = repeatableTick;
+		}
 	}
 
 
@@ -0,0 +1,222 @@
+package model.events;
+
+
+import java.util.Arrays;
+import model.disease.DiseaseState;
+import time.Ticks;
+
+
+/**
+ * An AgentEventStore holds the schedules of the infected agents of one AgentGroup in parallel
+ * primitive columns. Every AgentEvent owns one row (its slot) for as long as its agent is sick,
+ * the AgentEvent itself is only a handle (personIndex, slot) that is kept in the event queue.
+ *
+ * A row stores the agent's disease stage ticks (exposure, infectious, symptomatic, recovery), the
+ * number of disease stages already reached and the tick of the next disease, family, random and
+ * repeatable event. Rescheduling an agent overwrites ints in its row instead of replacing objects.
+ *
+ * The rows of recovered agents are recycled. A store is only accessed by the WorkerThread that
+ * owns the AgentGroup's ModelPlace.
+ */
+public class AgentEventStore {
+
+	/** The tick of an event that never occurs (see TimeStamps.neverOccuringTime()). */
+	static final int NEVER = Ticks.NEVER;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** The number of values in a row (see copyRow). */
+	public static final int ROW_LENGTH = 9;
+
+	int[] exposureTick;
+
+	int[] infectiousTick;
+
+	/** NEVER if the agent never shows symptoms. */
+	int[] symptomaticTick;
+
+	int[] recoveryTick;
+
+	/** The number of disease stages the agent has already reached. */
+	byte[] stagesReached;
+
+	/** The tick of the next disease stage (NEVER once the agent has recovered). */
+	int[] diseaseTick;
+
+	/** NEVER if the agent has no family. */
+	int[] familyTick;
+
+	int[] randomTick;
+
+	int[] repeatableTick;
+
+	/** events[slot] = The AgentEvent that owns the row (null if the row is free). */
+	private AgentEvent[] events;
+
+	/** Every slot below this has been handed out at least once. */
+	private int numSlots;
+
+	/** Released slots (a stack). */
+	private int[] freeSlots;
+
+	private int numFree;
+
+
+	public AgentEventStore() {
+		this.exposureTick = new int[INITIAL_CAPACITY];
+		this.infectiousTick = new int[INITIAL_CAPACITY];
+		this.symptomaticTick = new int[INITIAL_CAPACITY];
+		this.recoveryTick = new int[INITIAL_CAPACITY];
+		this.stagesReached = new byte[INITIAL_CAPACITY];
+		this.diseaseTick = new int[INITIAL_CAPACITY];
+		this.familyTick = new int[INITIAL_CAPACITY];
+		this.randomTick = new int[INITIAL_CAPACITY];
+		this.repeatableTick = new int[INITIAL_CAPACITY];
+		this.events = new AgentEvent[INITIAL_CAPACITY];
+		this.freeSlots = new int[INITIAL_CAPACITY];
+		this.numSlots = 0;
+		this.numFree = 0;
+	}
+
+
+	/** @return - A free row, now owned by owner (the other columns of the row hold stale values). */
+	int allocate(AgentEvent owner) {
+
+		if (numFree > 0) {
+			int slot = freeSlots[--numFree];
+			events[slot] = owner;
+			return slot;
+		}
+
+		if (numSlots == exposureTick.length) {
+			int capacity = 2 * numSlots;
+			exposureTick = Arrays.copyOf(exposureTick, capacity);
+			infectiousTick = Arrays.copyOf(infectiousTick, capacity);
+			symptomaticTick = Arrays.copyOf(symptomaticTick, capacity);
+			recoveryTick = Arrays.copyOf(recoveryTick, capacity);
+			stagesReached = Arrays.copyOf(stagesReached, capacity);
+			diseaseTick = Arrays.copyOf(diseaseTick, capacity);
+			familyTick = Arrays.copyOf(familyTick, capacity);
+			randomTick = Arrays.copyOf(randomTick, capacity);
+			repeatableTick = Arrays.copyOf(repeatableTick, capacity);
+			events = Arrays.copyOf(events, capacity);
+		}
+		events[numSlots] = owner;
+		return numSlots++;
+	}
+
+
+	/** Return a row to the store. */
+	void release(int slot) {
+		if (numFree == freeSlots.length) {
+			freeSlots = Arrays.copyOf(freeSlots, 2 * numFree);
+		}
+		freeSlots[numFree++] = slot;
+		events[slot] = null;
+	}
+
+
+	/** OPTIMISTIC engine -- Take back a specific row that was released (to undo the release). */
+	void reclaim(int slot, AgentEvent owner) {
+
+		for (int k = numFree - 1; k >= 0; k--) {
+			if (freeSlots[k] == slot) {
+				freeSlots[k] = freeSlots[--numFree];
+				events[slot] = owner;
+				return;
+			}
+		}
+		throw new IllegalStateException("Slot " + slot + " is not free");
+	}
+
+
+	/** @return - The AgentEvent that owns a row (null if the row is free). */
+	public AgentEvent event(int slot) {
+		return events[slot];
+	}
+
+
+	/** @return - The number of rows currently owned by AgentEvents. */
+	public int size() {
+		return numSlots - numFree;
+	}
+
+
+	/**
+	 * Copy a row into an array :: exposure, infectious, symptomatic and recovery tick, stages
+	 * reached, then the tick of the next disease, family, random and repeatable event.
+	 */
+	public void copyRow(int slot, int[] into, int offset) {
+		into[offset] = exposureTick[slot];
+		into[offset + 1] = infectiousTick[slot];
+		into[offset + 2] = symptomaticTick[slot];
+		into[offset + 3] = recoveryTick[slot];
+		into[offset + 4] = stagesReached[slot];
+		into[offset + 5] = diseaseTick[slot];
+		into[offset + 6] = familyTick[slot];
+		into[offset + 7] = randomTick[slot];
+		into[offset + 8] = repeatableTick[slot];
+	}
+
+
+	/** Overwrite a row with values written by copyRow. */
+	void setRow(int slot, int[] from, int offset) {
+		exposureTick[slot] = from[offset];
+		infectiousTick[slot] = from[offset + 1];
+		symptomaticTick[slot] = from[offset + 2];
+		recoveryTick[slot] = from[offset + 3];
+		stagesReached[slot] = (byte) from[offset + 4];
+		diseaseTick[slot] = from[offset + 5];
+		familyTick[slot] = from[offset + 6];
+		randomTick[slot] = from[offset + 7];
+		repeatableTick[slot] = from[offset + 8];
+	}
+
+
+	/** @return - The number of disease stages of an agent (recovery is always the last). */
+	int numStages(int slot) {
+		return (symptomaticTick[slot] == NEVER) ? 2 : 3;
+	}
+
+
+	/** @return - True if the agent becomes symptomatic before it becomes contagious. */
+	private boolean isSymptomaticFirst(int slot) {
+		return symptomaticTick[slot] < infectiousTick[slot];
+	}
+
+
+	/** @return - The tick of an agent's k-th disease stage (NEVER if k is past the last stage). */
+	int stageTick(int slot, int k) {
+
+		int numStages = numStages(slot);
+		if (k >= numStages) {
+			return NEVER;
+		} else if (k == numStages - 1) {
+			return recoveryTick[slot];
+		} else if (numStages == 2) {
+			return infectiousTick[slot];
+		} else if (k == 0) {
+			return isSymptomaticFirst(slot) ? symptomaticTick[slot] : infectiousTick[slot];
+		} else {
+			return isSymptomaticFirst(slot) ? infectiousTick[slot] : symptomaticTick[slot];
+		}
+	}
+
+
+	/** @return - The DiseaseState an agent enters at its k-th disease stage. */
+	DiseaseState stageState(int slot, int k) {
+
+		int numStages = numStages(slot);
+		if (k == numStages - 1) {
+			return DiseaseState.RECOVERED;
+		} else if (numStages == 2) {
+			return DiseaseState.CONTAGIOUS_ASSYMPTOMATIC;
+		} else if (k == 0) {
+			return isSymptomaticFirst(slot)
+					? DiseaseState.NONCONTAGIOUS_SYMPTOMATIC
+					: DiseaseState.CONTAGIOUS_ASSYMPTOMATIC;
+		} else {
+			return DiseaseState.CONTAGIOUS_SYMPTOMATIC;
+		}
+	}
+}
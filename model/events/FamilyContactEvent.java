@@ -3,7 +3,6 @@ package model.events;
 
 import core.ModelPlace;
 import model.people.BehaviorStreams;
-import time.TimeStamp;
 
 
 /**
@@ -16,13 +15,13 @@ public final class FamilyContactEvent {
 	 * Calculate and then return the time of the next Family Contact Event. 
 	 * 
 	 * @param place - The ModelPlace that will provide a random number generator
-	 * @param minTime - The earliest possible next occurance of a Family Contact Event
+	 * @param minTick - The earliest possible next occurance of a Family Contact Event (in ticks)
 	 * 
-	 * @return - The time of the next Family Contact Event
+	 * @return - The tick of the next Family Contact Event
 	 */
-	public static TimeStamp setNextTime(ModelPlace place, TimeStamp minTime) {
+	public static int setNextTime(ModelPlace place, int minTick) {
 		//calculate time of the next family Contact
-		return BehaviorStreams.familyContactStream.timeOfNextEvent(minTime, place.getRand());
+		return BehaviorStreams.familyContactStream.tickOfNextEvent(minTick, place.getRand());
 	}
 
 
@@ -31,16 +30,16 @@ public final class FamilyContactEvent {
 	 * 
 	 * @param place - The ModelPlace where a Family Contact will occur
 	 * @param personIndex - The "hero" in a family contact
-	 * @param currentTime - The time this event should occur
+	 * @param currentTick - The tick this event should occur
 	 * 
-	 * @return - The time of the next event 
+	 * @return - The tick of the next event 
 	 */
-	public static TimeStamp implementEvent(ModelPlace place, int personIndex, TimeStamp currentTime) {
+	public static int implementEvent(ModelPlace place, int personIndex, int currentTick) {
 
 		//execute a Family Contact
 		place.locals().makeRandomFamilyContact(personIndex);
 		
 		//compute time of next Family Contact Event
-		return setNextTime(place , currentTime);
+		return setNextTime(place, currentTick);
 	}
 }
@@ -1,10 +1,10 @@
 package model.events;
 
 
-import core.InteractiveLargeScaleModel;
 import core.ModelPlace;
 import time.LengthOfTime;
 import time.TimeStamp;
+import time.TimeStamps;
 
 
 /**
@@ -14,19 +14,11 @@ import time.TimeStamp;
  */
 public class LogUpdateEvent extends SimulationEvent {
 
-	/** The frequency at which Log Entries are recorded. */
-	private final static LengthOfTime frequency;
+	/** The frequency at which Log Entries are recorded (read from the place's model). */
+	private final LengthOfTime frequency;
 
-
-	static {
-		frequency = InteractiveLargeScaleModel.instance.simProps().logUpdateFreq();
-	}
-
-
-	/** Get how frequently Log Entries are generated. */
-	public static LengthOfTime getFrequency() {
-		return frequency;
-	}
+	/** The frequency as a number of ticks (so rescheduling does not allocate TimeStamps). */
+	private final int frequencyTicks;
 
 
 	/**
@@ -34,13 +26,31 @@ public class LogUpdateEvent extends SimulationEvent {
 	 */
 	public LogUpdateEvent(TimeStamp time, ModelPlace place) {
 		super(time, place);
+		this.frequency = place.thread().manager().getModel().simProps().logUpdateFreq();
+		this.frequencyTicks = TimeStamps.initalTime().add(frequency).asNumTicks();
+	}
+
+
+	/**
+	 * Recreate a LogUpdateEvent saved in a Checkpoint (it keeps the idNum it had when it was
+	 * saved).
+	 */
+	public LogUpdateEvent(TimeStamp time, ModelPlace place, int idNum) {
+		this(time, place);
+		this.myId = idNum;
+	}
+
+
+	/** Get how frequently Log Entries are generated. */
+	public LengthOfTime getFrequency() {
+		return frequency;
 	}
 
 
 	/** Return a String that describes this event. */
 	@Override
 	public String toString() {
-		return "LogUpdate event for place " + place.placeIDNum() + " at time :: " + timeOfEvent;
+		return "LogUpdate event for place " + place.placeIDNum() + " at time :: " + getTime();
 	}
 
 
@@ -51,7 +61,7 @@ public class LogUpdateEvent extends SimulationEvent {
 	@Override
 	public void implementEvent() {
 		place.logCurrentState();			//tell the ModelPlace to record its current state
-		this.setTime(timeOfEvent.add(frequency));
+		this.setTick(getTick() + frequencyTicks);
 		(place.thread()).addEvent(this);	//ensure that future log entries are generated
 	}
 }
\ No newline at end of file
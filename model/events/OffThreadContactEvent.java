@@ -13,28 +13,47 @@ import time.TimeStamp;
  * resides on a different GlobalModeNode (aka machine or JVM).<p>
  *
  * Before a ContactEvent can be implemented it must be given a reference to its ModelPlace.
- * It can't have access to its ModelPlace at creation because that ModelPlace is off-node.
+ * It can't have access to its ModelPlace at creation because that ModelPlace is off-node.<p>
+ *
+ * While an off-thread contact travels between threads it is stored as 2 primitive longs (see the
+ * pack and unpack methods below) rather than as an object. <br>
+ * - timeAndPlace = (tick of the contact) << 32 | (index of the destination ModelPlace) <br>
+ * - contact = (index of the person to contact) << 32 | ContactInfo.encode() <p>
+ *
+ * The OPTIMISTIC engine also sends anti-messages -- a copy of a previously sent record with the
+ * (otherwise unused) sign bit of the place index set.<p>
+ *
+ * The other engines recycle an OffThreadContactEvent once it has been implemented (see reuse), so
+ * importing a contact does not allocate an event (or a TimeStamp).
  */
 public class OffThreadContactEvent extends SimulationEvent {
 
+	/** This bit is set in the timeAndPlace value of an anti-message. */
+	private static final long ANTI_MESSAGE_BIT = 0x80000000L;
+
 	/** The index of the person that should be "contacted". */
-	public final int personToContact;
+	private int personToContact;
 
 	/** An object that describes the "contactor". */
-	public final ContactInfo info;
+	private ContactInfo info;
 
 
 	/**
 	 * Create an OffNodeContactEvent.
 	 *
-	 * @param time - The time that this event should occur
+	 * @param tick - The time that this event should occur (as a number of ticks)
 	 * @param place - The index of the ModelPlace where this event occurs.
 	 * @param personToContact - The index of the person to contact (if negative contact a random
 	 * person)
 	 * @param info - A collection of information that is required to implement a contact
 	 */
-	OffThreadContactEvent(TimeStamp time, ModelPlace place, int personToContact, ContactInfo info) {
-		super(time, place);
+	OffThreadContactEvent(int tick, ModelPlace place, int personToContact, ContactInfo info) {
+		super(tick, place);
+		setContact(personToContact, info);
+	}
+
+
+	private void setContact(int personToContact, ContactInfo info) {
 
 		//probably Integer.MIN_VALUE
 		this.personToContact = personToContact;
@@ -47,6 +66,104 @@ public class OffThreadContactEvent extends SimulationEvent {
 	}
 
 
+	/** @return - The "when and where" of an off-thread contact packed into a single long. */
+	public static long packTimeAndPlace(TimeStamp time, int placeIndex) {
+		return packTimeAndPlace(time.asNumTicks(), placeIndex);
+	}
+
+
+	/** @return - The "when and where" of an off-thread contact packed into a single long. */
+	public static long packTimeAndPlace(int tick, int placeIndex) {
+		return ((long) tick << 32) | (placeIndex & 0xFFFFFFFFL);
+	}
+
+
+	/**
+	 * @param contactCode - See ContactInfo.encode
+	 *
+	 * @return - The "who and how" of an off-thread contact packed into a single long.
+	 */
+	public static long packContact(int personToContact, int contactCode) {
+		return ((long) personToContact << 32) | (contactCode & 0xFFFFFFFFL);
+	}
+
+
+	/** @return - The index of the ModelPlace stored in a packed timeAndPlace value. */
+	public static int unpackPlaceIndex(long timeAndPlace) {
+		return (int) (timeAndPlace & 0x7FFFFFFFL);
+	}
+
+
+	/** @return - The tick stored in a packed timeAndPlace value. */
+	public static int unpackTick(long timeAndPlace) {
+		return (int) (timeAndPlace >>> 32);
+	}
+
+
+	/** @return - The timeAndPlace value of the anti-message that cancels a sent record. */
+	public static long asAntiMessage(long timeAndPlace) {
+		return timeAndPlace | ANTI_MESSAGE_BIT;
+	}
+
+
+	/** @return - True if a packed timeAndPlace value belongs to an anti-message. */
+	public static boolean isAntiMessage(long timeAndPlace) {
+		return (timeAndPlace & ANTI_MESSAGE_BIT) != 0;
+	}
+
+
+	/**
+	 * @return - True if this event was built from the given record (the anti-message bit is
+	 * ignored).
+	 */
+	public boolean matches(long timeAndPlace, long contact) {
+		return packTimeAndPlace(getTick(), place.placeIDNum()) == (timeAndPlace & ~ANTI_MESSAGE_BIT)
+				&& packContact(personToContact, info.encode()) == contact;
+	}
+
+
+	/**
+	 * Rebuild an OffThreadContactEvent from its packed form.
+	 *
+	 * @param timeAndPlace - The result of packTimeAndPlace
+	 * @param contact - The result of packContact
+	 * @param place - The ModelPlace where the event must occur
+	 *
+	 * @return - The actual OffThreadContactEvent that must be executed.
+	 */
+	public static OffThreadContactEvent unpack(long timeAndPlace, long contact, ModelPlace place) {
+
+		if (place.placeIDNum() != unpackPlaceIndex(timeAndPlace)) {
+			throw new IllegalStateException("Place idNumber mismatch");
+		}
+
+		return new OffThreadContactEvent(
+				unpackTick(timeAndPlace),
+				place,
+				(int) (contact >> 32),
+				ContactInfo.decode((int) contact));
+	}
+
+
+	/**
+	 * Turn an OffThreadContactEvent that has been implemented into the event unpack would build
+	 * (the event must not be referenced by a queue or a StateJournal).
+	 *
+	 * @param timeAndPlace - The result of packTimeAndPlace
+	 * @param contact - The result of packContact
+	 * @param place - The ModelPlace where the event must occur
+	 */
+	public void reuse(long timeAndPlace, long contact, ModelPlace place) {
+
+		if (place.placeIDNum() != unpackPlaceIndex(timeAndPlace)) {
+			throw new IllegalStateException("Place idNumber mismatch");
+		}
+
+		reuse(unpackTick(timeAndPlace), place);
+		setContact((int) (contact >> 32), ContactInfo.decode((int) contact));
+	}
+
+
 	/** Return the index of the contactor in this ContactEvent. */
 	public int getIndex() {
 		return personToContact;
@@ -68,7 +185,7 @@ public class OffThreadContactEvent extends SimulationEvent {
 	/** Return a String that describes this event. */
 	@Override
 	public String toString() {
-		return "ONCE :: " + (info.contactType.toString() + " at time :: " + timeOfEvent
+		return "ONCE :: " + (info.contactType.toString() + " at time :: " + getTime()
 				+ " for agent " + personToContact + " in zip :: " + place.placeIDNum());
 	}
 
@@ -80,7 +197,7 @@ public class OffThreadContactEvent extends SimulationEvent {
 		//currently the only option because FAMILY_CONTACTS won't become ContactEvents.
 		//FAMILY_CONTACTS will stay inside AgentEvents.
 		if (info.contactType == ContactType.RANDOM_CONTACT) {
-			place.locals().contact(personToContact, info);
+			place.locals().contact(personToContact, info.encode());
 		} else {
 			throw new RuntimeException("currently OffNodeContactEvents should be RANDOM_CONTACTS");
 		}
@@ -4,7 +4,6 @@ package model.events;
 import core.ModelPlace;
 import model.people.HouseholdFactory.AgeCohort;
 import model.people.BehaviorStreams;
-import time.TimeStamp;
 
 
 /**
@@ -17,13 +16,13 @@ public final class RandomContactEvent {
 	 * Calculate and then return the time of the next Random Contact Event.
 	 *
 	 * @param place - The ModelPlace that will provide a random number generator
-	 * @param minTime - The earliest possible next occurance of a Random Contact Event
+	 * @param minTick - The earliest possible next occurance of a Random Contact Event (in ticks)
 	 *
-	 * @return - The time of the next Random Contact Event
+	 * @return - The tick of the next Random Contact Event
 	 */
-	public static TimeStamp setNextTime(ModelPlace place, TimeStamp minTime) {
+	public static int setNextTime(ModelPlace place, int minTick) {
 		//calculate time of the next random contact
-		return BehaviorStreams.randomContactStream.timeOfNextEvent(minTime, place.getRand());
+		return BehaviorStreams.randomContactStream.tickOfNextEvent(minTick, place.getRand());
 	}
 
 
@@ -32,11 +31,11 @@ public final class RandomContactEvent {
 	 *
 	 * @param place - The home ModelPlace for the "hero" in the Repeat Contact
 	 * @param personIndex - The "hero" in a Random contact
-	 * @param currentTime - The time this event should occur
+	 * @param currentTick - The tick this event should occur
 	 *
-	 * @return - The time of the next Random Contact Event
+	 * @return - The tick of the next Random Contact Event
 	 */
-	public static TimeStamp implementEvent(ModelPlace place, int personIndex, TimeStamp currentTime) {
+	public static int implementEvent(ModelPlace place, int personIndex, int currentTick) {
 
 		//schools are closed
 		if (AgentEvent.SCHOOLS_CLOSED) {
@@ -44,7 +43,7 @@ public final class RandomContactEvent {
 			if (place.locals().getAgeCohort(personIndex) == AgeCohort.CHILD_COHORT) {
 
 				//return the time of the next event w/o making a contact
-				return setNextTime(place, currentTime);
+				return setNextTime(place, currentTick);
 			}
 		}
 
@@ -56,6 +55,6 @@ public final class RandomContactEvent {
 		}
 
 		//compute time of next Random Contact Event
-		return setNextTime(place, currentTime);
+		return setNextTime(place, currentTick);
 	}
 }
@@ -1,9 +1,7 @@
 package model.events;
 
 
-import core.InteractiveLargeScaleModel;
 import core.ModelPlace;
-import time.LengthOfTime;
 import time.TimeStamp;
 
 
@@ -11,24 +9,12 @@ import time.TimeStamp;
  * A ReconcileEvent is merely a "marker" event that a WorkerThread can watch for. When a
  * ReconcileEvent bubbles to the top of the PriorityQueue the WorkerThread can then inform
  * the parent node that it is finished processing
+ *
+ * ReconcileEvents occur every SimulationProperties.reconcileEventFreq() (see
+ * WorkerThread.addNextReconcileEvent).
  */
 public class ReconcileEvent extends SimulationEvent {
 
-	/** The frequency at which ReconcileEvent occur. */
-	private static LengthOfTime frequency;
-
-
-	static {
-		frequency = InteractiveLargeScaleModel.instance.simProps().reconcileEventFreq();
-	}
-
-
-	/** Set how often you want the WorkerThreads paused to reconcile off-node contacts. */
-	public static LengthOfTime getFrequency() {
-		return frequency;
-	}
-
-
 	/**
 	 * Create a ReconcileEvent.
 	 *
@@ -41,10 +27,17 @@ public class ReconcileEvent extends SimulationEvent {
 	}
 
 
+	/** Every event before this ReconcileEvent's time is implemented before the thread pauses. */
+	@Override
+	protected boolean isBarrier() {
+		return true;
+	}
+
+
 	/** @return - A String that describes this event. */
 	@Override
 	public String toString() {
-		return ("ReconcileEvent at time " + timeOfEvent);
+		return ("ReconcileEvent at time " + getTime());
 	}
 
 
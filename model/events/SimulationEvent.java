@@ -6,26 +6,30 @@ import java.io.FileNotFoundException;
 import java.io.PrintStream;
 import java.io.Serializable;
 import time.TimeStamp;
+import time.TimeStamps;
 
 
 /**
  * A SimulationEvent is designed to be stored in a PriorityQueue.
  *
  * SimulationEvents are associated with a timeOfEvent, thus they can be executed in chronological order.
- * Ties are broken by a unique ID that is obtained from the event's executing thread.
+ * Ties are broken by the place and then by a unique ID that is obtained from the event's place.
+ * Barrier events (ReconcileEvents) come before every other event that shares their time, so a
+ * barrier at time t marks the point where everything before t is finished -- no matter which
+ * place the barrier happens to be attached to.
  */
 public abstract class SimulationEvent implements Comparable<SimulationEvent>, Serializable {
 
-	/** When this event should be executed. */
-	protected TimeStamp timeOfEvent;
+	/** When this event should be executed (as a number of ticks, see TimeStamp.asNumTicks()). */
+	private int tick;
 
-	/** This place that should implement this event. */
-	protected final ModelPlace place;
+	/** This place that should implement this event (only changed when an event is reused). */
+	protected ModelPlace place;
 
 	/**
-	 * This variable is retrieved from the thread that owns this objects "place". The
-	 * purpose of this variable is to provide a guaranteed exact ordering of all Events
-	 * (by breaking ties between events with the same timeOfEvent)
+	 * This variable is retrieved from this objects "place". The purpose of this variable is to
+	 * provide a guaranteed exact ordering of all Events (by breaking ties between events with the
+	 * same timeOfEvent and place)
 	 */
 	protected int myId;
 
@@ -37,27 +41,69 @@ public abstract class SimulationEvent implements Comparable<SimulationEvent>, Se
 	 * @param place - The ModelPlace where this event occurs
 	 */
 	public SimulationEvent(TimeStamp time, ModelPlace place) {
-		this.timeOfEvent = time;
+		this.tick = (time == null) ? TimeStamps.neverOccuringTime().asNumTicks() : time.asNumTicks();
 		this.place = place;
 		if (place != null) {
-			this.myId = place.thread().generateUniqueEventID();
+			this.myId = place.generateUniqueEventID();
 		}
 	}
 
 
+	/**
+	 * Create a SimulationEvent without allocating a TimeStamp.
+	 *
+	 * @param tick - The time that this event should occur (as a number of ticks)
+	 * @param place - The ModelPlace where this event occurs
+	 */
+	protected SimulationEvent(int tick, ModelPlace place) {
+		this.tick = tick;
+		this.place = place;
+		this.myId = place.generateUniqueEventID();
+	}
+
+
+	/**
+	 * Give an event that has been implemented (and is no longer referenced by any queue) a new
+	 * time and place. It gets a new idNum, exactly like a newly created event.
+	 */
+	protected void reuse(int tick, ModelPlace place) {
+		this.tick = tick;
+		this.place = place;
+		this.myId = place.generateUniqueEventID();
+	}
+
+
 	/** Implement this event. */
 	public abstract void implementEvent();
 
 
+	/** @return - True if this event precedes every non-barrier event at the same time. */
+	protected boolean isBarrier() {
+		return false;
+	}
+
+
 	/** @return - The time this event should be implemented. */
 	public TimeStamp getTime() {
-		return timeOfEvent;
+		return TimeStamps.atTick(tick);
 	}
 
 
 	/** Set the time this event should be implemented. */
 	public void setTime(TimeStamp newTime) {
-		this.timeOfEvent = newTime;
+		this.tick = newTime.asNumTicks();
+	}
+
+
+	/** @return - The time this event should be implemented (as a number of ticks). */
+	public int getTick() {
+		return tick;
+	}
+
+
+	/** Set the time this event should be implemented (as a number of ticks). */
+	public void setTick(int tick) {
+		this.tick = tick;
 	}
 
 
@@ -67,6 +113,12 @@ public abstract class SimulationEvent implements Comparable<SimulationEvent>, Se
 	}
 
 
+	/** @return - The number that breaks ties between events at the same time and place. */
+	public int idNum() {
+		return myId;
+	}
+
+
 	/** This Comparison is based on the times each of the 2 events should occur. */
 	@Override
 	public int compareTo(SimulationEvent otherEvent) {
@@ -78,10 +130,12 @@ public abstract class SimulationEvent implements Comparable<SimulationEvent>, Se
 			return 0;
 		}
 		
-		if(this.timeOfEvent.occursAfter(otherEvent.timeOfEvent)) {
+		if (this.tick > other.tick) {
 			return 1;
-		} else if (this.timeOfEvent.occursBefore(otherEvent.timeOfEvent)) {
+		} else if (this.tick < other.tick) {
 			return -1;
+		} else if (this.isBarrier() != other.isBarrier()) {
+			return this.isBarrier() ? -1 : 1;
 		} else {
 
 			//if timeOfEvent is the same sort via zipcode
@@ -300,6 +300,7 @@ public class GSAMFrame extends JFrame implements GSAMGui {
         menuBar.add(antiviralMenu);
         menuBar.add(vaccinationMenu);
         menuBar.add(r0Menu);
+        menuBar.add(buildCheckpointMenu());
         menuBar.add(Box.createHorizontalGlue());
 
         JMenu runControl = new JMenu("Pause/UnPause");
@@ -330,6 +331,25 @@ public class GSAMFrame extends JFrame implements GSAMGui {
 
     }
 
+    // saves the run so what-if branches can be forked from it (see core.Checkpoint)
+    private JMenu buildCheckpointMenu() {
+
+        JMenu checkpoint = new JMenu("Checkpoint");
+
+        JMenuItem saveCheckpoint = new JMenuItem("Save at Next Reconcile");
+        saveCheckpoint.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                gsam.requestCheckpoint(new File(gsam.simProps().checkpointDirectory()));
+            }
+        });
+        checkpoint.add(saveCheckpoint);
+
+        checkpoint.setToolTipText("Save the run to the checkpointDirectory");
+
+        return checkpoint;
+    }
+
     private JMenu buildPlaceMenu() {
 
         JMenu places = new JMenu("State/Nation Options");
@@ -4,14 +4,15 @@ package model.people;
 import cern.jet.random.engine.RandomEngine;
 import model.ContactInfo;
 import core.ModelPlace;
+import core.StateJournal;
 import model.disease.DiseaseState;
 import model.disease.Diseases;
 import model.events.AgentEvent;
+import model.events.AgentEventStore;
 import model.events.ContactType;
-import model.events.SimulationEvent;
 import model.people.HouseholdFactory.AgeCohort;
 import time.TimeStamp;
-import util.AgentEventHashTable;
+import util.IntIntHashMap;
 
 
 /**
@@ -20,12 +21,6 @@ import util.AgentEventHashTable;
  */
 public class AgentGroup {
 
-	/**
-	 * AgentEvent references are stored in a HashTable. This variable sets the size of this
-	 * HashTable as a fraction of the population.
-	 */
-	private static double HASH_TABLE_FRACTION = .95;
-
 	/** The ModelPlace where these agents live. */
 	ModelPlace home;
 
@@ -33,30 +28,56 @@ public class AgentGroup {
 	int numAgents;
 
 	/*
-	 * Variables of the people 
-	 * - Each of these arrays will be of length "numAgents" 
-	 * - An entire family is stored sequentially.  For instance, a family of 5 will be stored 
+	 * Every agent's state is packed into 13 bits of a short (see AgentStorage) ::
+	 * - bits 0-2 :: the agent's DiseaseState (the index into "DiseaseState.values()")
+	 * - bits 3-4 :: the agent's AgeCohort (the index into "HouseholdFactory.AgeCohort.values()")
+	 * - bits 5-8 :: the number of agents to the left of this one that are member of its family
+	 * - bits 9-12 :: the size of the agent's family
+	 * An entire family is stored sequentially. For instance, a family of 5 will be stored
 	 * at indices i, i+1, i+2, i+3 , i+4 (for some i)
 	 */
-	/** Number of agents to the left of this one that are member of its family. */
-	byte[] leftFamily;
+	private static final int STATE_MASK = 0x7;
+
+	private static final int COHORT_SHIFT = 3;
+
+	private static final int COHORT_MASK = 0x3;
+
+	private static final int LEFT_FAMILY_SHIFT = 5;
+
+	private static final int FAMILY_SIZE_SHIFT = 9;
+
+	private static final int FAMILY_MASK = 0xF;
+
+	/** The largest household the packed state can describe. */
+	private static final int MAX_HOUSEHOLD_SIZE = FAMILY_MASK;
+
+	/** A cached copy of DiseaseState.values() (values() clones its array on every call). */
+	private static final DiseaseState[] diseaseStates = DiseaseState.values();
+
+	static {
+		if (diseaseStates.length > STATE_MASK + 1 || HouseholdFactory.ages.length > COHORT_MASK + 1) {
+			throw new IllegalStateException("The packed agent state is too small");
+		}
+	}
 
 	/**
-	 * This variable lists each local agents age.
-	 * The value listed here is the index you would use in a call to
-	 * "HouseholdFactory.AgeCohort.values()" (which returns an array)
+	 * The packed state of every agent and the cohort index (null until the group is populated).
+	 * The cohort index lists the agents grouped by AgeCohort, in ascending order within a cohort.
+	 * The agents of cohort c are members cohortStart[c] ... cohortStart[c+1]-1.
 	 */
-	byte[] age;
+	AgentStorage agents;
+
+	/** See agents (length = the number of AgeCohorts + 1). */
+	int[] cohortStart;
 
 	/**
-	 * This variable lists each local agents DiseaseState. *
-	 * The value listed here is the index you would use in a call to
-	 * "Disease.DiseaseState.values()" (which returns an array)
+	 * scheduleTable.get(i) = The row of agent i's AgentEvent in the eventStore (only "active"
+	 * agents are in the table, it grows with the number of agents that are sick at once).
 	 */
-	byte[] sickStatus;
+	IntIntHashMap scheduleTable;
 
-	/** This table holds a reference to each "active" agents AgentEvent object. */
-	AgentEventHashTable scheduleTable;
+	/** The schedules of the "active" agents (see AgentEvent). */
+	AgentEventStore eventStore;
 
 	/** The current number of Susceptible Agents in this group. */
 	public int numSusceptible;
@@ -80,7 +101,7 @@ public class AgentGroup {
 	public int newInfections;
 
 	/** This variable prevents the "vaccinate" method from being called multiples times. */
-	private boolean hasBeenVaccinated;
+	boolean hasBeenVaccinated;
 
 
 	/**
@@ -91,20 +112,119 @@ public class AgentGroup {
 	 * @param hhFactory - The object responsible for building the households inside this group.
 	 */
 	public AgentGroup(int numAgents, ModelPlace home, HouseholdFactory hhFactory) {
+		this(numAgents, home);
+		populate(hhFactory);
+	}
+
+
+	/**
+	 * Build a group of Agents whose households are not created until they are needed (ie when a
+	 * contagious contact arrives). Until then only the aggregate counts exist. The households
+	 * are drawn from home.householdFactory().
+	 *
+	 * @param numAgents - The number of people in this group.
+	 * @param home - The ModelPlace that these agents consider "home".
+	 */
+	public AgentGroup(int numAgents, ModelPlace home) {
 
 		if (numAgents <= 10) {
 			throw new IllegalArgumentException("This AgentGroup is curiously small " + numAgents);
 		}
 
-		//initalize variables
 		this.numAgents = numAgents;
-		this.leftFamily = new byte[numAgents];
-		this.age = new byte[numAgents];
-		this.sickStatus = new byte[numAgents];
-		this.scheduleTable = new AgentEventHashTable(numAgents, HASH_TABLE_FRACTION);
 		this.home = home;
 		this.hasBeenVaccinated = false;
 
+		numSusceptible = numAgents;
+		numAssymptomatic = 0;
+		numSymptomatic = 0;
+		numContagious = 0;
+		numNonContagious = 0;
+		numRecovered = 0;
+	}
+
+
+	/**
+	 * Rebuild a group saved in a Checkpoint. The AgentEvents of its active agents are added by
+	 * restoreAgentEvents (they can only be built once home.locals() returns this group).
+	 *
+	 * @param home - The ModelPlace that these agents consider "home".
+	 * @param saved - The saved group (it is never modified)
+	 * @param shareStates - True if this group reads the saved columns until its agents change (see
+	 * AgentStorage.copyOnWrite), false if the columns are copied into storage allocated by
+	 * home's thread.
+	 */
+	public AgentGroup(ModelPlace home, AgentGroupCheckpoint saved, boolean shareStates) {
+
+		this.numAgents = saved.numAgents;
+		this.home = home;
+		this.hasBeenVaccinated = saved.hasBeenVaccinated;
+
+		numSusceptible = saved.numSusceptible;
+		numAssymptomatic = saved.numAssymptomatic;
+		numSymptomatic = saved.numSymptomatic;
+		numContagious = saved.numContagious;
+		numNonContagious = saved.numNonContagious;
+		numRecovered = saved.numRecovered;
+		newInfections = saved.newInfections;
+
+		if (saved.statePages == null) {
+			return;
+		}
+
+		if (shareStates) {
+			this.agents = AgentStorage.copyOnWrite(saved.statePages, saved.members);
+		} else {
+			this.agents = home.parentThread.allocateAgents(numAgents);
+			AgentStorage shared = AgentStorage.copyOnWrite(saved.statePages, saved.members);
+			for (int i = 0; i < numAgents; i++) {
+				agents.setState(i, shared.state(i));
+				agents.setMember(i, shared.member(i));
+			}
+		}
+		this.cohortStart = saved.cohortStart.clone();
+		this.scheduleTable = new IntIntHashMap();
+		this.eventStore = new AgentEventStore();
+	}
+
+
+	/**
+	 * Add the AgentEvents of the active agents of a saved group to home's thread (home.locals()
+	 * must already return this group).
+	 */
+	public void restoreAgentEvents(AgentGroupCheckpoint saved) {
+		for (int k = 0; k < saved.numActiveAgents(); k++) {
+			AgentEvent agentEvent = AgentEvent.restore(
+					home,
+					saved.personIndex(k),
+					saved.tick(k),
+					saved.idNum(k),
+					saved.activeAgents,
+					saved.rowOffset(k));
+			scheduleTable.put(agentEvent.personIndex, agentEvent.slot());
+			home.parentThread.addEvent(agentEvent);
+		}
+	}
+
+
+	/** @return - A copy of this group (its thread must be stopped). */
+	public AgentGroupCheckpoint checkpoint() {
+		return new AgentGroupCheckpoint(this);
+	}
+
+
+	/**
+	 * Create the households of this group.
+	 *
+	 * @param hhFactory - The object responsible for building the households inside this group.
+	 */
+	private void populate(HouseholdFactory hhFactory) {
+
+		//initalize variables
+		this.agents = home.parentThread.allocateAgents(numAgents);
+		this.scheduleTable = new IntIntHashMap();
+		this.eventStore = new AgentEventStore();
+
 
 		//variable needed in the loop below
 		int agentsCreatedSoFar = 0;
@@ -128,17 +248,23 @@ public class AgentGroup {
 				hhAges = newHousehold.getAgeArray();
 			}
 
+			if (householdSize > MAX_HOUSEHOLD_SIZE) {
+				throw new IllegalStateException("Households cannot exceed " + MAX_HOUSEHOLD_SIZE + " people");
+			}
+
 			//let each person know who thier family is
 			for (int i = 0; i < householdSize; i++) {
-				leftFamily[agentsCreatedSoFar + i] = (byte) i;
-				age[agentsCreatedSoFar + i] = (byte) hhAges[i].ordinal();
-				sickStatus[agentsCreatedSoFar + i] = (byte) DiseaseState.SUSCEPTIBLE.
-						ordinal();
+				agents.setState(agentsCreatedSoFar + i,
+						DiseaseState.SUSCEPTIBLE.ordinal()
+						| (hhAges[i].ordinal() << COHORT_SHIFT)
+						| (i << LEFT_FAMILY_SHIFT)
+						| (householdSize << FAMILY_SIZE_SHIFT));
 			}
 
 			agentsCreatedSoFar += householdSize;
 		} while (agentsCreatedSoFar < numAgents);
 
+		indexCohorts();
 
 		//at this point we have generated a population in which
 		//
@@ -146,13 +272,84 @@ public class AgentGroup {
 		//	-An age chort
 		//	-Links to household members
 		//	-A susceptible DiseaseState
+	}
 
-		numSusceptible = numAgents;
-		numAssymptomatic = 0;
-		numSymptomatic = 0;
-		numContagious = 0;
-		numNonContagious = 0;
-		numRecovered = 0;
+
+	/** Build the cohort index and cohortStart (a counting sort of the agents by AgeCohort). */
+	private void indexCohorts() {
+
+		int numCohorts = HouseholdFactory.ages.length;
+
+		this.cohortStart = new int[numCohorts + 1];
+		for (int i = 0; i < numAgents; i++) {
+			cohortStart[cohort(i) + 1]++;
+		}
+		for (int c = 0; c < numCohorts; c++) {
+			cohortStart[c + 1] += cohortStart[c];
+		}
+
+		int[] next = cohortStart.clone();
+		for (int i = 0; i < numAgents; i++) {
+			agents.setMember(next[cohort(i)]++, i);
+		}
+	}
+
+
+	/** @return - The index of an agent's DiseaseState. */
+	private int sickStatus(int index) {
+		return agents.state(index) & STATE_MASK;
+	}
+
+
+	private void setSickStatus(int index, DiseaseState state) {
+		agents.setState(index, (agents.state(index) & ~STATE_MASK) | state.ordinal());
+	}
+
+
+	/** @return - The index of an agent's AgeCohort. */
+	private int cohort(int index) {
+		return (agents.state(index) >>> COHORT_SHIFT) & COHORT_MASK;
+	}
+
+
+	/** @return - The number of agents to the left of this one that are member of its family. */
+	private int leftFamily(int index) {
+		return (agents.state(index) >>> LEFT_FAMILY_SHIFT) & FAMILY_MASK;
+	}
+
+
+	/**
+	 * Create the households of a lazily built group (if they do not exist yet). Every method that
+	 * selects an agent without being given its index calls this first -- an agent index can only
+	 * be obtained from a populated group.
+	 */
+	private void ensurePopulated() {
+		if (agents == null) {
+			populate(home.householdFactory());
+		}
+	}
+
+
+	/** @return - True if the households of this group have been created. */
+	public boolean isPopulated() {
+		return agents != null;
+	}
+
+
+	/** @return - The store that holds the schedules of this group's AgentEvents. */
+	public AgentEventStore eventStore() {
+		return eventStore;
+	}
+
+
+	/** @return - The AgentEvent of an "active" agent. */
+	private AgentEvent scheduledEvent(int index) {
+
+		int slot = scheduleTable.get(index);
+		if (slot == IntIntHashMap.NO_VALUE) {
+			throw new IllegalStateException("Agent " + index + " has no AgentEvent");
+		}
+		return eventStore.event(slot);
 	}
 
 
@@ -170,7 +367,7 @@ public class AgentGroup {
 	 */
 	public void setDiseaseState(int index, DiseaseState newStatus) {
 		
-		DiseaseState oldStatus = DiseaseState.values()[sickStatus[index]];
+		DiseaseState oldStatus = diseaseStates[sickStatus(index)];
 		
 		if(oldStatus == null) {
 			throw new IllegalStateException("The oldStatus cannot be null :: " + oldStatus);
@@ -181,6 +378,14 @@ public class AgentGroup {
 					"A " + oldStatus.toString() + " should not receive a new DiseaseState");
 		}
 
+		AgentEvent removedEvent =
+				(newStatus == DiseaseState.RECOVERED) ? scheduledEvent(index) : null;
+
+		StateJournal journal = home.parentThread.journal();
+		if (journal.isRecording()) {
+			journal.record(new DiseaseStateChange(index, oldStatus, newStatus, removedEvent));
+		}
+
 		//remove states from olds status		
 		if (oldStatus == DiseaseState.SUSCEPTIBLE) {
 			numSusceptible--;
@@ -221,11 +426,12 @@ public class AgentGroup {
 		} else if (newStatus == DiseaseState.RECOVERED) {
 			numRecovered++;
 			scheduleTable.remove(index);
+			removedEvent.releaseSlot();
 		} else {
 			throw new IllegalStateException("Unknown state");
 		}
 
-		sickStatus[index] = (byte) newStatus.ordinal();
+		setSickStatus(index, newStatus);
 	}
 
 
@@ -237,10 +443,18 @@ public class AgentGroup {
 	 * between this agent an another unknown agent.
 	 */
 	public ContactInfo extractContactInfo(int index, ContactType cType) {
-		return new ContactInfo(
-				HouseholdFactory.ages[age[index]],
-				DiseaseState.values()[sickStatus[index]],
-				cType);
+		return ContactInfo.decode(contactCode(index, cType));
+	}
+
+
+	/**
+	 * @param index - The index of a person in this group.
+	 * @param cType - The type of contact to implement.
+	 *
+	 * @return - The code of this agent's ContactInfo (see ContactInfo.encode).
+	 */
+	public int contactCode(int index, ContactType cType) {
+		return ContactInfo.encode(cohort(index), sickStatus(index), cType.ordinal());
 	}
 
 
@@ -250,7 +464,7 @@ public class AgentGroup {
 	 * @return The DiseaseState of this person.
 	 */
 	public DiseaseState getDiseaseState(int index) {
-		return DiseaseState.values()[sickStatus[index]];
+		return diseaseStates[sickStatus(index)];
 	}
 
 
@@ -260,7 +474,7 @@ public class AgentGroup {
 	 * @return The AgeCohort of this person.
 	 */
 	public AgeCohort getAgeCohort(int index) {
-		return HouseholdFactory.ages[age[index]];
+		return HouseholdFactory.ages[cohort(index)];
 	}
 
 
@@ -280,37 +494,60 @@ public class AgentGroup {
 	 * @return The size of a person's family - always >= 1
 	 */
 	public int getFamilySize(int index) {
+		return (agents.state(index) >>> FAMILY_SIZE_SHIFT) & FAMILY_MASK;
+	}
 
-		int size = leftFamily[index] + 1;
 
-		index++;
+	/**
+	 * @param cohort - The cohort of the person you wish to "draw" (one random draw picks a member
+	 * of this cohort directly)
+	 *
+	 * @return The index of a random person in a particular age cohort
+	 */
+	public int getRandomPerson(HouseholdFactory.AgeCohort cohort) {
 
-		while (index < numAgents && leftFamily[index] > 0) {
-			index++;
-			size++;
+		ensurePopulated();
+
+		int start = cohortStart[cohort.ordinal()];
+		int size = cohortStart[cohort.ordinal() + 1] - start;
+
+		if (size == 0) {
+			throw new IllegalStateException("This AgentGroup has no " + cohort);
 		}
-		return size;
+
+		return agents.member(start + (int) (home.getRand().nextDouble() * size));
 	}
 
 
 	/**
-	 * @param cohort - The cohort of the person you wish to "draw" (random draws will be
-	 * repeated until the selected individual is in this cohort)
+	 * @param cohort - The cohort of the person you wish to "draw"
+	 * @param excludedIndex - An agent that cannot be drawn (ie the contactor)
 	 *
-	 * @return The index of a random person in a particular age cohort
+	 * @return The index of a random person in a particular age cohort other than excludedIndex
+	 * (-1 if there is no such person).
 	 */
-	public int getRandomPerson(HouseholdFactory.AgeCohort cohort) {
+	private int getRandomPersonExcept(HouseholdFactory.AgeCohort cohort, int excludedIndex) {
 
-		RandomEngine rand = home.getRand();
-		int randIndex;
+		int start = cohortStart[cohort.ordinal()];
+		int size = cohortStart[cohort.ordinal() + 1] - start;
 
-		do {
-			randIndex = (int) (rand.nextDouble() * numAgents);
+		boolean isExcluded = (excludedIndex >= 0 && excludedIndex < numAgents
+				&& cohort(excludedIndex) == cohort.ordinal());
 
-			if (age[randIndex] == cohort.ordinal()) {
-				return randIndex;
-			}
-		} while (true);
+		if (isExcluded) {
+			size--;
+		}
+		if (size <= 0) {
+			return -1;
+		}
+
+		int position = start + (int) (home.getRand().nextDouble() * size);
+
+		//the cohort index is ascending, so skipping the excluded agent shifts the draw by one
+		if (isExcluded && agents.member(position) >= excludedIndex) {
+			position++;
+		}
+		return agents.member(position);
 	}
 
 
@@ -321,7 +558,7 @@ public class AgentGroup {
 	 */
 	public void expose(int index) {
 
-		if (sickStatus[index] != (byte) DiseaseState.SUSCEPTIBLE.ordinal()) {
+		if (sickStatus(index) != DiseaseState.SUSCEPTIBLE.ordinal()) {
 			throw new RuntimeException("ERROR :: Must expose SUSCEPTIBLE person");
 		}
 
@@ -329,13 +566,26 @@ public class AgentGroup {
 
 		newInfections++;
 
-		SimulationEvent agentEvent = new AgentEvent(
+		final AgentEvent agentEvent = new AgentEvent(
 				home.parentThread.getCurrentTime(),
 				home,
 				index,
 				hasAFamily(index));
 
-		scheduleTable.put((AgentEvent) agentEvent);
+		scheduleTable.put(index, agentEvent.slot());
+
+		StateJournal journal = home.parentThread.journal();
+		if (journal.isRecording()) {
+			final int exposedIndex = index;
+			journal.record(new StateJournal.Entry() {
+				@Override
+				protected void undo() {
+					scheduleTable.remove(exposedIndex);
+					agentEvent.releaseSlot();
+					newInfections--;
+				}
+			});
+		}
 
 		home.parentThread.addEvent(agentEvent);
 	}
@@ -346,11 +596,13 @@ public class AgentGroup {
 	 */
 	public void exposeRandomAdult() {
 
+		ensurePopulated();
+
 		do {
 			int randIndex = this.getRandomPerson(HouseholdFactory.AgeCohort.ADULT_COHORT);
 
 			//test to make sure you got an infectable person
-			if (sickStatus[randIndex] == (byte) DiseaseState.SUSCEPTIBLE.ordinal()) {
+			if (sickStatus(randIndex) == DiseaseState.SUSCEPTIBLE.ordinal()) {
 				this.expose(randIndex);
 				return;
 			}
@@ -371,20 +623,18 @@ public class AgentGroup {
 
 		if (familySize > 1) {
 
-			int contactIndex =
-					indexOfContactor - leftFamily[indexOfContactor] + //the far left family member
-					((int) (rand.nextDouble() * familySize));				//ANY random family member
-
-			while (contactIndex == indexOfContactor) {
-				//redraw
-				contactIndex =
-						indexOfContactor - leftFamily[indexOfContactor]
-						+ ((int) (rand.nextDouble() * familySize));
+			//ANY family member other than the contactor (skip over the contactor's position)
+			int offset = (int) (rand.nextDouble() * (familySize - 1));
+			if (offset >= leftFamily(indexOfContactor)) {
+				offset++;
 			}
 
+			int contactIndex =
+					indexOfContactor - leftFamily(indexOfContactor) + //the far left family member
+					offset;
+
 			//make the contact
-			ContactInfo ci = extractContactInfo(indexOfContactor, ContactType.FAMILY_CONTACT);
-			contact(contactIndex, ci);
+			contact(contactIndex, contactCode(indexOfContactor, ContactType.FAMILY_CONTACT));
 
 		} else {
 			throw new RuntimeException("Cannot call makeRandomFamilyContact on agent without family");
@@ -404,16 +654,16 @@ public class AgentGroup {
 				home.placeIDNum(),
 				home.getRand().nextDouble());
 
-		ContactInfo ci = extractContactInfo(indexOfContactor, ContactType.RANDOM_CONTACT);
+		int code = contactCode(indexOfContactor, ContactType.RANDOM_CONTACT);
 
 		//if contact happens between 2 people in this zipcode
 		if (zipcodeOfContactie == home.placeIDNum()) {
 			//make the contact
-			contact(-indexOfContactor, ci);
+			contact(-indexOfContactor, code);
 
 		} else {
 			//export the contact for execution at Reconcilations			
-			home.parentThread.exportContact(zipcodeOfContactie, Integer.MIN_VALUE, ci);
+			home.parentThread.exportContact(zipcodeOfContactie, Integer.MIN_VALUE, code);
 		}
 	}
 
@@ -426,6 +676,8 @@ public class AgentGroup {
 	/**
 	 * Implement a contact between a person in this group and a ContactInfo wrapper.
 	 *
+	 * @param contactCode - The code of the contactor's ContactInfo (see ContactInfo.encode)
+	 *
 	 * @param indexOfContactie - If this value is non-negative we assume it is a valid array index
 	 * and we will contact the person with this index. <p>
 	 *
@@ -433,52 +685,47 @@ public class AgentGroup {
 	 * The random contact CANNOT have the index abs(indexOfContactie). We do not allow that index
 	 * because we want to prevent any "self contacts".
 	 */
-	public void contact(int indexOfContactie, ContactInfo info) {
+	public void contact(int indexOfContactie, int contactCode) {
+
+		ContactInfo info = ContactInfo.decode(contactCode);
 
 		//only process a contact if the contact can produce an infection
 		if (info.diseaseState.isContagious()) {
 //		if(info.sickStatus == Disease.DiseaseState.INFECTED) {
 
+			ensurePopulated();
+
 			//since indexOfContactie might not be an actually index (because it could be negative)
 			int actualContactieIndex = indexOfContactie;
 
 			//if we need to find a random person
 			if (indexOfContactie < 0) {
 
-				int tempIndex;
-
-				/*
-				 * Note -- If any ModelPlace's have a small population this loop might never 
-				 * exit because there won't be a viable agent.
-				 */
-				do {
-					tempIndex = getRandomPerson(info.age);
-
-					//if we are guaranteed not to have a self-contact
-					if (tempIndex != Math.abs(indexOfContactie)) {			//do I need a Math.abs here??
+				//a random person in the cohort who is not the contactor (no self contacts)
+				actualContactieIndex = getRandomPersonExcept(info.age, Math.abs(indexOfContactie));
 
-						actualContactieIndex = tempIndex;
-					}
-				} while (actualContactieIndex < 0);
+				//nobody (other than the contactor) is in this cohort
+				if (actualContactieIndex < 0) {
+					return;
+				}
 			}
 			//actualContactieIndex now contains a valid index in this zipcode
-			if (sickStatus[actualContactieIndex] == DiseaseState.SUSCEPTIBLE.ordinal()) {
+			if (sickStatus(actualContactieIndex) == DiseaseState.SUSCEPTIBLE.ordinal()) {
 
 				//conside the contact a successful transmission
 				if (home.getRand().nextDouble() < info.contactType.getIntimacy() * Diseases.disease().baseInfectiousness()) {
 					expose(actualContactieIndex);
 				}
-			} else if (DiseaseState.values()[sickStatus[actualContactieIndex]].isInfected()) {
+			} else if (diseaseStates[sickStatus(actualContactieIndex)].isInfected()) {
 				//if the "contactie" was already infect we must push back his infection time
 
 				//determine if you need to push back time
 				TimeStamp currentTime = home.parentThread.getCurrentTime();
 
-				AgentEvent mapExtract = scheduleTable.get(actualContactieIndex);
-				TimeStamp exposureTime = mapExtract.getTimeOfExposure();
+				AgentEvent mapExtract = scheduledEvent(actualContactieIndex);
 
 				//push back the exposure time because this agent was exposed earlier by an "offnode" agent
-				if (currentTime.occursBefore(exposureTime)) {
+				if (currentTime.asNumTicks() < mapExtract.exposureTick()) {
 
 					//System.out.println(actualContactieIndex + "\t:: exposureTime is becoming :: " + currentTime + " from " + exposureTime);
 
@@ -496,6 +743,68 @@ public class AgentGroup {
 	}
 
 
+	/**
+	 * Add delta to every counter associated with a DiseaseState (used to reverse setDiseaseState).
+	 */
+	private void adjustCounts(DiseaseState state, int delta) {
+
+		if (state == DiseaseState.SUSCEPTIBLE) {
+			numSusceptible += delta;
+		} else if (state == DiseaseState.NONCONTAGIOUS_ASSYMPTOMATIC) {
+			numNonContagious += delta;
+			numAssymptomatic += delta;
+		} else if (state == DiseaseState.NONCONTAGIOUS_SYMPTOMATIC) {
+			numNonContagious += delta;
+			numSymptomatic += delta;
+		} else if (state == DiseaseState.CONTAGIOUS_SYMPTOMATIC) {
+			numContagious += delta;
+			numSymptomatic += delta;
+		} else if (state == DiseaseState.CONTAGIOUS_ASSYMPTOMATIC) {
+			numContagious += delta;
+			numAssymptomatic += delta;
+		} else if (state == DiseaseState.RECOVERED) {
+			numRecovered += delta;
+		} else {
+			throw new IllegalStateException("Unexpected state :: " + state);
+		}
+	}
+
+
+	/** OPTIMISTIC engine -- A record of one call to setDiseaseState that can be undone. */
+	private class DiseaseStateChange extends StateJournal.Entry {
+
+		private final int index;
+
+		private final DiseaseState oldStatus;
+
+		private final DiseaseState newStatus;
+
+		/** The AgentEvent removed from the scheduleTable (only when the agent recovered). */
+		private final AgentEvent removedEvent;
+
+
+		DiseaseStateChange(int index, DiseaseState oldStatus, DiseaseState newStatus,
+				AgentEvent removedEvent) {
+			this.index = index;
+			this.oldStatus = oldStatus;
+			this.newStatus = newStatus;
+			this.removedEvent = removedEvent;
+		}
+
+
+		@Override
+		protected void undo() {
+			adjustCounts(newStatus, -1);
+			adjustCounts(oldStatus, 1);
+			if (removedEvent != null) {
+				removedEvent.reclaimSlot();
+				scheduleTable.put(removedEvent.personIndex, removedEvent.slot());
+			}
+			setSickStatus(index, oldStatus);
+		}
+	}
+
+
 	/**
 	 * A VERY ugly implementation of mass vaccination.
 	 *
@@ -509,15 +818,17 @@ public class AgentGroup {
 			hasBeenVaccinated = true;
 		}
 
+		ensurePopulated();
+
 		RandomEngine rand = home.getRand();
 
 		for (int i = 0; i < this.numAgents; i++) {
 
 			//if this agent is SUSCEPTIBLE
-			if (sickStatus[i] == (byte) DiseaseState.SUSCEPTIBLE.ordinal()) {
+			if (sickStatus(i) == DiseaseState.SUSCEPTIBLE.ordinal()) {
 				//AND he makes the "random cut"
 				if (rand.nextDouble() < fraction) {
-					sickStatus[i] = (byte) DiseaseState.RECOVERED.ordinal();
+					setSickStatus(i, DiseaseState.RECOVERED);
 				}
 			}
 		}
@@ -0,0 +1,200 @@
+package model.people;
+
+
+import java.io.IOException;
+import model.events.AgentEvent;
+import model.events.AgentEventStore;
+import util.FlatStore;
+
+
+/**
+ * An AgentGroupCheckpoint is a copy of an AgentGroup :: its counts, the packed states and cohort
+ * index of its agents and the schedule of every "active" agent. It is never modified, so every
+ * run forked from it can share its columns (see AgentStorage.copyOnWrite).
+ */
+public class AgentGroupCheckpoint {
+
+	/** The number of ints saved per active agent :: personIndex, tick, idNum and the event's row. */
+	private static final int RECORD_LENGTH = 3 + AgentEventStore.ROW_LENGTH;
+
+	final int numAgents;
+
+	final int numSusceptible;
+
+	final int numAssymptomatic;
+
+	final int numSymptomatic;
+
+	final int numContagious;
+
+	final int numNonContagious;
+
+	final int numRecovered;
+
+	final int newInfections;
+
+	final boolean hasBeenVaccinated;
+
+	/** The packed states in pages of AgentStorage (null if the households were never created). */
+	final short[][] statePages;
+
+	/** The cohort index (null if the households were never created). */
+	final int[] members;
+
+	final int[] cohortStart;
+
+	/** The records of the active agents (RECORD_LENGTH ints each). */
+	final int[] activeAgents;
+
+
+	/** Copy a group (its thread must be stopped). */
+	AgentGroupCheckpoint(AgentGroup group) {
+
+		this.numAgents = group.numAgents;
+		this.numSusceptible = group.numSusceptible;
+		this.numAssymptomatic = group.numAssymptomatic;
+		this.numSymptomatic = group.numSymptomatic;
+		this.numContagious = group.numContagious;
+		this.numNonContagious = group.numNonContagious;
+		this.numRecovered = group.numRecovered;
+		this.newInfections = group.newInfections;
+		this.hasBeenVaccinated = group.hasBeenVaccinated;
+
+		if (!group.isPopulated()) {
+			this.statePages = null;
+			this.members = null;
+			this.cohortStart = null;
+			this.activeAgents = new int[0];
+			return;
+		}
+
+		this.statePages = AgentStorage.statePages(group.agents, numAgents);
+		this.members = new int[numAgents];
+		for (int k = 0; k < numAgents; k++) {
+			members[k] = group.agents.member(k);
+		}
+		this.cohortStart = group.cohortStart.clone();
+
+		//the rows are saved in slot order, restoring them compacts the store
+		AgentEventStore store = group.eventStore;
+		this.activeAgents = new int[RECORD_LENGTH * store.size()];
+		int n = 0;
+		for (int slot = 0; n < activeAgents.length; slot++) {
+			AgentEvent event = store.event(slot);
+			if (event != null) {
+				activeAgents[n] = event.personIndex;
+				activeAgents[n + 1] = event.getTick();
+				activeAgents[n + 2] = event.idNum();
+				store.copyRow(slot, activeAgents, n + 3);
+				n += RECORD_LENGTH;
+			}
+		}
+	}
+
+
+	/** Read a group written by writeTo. */
+	private AgentGroupCheckpoint(FlatStore.Reader in) {
+
+		this.numAgents = in.getInt();
+		this.numSusceptible = in.getInt();
+		this.numAssymptomatic = in.getInt();
+		this.numSymptomatic = in.getInt();
+		this.numContagious = in.getInt();
+		this.numNonContagious = in.getInt();
+		this.numRecovered = in.getInt();
+		this.newInfections = in.getInt();
+		this.hasBeenVaccinated = (in.getInt() != 0);
+
+		if (in.getInt() == 0) {
+			this.statePages = null;
+			this.members = null;
+			this.cohortStart = null;
+		} else {
+			int numPages = in.getInt();
+			if (numPages < 0 || numPages > (numAgents >>> AgentStorage.PAGE_SHIFT) + 1) {
+				throw new IllegalStateException("Corrupt checkpoint (" + numPages + " pages of states for "
+						+ numAgents + " agents)");
+			}
+			this.statePages = new short[numPages][];
+			for (int p = 0; p < statePages.length; p++) {
+				statePages[p] = in.getShortArray();
+			}
+			this.members = in.getIntArray();
+			this.cohortStart = in.getIntArray();
+		}
+		this.activeAgents = in.getIntArray();
+	}
+
+
+	/** @return - A group written by writeTo. */
+	public static AgentGroupCheckpoint readFrom(FlatStore.Reader in) {
+		return new AgentGroupCheckpoint(in);
+	}
+
+
+	/**
+	 * Write this group :: numAgents, the 7 counts, hasBeenVaccinated, isPopulated, (if populated)
+	 * the number of state pages, each page, members, cohortStart, then the active agents.
+	 */
+	public void writeTo(FlatStore.Writer out) throws IOException {
+
+		out.putInt(numAgents);
+		out.putInt(numSusceptible);
+		out.putInt(numAssymptomatic);
+		out.putInt(numSymptomatic);
+		out.putInt(numContagious);
+		out.putInt(numNonContagious);
+		out.putInt(numRecovered);
+		out.putInt(newInfections);
+		out.putInt(hasBeenVaccinated ? 1 : 0);
+
+		if (statePages == null) {
+			out.putInt(0);
+		} else {
+			out.putInt(1);
+			out.putInt(statePages.length);
+			for (short[] page : statePages) {
+				out.putShortArray(page);
+			}
+			out.putIntArray(members);
+			out.putIntArray(cohortStart);
+		}
+		out.putIntArray(activeAgents);
+	}
+
+
+	/** @return - The number of people in the group. */
+	public int numAgents() {
+		return numAgents;
+	}
+
+
+	/** @return - The number of agents that had an AgentEvent. */
+	public int numActiveAgents() {
+		return activeAgents.length / RECORD_LENGTH;
+	}
+
+
+	/** @return - The personIndex of active agent k. */
+	int personIndex(int k) {
+		return activeAgents[RECORD_LENGTH * k];
+	}
+
+
+	/** @return - The tick of active agent k's AgentEvent. */
+	int tick(int k) {
+		return activeAgents[RECORD_LENGTH * k + 1];
+	}
+
+
+	/** @return - The idNum of active agent k's AgentEvent. */
+	int idNum(int k) {
+		return activeAgents[RECORD_LENGTH * k + 2];
+	}
+
+
+	/** @return - The offset of active agent k's row in activeAgents. */
+	int rowOffset(int k) {
+		return RECORD_LENGTH * k + 3;
+	}
+}
@@ -0,0 +1,275 @@
+package model.people;
+
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+
+/**
+ * An AgentStorage holds the per agent columns of one AgentGroup :: a packed state (see
+ * AgentGroup) and the cohort index. The columns either live in ordinary arrays or in off heap
+ * memory handed out by a WorkerThread's OffHeapArena. Off heap columns are never copied or scanned
+ * by the garbage collector, which keeps very large populations out of the Java heap.
+ *
+ * An agent costs 2 bytes of packed state plus one entry of the cohort index. The index is stored
+ * in chars (2 bytes) when the group has at most MAX_NARROW_AGENTS agents and in ints (4 bytes)
+ * otherwise, so an agent costs 4 bytes in a typical place and 6 bytes in a very large one (the
+ * leftFamily, age and sickStatus byte arrays it replaced cost 3 bytes, but getRandomPerson had to
+ * redraw until it hit the requested cohort).
+ *
+ * The groups of a run forked from a Checkpoint can also share the checkpoint's columns (see
+ * copyOnWrite). The states are then split into pages and a page is only copied when one of its
+ * agents changes, so the agents an epidemic never reaches are stored once for every fork.
+ */
+public abstract class AgentStorage {
+
+	/** The largest group whose cohort index is stored in chars (see bytesPerAgent). */
+	public static final int MAX_NARROW_AGENTS = 1 << 16;
+
+	/** A page of states holds 1 << PAGE_SHIFT agents (see copyOnWrite). */
+	static final int PAGE_SHIFT = 12;
+
+	private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+
+	/** @return - The packed state of agent i. */
+	abstract int state(int i);
+
+
+	abstract void setState(int i, int packedState);
+
+
+	/** @return - The k-th entry of the cohort index (see AgentGroup.cohortStart). */
+	abstract int member(int k);
+
+
+	abstract void setMember(int k, int agentIndex);
+
+
+	/** @return - The number of bytes an AgentStorage for numAgents agents needs per agent. */
+	public static int bytesPerAgent(int numAgents) {
+		return 2 + (isNarrow(numAgents) ? 2 : 4);
+	}
+
+
+	/** @return - True if the cohort index of numAgents agents fits in chars. */
+	private static boolean isNarrow(int numAgents) {
+		return numAgents <= MAX_NARROW_AGENTS;
+	}
+
+
+	/** @return - A storage for numAgents agents backed by arrays. */
+	public static AgentStorage onHeap(int numAgents) {
+		return new Heap(numAgents);
+	}
+
+
+	/**
+	 * @param memory - A buffer of (at least) numAgents * bytesPerAgent(numAgents) bytes
+	 *
+	 * @return - A storage for numAgents agents backed by the buffer.
+	 */
+	public static AgentStorage inBuffer(ByteBuffer memory, int numAgents) {
+		return new Buffered(memory, numAgents);
+	}
+
+
+	/**
+	 * @param sharedPages - The states of numAgents agents in pages (see statePages), they are
+	 * never modified
+	 * @param sharedMembers - The cohort index of those agents, it is never modified
+	 *
+	 * @return - A storage that reads the shared columns until an agent changes. The first change
+	 * to a page of states copies that page.
+	 */
+	public static AgentStorage copyOnWrite(short[][] sharedPages, int[] sharedMembers) {
+		return new CopyOnWrite(sharedPages, sharedMembers);
+	}
+
+
+	/** @return - A copy of the states of agents 0 ... numAgents-1, split into pages. */
+	static short[][] statePages(AgentStorage storage, int numAgents) {
+
+		short[][] pages = new short[(numAgents + PAGE_MASK) >>> PAGE_SHIFT][];
+		for (int p = 0; p < pages.length; p++) {
+			int first = p << PAGE_SHIFT;
+			pages[p] = new short[Math.min(PAGE_MASK + 1, numAgents - first)];
+			for (int k = 0; k < pages[p].length; k++) {
+				pages[p][k] = (short) storage.state(first + k);
+			}
+		}
+		return pages;
+	}
+
+
+	/** The cohort index is in narrowMembers or wideMembers (the other one is null). */
+	private static class Heap extends AgentStorage {
+
+		private final short[] states;
+
+		private final char[] narrowMembers;
+
+		private final int[] wideMembers;
+
+
+		Heap(int numAgents) {
+			this.states = new short[numAgents];
+			this.narrowMembers = isNarrow(numAgents) ? new char[numAgents] : null;
+			this.wideMembers = isNarrow(numAgents) ? null : new int[numAgents];
+		}
+
+
+		@Override
+		int state(int i) {
+			return states[i];
+		}
+
+
+		@Override
+		void setState(int i, int packedState) {
+			states[i] = (short) packedState;
+		}
+
+
+		@Override
+		int member(int k) {
+			return (narrowMembers != null) ? narrowMembers[k] : wideMembers[k];
+		}
+
+
+		@Override
+		void setMember(int k, int agentIndex) {
+			if (narrowMembers != null) {
+				narrowMembers[k] = (char) agentIndex;
+			} else {
+				wideMembers[k] = agentIndex;
+			}
+		}
+	}
+
+
+	/**
+	 * The columns are views of one buffer -- the cohort index first (to keep ints aligned), then
+	 * the shorts. The index is in narrowMembers or wideMembers (the other one is null).
+	 */
+	private static class Buffered extends AgentStorage {
+
+		private final ShortBuffer states;
+
+		private final CharBuffer narrowMembers;
+
+		private final IntBuffer wideMembers;
+
+
+		Buffered(ByteBuffer memory, int numAgents) {
+
+			if (memory.remaining() < (long) numAgents * bytesPerAgent(numAgents)) {
+				throw new IllegalArgumentException(
+						"A buffer of " + memory.remaining() + " bytes cannot hold " + numAgents + " agents");
+			}
+
+			int memberBytes = bytesPerAgent(numAgents) - 2;
+
+			ByteBuffer members = memory.duplicate().order(memory.order());
+			members.limit(members.position() + memberBytes * numAgents);
+			if (isNarrow(numAgents)) {
+				this.narrowMembers = members.slice().order(memory.order()).asCharBuffer();
+				this.wideMembers = null;
+			} else {
+				this.narrowMembers = null;
+				this.wideMembers = members.slice().order(memory.order()).asIntBuffer();
+			}
+
+			ByteBuffer shorts = memory.duplicate().order(memory.order());
+			shorts.position(shorts.position() + memberBytes * numAgents);
+			shorts.limit(shorts.position() + 2 * numAgents);
+			this.states = shorts.slice().order(memory.order()).asShortBuffer();
+		}
+
+
+		@Override
+		int state(int i) {
+			return states.get(i);
+		}
+
+
+		@Override
+		void setState(int i, int packedState) {
+			states.put(i, (short) packedState);
+		}
+
+
+		@Override
+		int member(int k) {
+			return (narrowMembers != null) ? narrowMembers.get(k) : wideMembers.get(k);
+		}
+
+
+		@Override
+		void setMember(int k, int agentIndex) {
+			if (narrowMembers != null) {
+				narrowMembers.put(k, (char) agentIndex);
+			} else {
+				wideMembers.put(k, agentIndex);
+			}
+		}
+	}
+
+
+	/** The columns of a Checkpoint, each page of states is copied the first time it changes. */
+	private static class CopyOnWrite extends AgentStorage {
+
+		/** pages[p] = The states of agents (p << PAGE_SHIFT) ... (either shared or a private copy). */
+		private final short[][] pages;
+
+		/** isCopied[p] = True if pages[p] is a private copy. */
+		private final boolean[] isCopied;
+
+		private int[] members;
+
+		private boolean membersCopied;
+
+
+		CopyOnWrite(short[][] sharedPages, int[] sharedMembers) {
+			this.pages = sharedPages.clone();
+			this.isCopied = new boolean[pages.length];
+			this.members = sharedMembers;
+			this.membersCopied = false;
+		}
+
+
+		@Override
+		int state(int i) {
+			return pages[i >>> PAGE_SHIFT][i & PAGE_MASK];
+		}
+
+
+		@Override
+		void setState(int i, int packedState) {
+			int p = i >>> PAGE_SHIFT;
+			if (!isCopied[p]) {
+				pages[p] = pages[p].clone();
+				isCopied[p] = true;
+			}
+			pages[p][i & PAGE_MASK] = (short) packedState;
+		}
+
+
+		@Override
+		int member(int k) {
+			return members[k];
+		}
+
+
+		@Override
+		void setMember(int k, int agentIndex) {
+			if (!membersCopied) {
+				members = members.clone();
+				membersCopied = true;
+			}
+			members[k] = agentIndex;
+		}
+	}
+}
@@ -16,6 +16,25 @@ public interface BehaviorStream {
 	public TimeStamp timeOfNextEvent(TimeStamp currentTime, RandomEngine rand);
 
 
+	/**
+	 * The allocation free version of timeOfNextEvent (both consume the same random draws and
+	 * return the same time).
+	 *
+	 * @param currentTick - The current time (see TimeStamp.asNumTicks())
+	 *
+	 * @return - The tick of the next event of this type.
+	 */
+	public int tickOfNextEvent(int currentTick, RandomEngine rand);
+
+
+	/**
+	 * @return - The precomputed waiting time distribution tickOfNextEvent samples from (one
+	 * random draw per event). Phase k of the table is the k-th time step of the day modulo the
+	 * table's number of phases.
+	 */
+	public WaitingTimeTable waitingTimes();
+
+
 	/** @return - The expected number of these events per day. */
 	public double expectedNumEventsPerDay();
 }
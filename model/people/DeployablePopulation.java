@@ -1,22 +1,37 @@
 package model.people;
 
 
-import util.Utility;
 import gridBasedData.GridExtraction;
+import gridBasedData.InteractionKernel;
 import java.io.File;
 import java.io.IOException;
-import java.io.Serializable;
 import java.text.DecimalFormat;
 import core.SimulationProperties;
-import probMass.ProbMassFunction;
-import probMass.ProbMassFunctionFactory;
-import util.Parallelizer;
+import model.ModelPlaceSeed;
+import util.FlatStore;
+import util.GraphPartitioner;
 
 
-public class DeployablePopulation implements Serializable {
+/**
+ * A DeployablePopulation holds the places of a model run and the kernel that samples where random
+ * contacts occur.
+ *
+ * Building a population is expensive, so every population is cached in a FlatStore file (see
+ * saveTo for the layout). The cache does not depend on the number of threads -- each model run
+ * computes its own thread owners (see assignThreadOwners).
+ *
+ * A loaded population is never modified, so several model runs may share it (see EnsembleRunner).
+ */
+public class DeployablePopulation {
 
-	/** The directory where thread balancing computations are found. */
-	private final static String POPULATION_PATH = "pops\\";
+	/** The directory where previously constructed populations are found. */
+	private final static File POPULATION_DIRECTORY = new File("pops");
+
+	/** Identifies a FlatStore that contains a DeployablePopulation. */
+	private final static int STORE_KIND = 0x504F5055;
+
+	/** The version of the FlatStore layout written by saveTo (increment it when the layout changes). */
+	private final static int STORE_VERSION = 3;
 
 	/** The name of the dataset being loaded. */
 	private final String dataset;
@@ -27,28 +42,30 @@ public class DeployablePopulation implements Serializable {
 	/** The fraction of each ModelPlace's population that is instantiated. */
 	private final double scale;
 
-	/** The number of threads that "share" this population. */
-	private final int numThreads;
+	/** How random contacts are sampled ("QUADTREE" or "SPARSE"). */
+	private final String kernelType;
 
-	/** A GridBased dataset that is responsible for computing the interactionMatrix. */
-	public final GridExtraction extraction;
+	/** QUADTREE kernel -- The opening angle that controls the approximation error. */
+	private final double kernelOpeningAngle;
 
-	/** The matrix which controls interaction between places. */
-	public double[][] interactionMatrix;
+	/** The far field grid size of a SPARSE interaction kernel. */
+	private final int kernelFarGridSize;
 
-	/** The object speeds up selecting a random number from a given distribution. */
-	public ProbMassFunction[] pdfs;
+	/** The kernel which controls interaction between places -- it also samples contacts. */
+	public final InteractionKernel interactionKernel;
 
 	public final long totalPopulation;
 
 	/** The actual number of place in this population. */
-	public int numPlaces;
+	public final int numPlaces;
 
 	/** placePopulations[i] = the population of ModelPlace i. */
-	public int[] placePopulations;
+	public final int[] placePopulations;
+
+	/** The grid coordinates of each ModelPlace. */
+	public final int[] placeX;
 
-	/** threadOwners[i] = The index of the thread that owns ModelPlace i. */
-	public int[] threadOwners;
+	public final int[] placeY;
 
 	/** The width of the grid (used when drawing maps). */
 	public final int gridWidth;
@@ -60,52 +77,78 @@ public class DeployablePopulation implements Serializable {
 	/** Load (or create) the population requested in the properties file. */
 	public static DeployablePopulation loadPopulation(SimulationProperties props) {
 
-		String fileName = getFileName(props);
-		File file = new File(fileName);
+		File file = new File(POPULATION_DIRECTORY, getFileName(props));
 
 		if (file.exists()) {
 			try {
 				System.out.println("A previously constructed population was found\nLoading...");
-				DeployablePopulation dp = (DeployablePopulation) Utility.deserialize(file);
+				long startTime = System.currentTimeMillis();
+				DeployablePopulation dp = new DeployablePopulation(props, new FlatStore.Reader(file, STORE_KIND, STORE_VERSION));
+				System.out.println("Loaded in " + (System.currentTimeMillis() - startTime) + " ms");
 				return dp;
-			} catch (IOException ioe) {
-				ioe.printStackTrace();
-				System.exit(0);
+			} catch (IOException | IllegalStateException ex) {
+				System.out.println("The population file could not be used (" + ex.getMessage() + ")\nRebuilding...");
 			}
+		}
 
-			throw new IllegalStateException("Should never reach this statement");
+		if (!POPULATION_DIRECTORY.exists()) {
+			POPULATION_DIRECTORY.mkdir();
+		}
 
-		} else {
-			file = new File(DeployablePopulation.POPULATION_PATH);
-			if (!file.exists()) {
-				file.mkdir();
-			}
+		DeployablePopulation dp = new DeployablePopulation(props);
 
-			return new DeployablePopulation(props);
+		try {
+			System.out.println("Saving Population for future use...");
+			dp.saveTo(file);
+		} catch (IOException ex) {
+			ex.printStackTrace();
 		}
+		return dp;
 	}
 
 
 	/**
-	 * Generate the file name for the Population requested in the supplied properties file
+	 * Generate the file name for the Population requested in the supplied properties file. The
+	 * number of threads and the threadOwnership are not part of the name because threadOwners is
+	 * computed when the population is loaded. The name ends with the parameter of the kernel that
+	 * is used (kernelFarGridSize for SPARSE, kernelOpeningAngle for QUADTREE).
 	 *
-	 * @return - A string like "USZIP_10000_0.5_2"
+	 * @return - A string like "USZIP_10000_0.5_SPARSE_16.pop" or "USZIP_10000_0.5_QUADTREE_0.5.pop"
 	 */
 	private static String getFileName(SimulationProperties props) {
+		return getFileName(
+				props.dataSource(),
+				props.approxNumPlaces(),
+				props.scale(),
+				props.interactionKernel(),
+				props.kernelOpeningAngle(),
+				props.kernelFarGridSize());
+	}
 
-		String dataset = props.dataSource();
-		int approxNumPlaces = props.approxNumPlaces();
-		double scale = props.scale();
-		int numThreads = props.numThreads();
 
-		return POPULATION_PATH
-				+ dataset + "_"
+	private static String getFileName(String dataset, int approxNumPlaces, double scale,
+			String kernelType, double kernelOpeningAngle, int kernelFarGridSize) {
+
+		return dataset + "_"
 				+ approxNumPlaces + "_"
 				+ scale + "_"
-				+ numThreads + ".ser";
+				+ kernelType + "_"
+				+ (kernelType.equals("QUADTREE") ? kernelOpeningAngle : kernelFarGridSize)
+				+ ".pop";
 	}
 
 
+	/**
+	 * @return - The name of the file this population is cached in (it identifies the dataset, the
+	 * scale and the kernel, see Checkpoint.fork).
+	 */
+	public String identity() {
+		return getFileName(dataset, approxNumPlaces, scale, kernelType, kernelOpeningAngle,
+				kernelFarGridSize);
+	}
+
+
+	/** Build a population from its dataset. */
 	private DeployablePopulation(SimulationProperties props) {
 		System.out.println("Constructing a Population");
 
@@ -113,63 +156,157 @@ public class DeployablePopulation implements Serializable {
 		this.dataset = props.dataSource();
 		this.scale = props.scale();
 		this.approxNumPlaces = props.approxNumPlaces();
-		this.numThreads = props.numThreads();
+		this.kernelType = props.interactionKernel();
+		this.kernelOpeningAngle = props.kernelOpeningAngle();
+		this.kernelFarGridSize = props.kernelFarGridSize();
 
 		//get the correct data from the data provider
-		this.extraction = GridExtraction.loadData(dataset, approxNumPlaces, scale);
+		GridExtraction extraction = GridExtraction.loadData(dataset, approxNumPlaces, scale);
 		this.gridWidth = extraction.mapWidth;
 		this.gridHeight = extraction.mapHeight;
 		this.numPlaces = extraction.numZips;
 
 		this.placePopulations = new int[numPlaces];
+		this.placeX = new int[numPlaces];
+		this.placeY = new int[numPlaces];
 		long sum = 0;
 		for (int i = 0; i < numPlaces; i++) {
 			placePopulations[i] = extraction.gridPlaces[i].pop;
+			placeX[i] = extraction.gridPlaces[i].x;
+			placeY[i] = extraction.gridPlaces[i].y;
+			sum += placePopulations[i];
+		}
+		this.totalPopulation = sum;
+
+		System.out.println("numPlaces = " + numPlaces);
+		System.out.println("population = " + totalPopulation);
+
+		this.interactionKernel = extraction.computeInteractionKernel(
+				kernelType, kernelOpeningAngle, kernelFarGridSize, props.numThreads());
+
+		System.out.println("Done Building Complete Population");
+	}
+
+
+	/**
+	 * Read a population from a FlatStore written by saveTo.
+	 *
+	 * @throws IllegalStateException - If the store does not match the requested population
+	 */
+	private DeployablePopulation(SimulationProperties props, FlatStore.Reader in) {
+
+		this.dataset = in.getString();
+		this.approxNumPlaces = in.getInt();
+		this.scale = in.getDouble();
+		this.kernelType = in.getString();
+		this.kernelOpeningAngle = in.getDouble();
+		this.kernelFarGridSize = in.getInt();
+
+		if (!identity().equals(getFileName(props))) {
+			throw new IllegalStateException("The stored population has different parameters");
+		}
+
+		this.gridWidth = in.getInt();
+		this.gridHeight = in.getInt();
+		this.placePopulations = in.getIntArray();
+		this.placeX = in.getIntArray();
+		this.placeY = in.getIntArray();
+		this.numPlaces = placePopulations.length;
+
+		long sum = 0;
+		for (int i = 0; i < numPlaces; i++) {
 			sum += placePopulations[i];
 		}
 		this.totalPopulation = sum;
 
+		this.interactionKernel = GridExtraction.readInteractionKernel(kernelType, in);
+
+		if (placeX.length != numPlaces || placeY.length != numPlaces) {
+			throw new IllegalStateException("Inconsistent place arrays");
+		}
+
 		System.out.println("numPlaces = " + numPlaces);
 		System.out.println("population = " + totalPopulation);
+	}
+
 
-		this.interactionMatrix = extraction.computeInteractionMatrix();
+	/**
+	 * Write this population to a FlatStore :: <br>
+	 * dataset, approxNumPlaces, scale, kernelType, kernelOpeningAngle, kernelFarGridSize, gridWidth,
+	 * gridHeight, placePopulations, placeX, placeY, interactionKernel
+	 */
+	private void saveTo(File file) throws IOException {
+		try (FlatStore.Writer out = new FlatStore.Writer(file, STORE_KIND, STORE_VERSION)) {
+			out.putString(dataset);
+			out.putInt(approxNumPlaces);
+			out.putDouble(scale);
+			out.putString(kernelType);
+			out.putDouble(kernelOpeningAngle);
+			out.putInt(kernelFarGridSize);
+			out.putInt(gridWidth);
+			out.putInt(gridHeight);
+			out.putIntArray(placePopulations);
+			out.putIntArray(placeX);
+			out.putIntArray(placeY);
+			interactionKernel.writeTo(out);
+			out.commit();
+		}
+	}
 
-		threadOwners = determineThreadOwners();
 
-		//save a picture of the distribution
-//		drawModelPic("ModelDistribution.bmp");
+	/**
+	 * Assign each place to a thread and report the predicted amount of off-thread contact.
+	 *
+	 * @param numThreads - The number of threads that share the places
+	 * @param threadOwnership - How places are assigned to threads ("GRAPH" or "ROUND_ROBIN")
+	 *
+	 * @return - A new array in which output[i] = the index of the thread that owns ModelPlace i.
+	 */
+	public int[] assignThreadOwners(int numThreads, String threadOwnership) {
 
+		int[] threadOwners = determineThreadOwners(numThreads, threadOwnership);
 
 		//report amount of offThread communication
-		double[][] nodeComm = new double[this.numThreads][this.numThreads];
+		double[][] shares = interactionKernel.groupShares(threadOwners, numThreads);
+		double[][] nodeComm = new double[numThreads][numThreads];
+		double offThread = 0;
 		for (int i = 0; i < numPlaces; i++) {
-			for (int j = 0; j < numPlaces; j++) {
-				nodeComm[threadOwners[i]][threadOwners[j]] += interactionMatrix[i][j];
+			for (int j = 0; j < numThreads; j++) {
+				nodeComm[threadOwners[i]][j] += shares[i][j];
 			}
+			offThread += placePopulations[i] * (1.0 - shares[i][threadOwners[i]]);
 		}
-		double[] nodeRowSums = new double[this.numThreads];
-		for (int i = 0; i < this.numThreads; i++) {
-			for (int j = 0; j < this.numThreads; j++) {
+		double[] nodeRowSums = new double[numThreads];
+		for (int i = 0; i < numThreads; i++) {
+			for (int j = 0; j < numThreads; j++) {
 				nodeRowSums[i] += nodeComm[i][j];
 			}
 		}
 		System.out.println("\nBelow you will find the intra-node communication matrix\n");
 		DecimalFormat df = new DecimalFormat("#.###");
-		for (int i = 0; i < this.numThreads; i++) {
-			for (int j = 0; j < this.numThreads; j++) {
+		for (int i = 0; i < numThreads; i++) {
+			for (int j = 0; j < numThreads; j++) {
 				System.out.print(df.format(nodeComm[i][j] / nodeRowSums[i]) + "\t");
 			}
 			System.out.println();
 		}
 
-		this.pdfs = computePDFsInParallel();
+		System.out.println("\nPredicted fraction of contacts that are off-thread :: "
+				+ df.format(offThread / totalPopulation));
 
-		try {
-			System.out.println("Serializing Population for future use...");
-			Utility.serialize(this, DeployablePopulation.getFileName(props));
-		} catch (Exception ex) {
-			ex.printStackTrace();
-		}
+		return threadOwners;
+	}
+
+
+	/**
+	 * Return a ModelPlaceSeed for a place.
+	 *
+	 * @param placeIndex - The index of the place
+	 *
+	 * @return A ModelPlaceSeed that contains all the information requried to build this place
+	 */
+	public ModelPlaceSeed getSeed(int placeIndex) {
+		return new ModelPlaceSeed(placePopulations[placeIndex], placeX[placeIndex], placeY[placeIndex]);
 	}
 
 
@@ -180,75 +317,34 @@ public class DeployablePopulation implements Serializable {
 	 * @param randomDraw - A random number 0 - 1
 	 */
 	public int getRandomPlaceIndex(int placeIndex, double randomDraw) {
-		return pdfs[placeIndex].getSample(randomDraw);
+		return interactionKernel.sample(placeIndex, randomDraw);
 	}
 
 
 	/** @return - An array in which output[i] = the index of the thread that owners ModelPlace i. */
-	private int[] determineThreadOwners() {
-
-		//@todo -- optimize this
-
-		//speckled - round robin dist
-		int[] array = new int[numPlaces];
-		for (int i = 0; i < numPlaces; i++) {
-			array[i] = i % this.numThreads;
-		}
-		return array;
-	}
-
-
-	private ProbMassFunction[] computePDFsInParallel() {
-
-		//recast interaction matrix as a series of pdfs (1 per zip)
-		System.out.println("\ncalculating pdfs (This will take a while)...");
-
-		//Define a simple Task object -- each task computes the PDF for a single place
-		class ComputeDistributionTask implements Runnable {
-
-			int index;
-
-			//the input
-			double[] rowOfInteractionMatrix;
-
-			//the output
-			ProbMassFunction output;
-
-
-			ComputeDistributionTask(int index, double[] rowOfInteractionMatrix) {
-				this.index = index;
-				this.rowOfInteractionMatrix = rowOfInteractionMatrix;
+	private int[] determineThreadOwners(int numThreads, String threadOwnership) {
+
+		if (threadOwnership.equals("GRAPH")) {
+			//keep places that interact heavily on the same thread, balance population per thread
+			System.out.println("\npartitioning places among threads");
+			int[][] neighbors = new int[numPlaces][];
+			double[][] fractions = new double[numPlaces][];
+			for (int i = 0; i < numPlaces; i++) {
+				neighbors[i] = interactionKernel.nearPlaces(i);
+				fractions[i] = interactionKernel.nearFractions(i);
 			}
-
-
-			@Override
-			public void run() {
-				//this.outputSet[index] = new BinarySearchDistribution(interactionMatrix[i]);
-				this.output = ProbMassFunctionFactory.mediumSpeedMediumMemoryPMF(rowOfInteractionMatrix);
-			}
-		}
-
-		ComputeDistributionTask[] jobs = new ComputeDistributionTask[numPlaces];
-		for (int i = 0; i < jobs.length; i++) {
-			jobs[i] = new ComputeDistributionTask(i, interactionMatrix[i]);
+			return GraphPartitioner.partition(neighbors, fractions, placePopulations, numThreads);
 		}
 
-		Parallelizer para = new Parallelizer(SimulationProperties.getDefaultProperties().
-				numThreads());
-		para.doWorkInParallel(jobs);
-
-		System.out.println("Done Building Complete Population");
-
-		//destory the interactionMatrix because it is no longer needed
-		interactionMatrix = null;
-
-		//extract the distributions that were built..
-		ProbMassFunction[] distributions = new ProbMassFunction[numPlaces];
-		for (int i = 0; i < distributions.length; i++) {
-			distributions[i] = jobs[i].output;
+		if (threadOwnership.equals("ROUND_ROBIN")) {
+			//speckled - round robin dist
+			int[] array = new int[numPlaces];
+			for (int i = 0; i < numPlaces; i++) {
+				array[i] = i % numThreads;
+			}
+			return array;
 		}
 
-		//return them...
-		return distributions;
+		throw new IllegalArgumentException("Unknown thread ownership :: " + threadOwnership);
 	}
 }
@@ -5,8 +5,9 @@ import cern.jet.random.engine.RandomEngine;
 import com.google.common.primitives.Doubles;
 import java.util.Arrays;
 import time.LengthOfTime;
-import time.ModelTimeUnit;
+import time.Ticks;
 import time.TimeStamp;
+import time.TimeStamps;
 
 
 
@@ -16,6 +17,12 @@ public class NonhomogenousPoissonStream implements BehaviorStream {
 	/** This array provides one days worth of probabilities. */
 	private final double[] probEventPerUnitTime;
 
+	/** The waiting time distribution for every time step of the day. */
+	private final WaitingTimeTable waitingTimes;
+
+	/** delayTicks[n] = The ticks in a delay of n time steps (n up to one week). */
+	private final int[] delayTicks;
+
 
 	/**
 	 * Create a NonhomogenousPoissonStream that will generate events at a rate that varies as the
@@ -52,29 +59,47 @@ public class NonhomogenousPoissonStream implements BehaviorStream {
 		this.probEventPerUnitTime = Arrays.copyOf(
 				oneProbPerTimeStep,
 				oneProbPerTimeStep.length);
+
+		//a draw below a time step's probability means the wait continues past that time step
+		this.waitingTimes = new WaitingTimeTable(
+				probEventPerUnitTime,
+				LengthOfTime.TIME_STEPS_PER_DAY);
+		this.delayTicks = Ticks.delayTable(7 * LengthOfTime.TIME_STEPS_PER_DAY + 1);
 	}
 
 
 	/** @return - The time at which the next event of this type will occur. */
 	@Override
 	public TimeStamp timeOfNextEvent(TimeStamp currentTime, RandomEngine rand) {
+		return TimeStamps.atTick(tickOfNextEvent(currentTime.asNumTicks(), rand));
+	}
+
 
-		int index = currentTime.asIndexIntoOneDay();
+	/**
+	 * The wait is the number of consecutive time steps (starting at the current time step of the
+	 * day) whose draw falls below that time step's probability, plus one. It is sampled from
+	 * waitingTimes with a single draw.
+	 *
+	 * @return - The tick at which the next event of this type will occur.
+	 */
+	@Override
+	public int tickOfNextEvent(int currentTick, RandomEngine rand) {
 
-		double numTimeSteps = 1;
-		while (rand.nextDouble() < probEventPerUnitTime[index]) {
+		int numTimeSteps = waitingTimes.numTimeStepsRequired(
+				Ticks.indexIntoOneDay(currentTick),
+				rand.nextDouble());
 
-			numTimeSteps++;
-			index++;
+		int delay = (numTimeSteps < delayTicks.length)
+				? delayTicks[numTimeSteps]
+				: Ticks.ofTimeSteps(numTimeSteps);
 
-			index %= LengthOfTime.TIME_STEPS_PER_DAY;
-		}
+		return Ticks.add(currentTick, delay);
+	}
 
-		LengthOfTime delay = new LengthOfTime(
-				numTimeSteps / (double) LengthOfTime.TIME_STEPS_PER_DAY,
-				ModelTimeUnit.DAYS);
 
-		return currentTime.add(delay);
+	@Override
+	public WaitingTimeTable waitingTimes() {
+		return waitingTimes;
 	}
 
 
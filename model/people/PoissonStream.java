@@ -2,11 +2,10 @@ package model.people;
 
 
 import cern.jet.random.engine.RandomEngine;
-import com.google.common.math.DoubleMath;
-import java.math.RoundingMode;
 import time.LengthOfTime;
-import time.ModelTimeUnit;
+import time.Ticks;
 import time.TimeStamp;
+import time.TimeStamps;
 
 
 /**
@@ -21,6 +20,12 @@ public class PoissonStream implements BehaviorStream {
 
 	private final double probEventPerUnitTime;
 
+	/** The geometric waiting time distribution (one phase, all but about 1 in a million waits). */
+	private final WaitingTimeTable waitingTimes;
+
+	/** Waits that need fewer time steps than this use delayTicks. */
+	private final int[] delayTicks;
+
 
 	public PoissonStream(double numExpectedEventsPerDay) {
 		
@@ -36,41 +41,50 @@ public class PoissonStream implements BehaviorStream {
 					+ " events per day because the probability per unit time must exceed 1");
 		}
 
+		int numSteps = (probEventPerUnitTime < 1.0)
+				? (int) Math.ceil(Math.log(1.0E-6) / Math.log(1.0 - probEventPerUnitTime))
+				: 1;
+		this.waitingTimes = new WaitingTimeTable(new double[]{1.0 - probEventPerUnitTime}, numSteps);
+		this.delayTicks = Ticks.delayTable(waitingTimes.numSteps() + 1);
 	}
 
 
 	/** @return - The time at which the next event of this type will occur. */
 	@Override
 	public TimeStamp timeOfNextEvent(TimeStamp currentTime, RandomEngine rand) {
+		return TimeStamps.atTick(tickOfNextEvent(currentTime.asNumTicks(), rand));
+	}
 
-		int numTimeSteps = computeNumTimeStepsRequired(rand.nextDouble());
 
-		LengthOfTime delay = new LengthOfTime(
-				1.0 * numTimeSteps / (double) LengthOfTime.TIME_STEPS_PER_DAY,
-				ModelTimeUnit.DAYS);
+	/**
+	 * A PoissonStream implements a Geometric Random Variable where p = probEventPerUnitTime. The
+	 * number of time steps (i.e. random draws) required for an event to occur is found by
+	 * inverting the cumulative distribution "CDF = 1 - (1-p)^k", which is tabulated in
+	 * waitingTimes.
+	 *
+	 * @return - The tick at which the next event of this type will occur.
+	 */
+	@Override
+	public int tickOfNextEvent(int currentTick, RandomEngine rand) {
 
-		return currentTime.add(delay);
-	}
+		int numTimeSteps = waitingTimes.numTimeStepsRequired(0, rand.nextDouble());
 
+		int delay = (numTimeSteps < delayTicks.length)
+				? delayTicks[numTimeSteps]
+				: Ticks.ofTimeSteps(numTimeSteps);
 
-	@Override
-	public double expectedNumEventsPerDay() {
-		return probEventPerUnitTime * LengthOfTime.TIME_STEPS_PER_DAY;
+		return Ticks.add(currentTick, delay);
 	}
 
 
-	/**
-	 * A PoissonStream implements a Geometric Random Variable where p = probEventPerUnitTime. We
-	 * want to know how many random draws are required until an event occurs. Therefore, we use the
-	 * cumulative distribution of a geometric random variable "CDF = 1 - (1-p)^k". We set the CDF in
-	 * the equation equal to the random draw, then solve for k.
-	 *
-	 * @return - The number of time step (i.e. random draws) required for an event to occur.
-	 */
-	private int computeNumTimeStepsRequired(double randDraw) {
+	@Override
+	public WaitingTimeTable waitingTimes() {
+		return waitingTimes;
+	}
 
-		double k = Math.log(randDraw) / Math.log(1.0 - probEventPerUnitTime);
 
-		return DoubleMath.roundToInt(k, RoundingMode.UP);
+	@Override
+	public double expectedNumEventsPerDay() {
+		return probEventPerUnitTime * LengthOfTime.TIME_STEPS_PER_DAY;
 	}
 }
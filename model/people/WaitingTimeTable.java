@@ -0,0 +1,116 @@
+package model.people;
+
+
+/**
+ * A WaitingTimeTable is the precomputed distribution of the number of time steps until a
+ * BehaviorStream's next event. The distribution may depend on the time step the wait starts at (its
+ * phase within one period, ie one day) but the per step probabilities repeat every period.
+ *
+ * With this table the waiting time is sampled with ONE random draw and a binary search (inverse
+ * CDF sampling) no matter how the per step probabilities vary. Waits longer than the table are
+ * handled by skipping whole tables, the table repeats because the probabilities do.
+ */
+public class WaitingTimeTable {
+
+	/** The number of distinct start phases (the length of the period in time steps). */
+	private final int numPhases;
+
+	/** The number of time steps each row covers (a multiple of numPhases). */
+	private final int numSteps;
+
+	/**
+	 * survival[phase * (numSteps + 1) + n] = The probability the wait is longer than n time steps
+	 * when it starts at the given phase.
+	 */
+	private final double[] survival;
+
+	/** The probability the wait is longer than numSteps (the same for every phase). */
+	private final double tailSurvival;
+
+
+	/**
+	 * Build a table.
+	 *
+	 * @param probNoEvent - probNoEvent[k] = The probability that no event occurs at the k-th time
+	 * step of the period
+	 * @param numSteps - The number of time steps in each row of the table (rounded up to a whole
+	 * number of periods)
+	 */
+	public WaitingTimeTable(double[] probNoEvent, int numSteps) {
+
+		this.numPhases = probNoEvent.length;
+		if (numPhases == 0) {
+			throw new IllegalArgumentException("A WaitingTimeTable needs at least 1 probability");
+		}
+
+		this.numSteps = ((Math.max(numSteps, 1) + numPhases - 1) / numPhases) * numPhases;
+		this.survival = new double[numPhases * (this.numSteps + 1)];
+
+		for (int phase = 0; phase < numPhases; phase++) {
+			int row = phase * (this.numSteps + 1);
+			survival[row] = 1.0;
+			for (int n = 1; n <= this.numSteps; n++) {
+				survival[row + n] = survival[row + n - 1] * probNoEvent[(phase + n - 1) % numPhases];
+			}
+		}
+
+		this.tailSurvival = survival[this.numSteps];
+		if (tailSurvival >= 1.0) {
+			throw new IllegalArgumentException("The stream never generates an event");
+		}
+	}
+
+
+	/** @return - The number of distinct start phases. */
+	public int numPhases() {
+		return numPhases;
+	}
+
+
+	/** @return - The number of time steps each row of the table covers. */
+	public int numSteps() {
+		return numSteps;
+	}
+
+
+	/**
+	 * @return - The probability the wait is longer than numTimeSteps when it starts at the given
+	 * phase (numTimeSteps <= numSteps()).
+	 */
+	public double probWaitExceeds(int phase, int numTimeSteps) {
+		return survival[phase * (numSteps + 1) + numTimeSteps];
+	}
+
+
+	/**
+	 * Sample a waiting time.
+	 *
+	 * @param phase - The phase the wait starts at (0 <= phase < numPhases())
+	 * @param randDraw - A uniformly distributed random number between 0 and 1 (exclusive)
+	 *
+	 * @return - The number of time steps until the next event (at least 1).
+	 */
+	public int numTimeStepsRequired(int phase, double randDraw) {
+
+		//the wait is longer than a whole table with probability tailSurvival
+		int numSkipped = 0;
+		while (randDraw < tailSurvival) {
+			randDraw /= tailSurvival;
+			numSkipped += numSteps;
+		}
+
+		//binary search the (descending) row for the smallest n with survival(n) <= randDraw
+		int row = phase * (numSteps + 1);
+		int low = 1;
+		int high = numSteps;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (survival[row + mid] <= randDraw) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return numSkipped + low;
+	}
+}
@@ -109,6 +109,12 @@ public class LengthOfTime {
 
 
 	int toNumTicks() {
+		return toNumTicks(numYears, numDays, numHours, numMins);
+	}
+
+
+	/** @return - The number of ticks in a LengthOfTime with these fields (see toNumTicks()). */
+	static int toNumTicks(int numYears, int numDays, int numHours, int numMins) {
 
 		int totalDays = 365 * numYears + numDays;
 		int ticksForDays = totalDays * TIME_STEPS_PER_DAY;
@@ -0,0 +1,88 @@
+package time;
+
+
+/**
+ * Static time operations on primitive ticks (the value of TimeStamp.asNumTicks()). The event loop
+ * schedules in ticks so that computing the time of the next event never allocates a TimeStamp or
+ * a LengthOfTime. Every operation gives exactly the same tick as the equivalent TimeStamp /
+ * LengthOfTime operation.
+ */
+public class Ticks {
+
+	/** The tick of a time that never occurs (see TimeStamps.neverOccuringTime()). */
+	public static final int NEVER = Integer.MAX_VALUE;
+
+
+	/** Disallow instantiation of this class. */
+	private Ticks() {
+		throw new RuntimeException("Creating a \"Ticks\" object is not allowed");
+	}
+
+
+	/** @return - The number of ticks in a LengthOfTime. */
+	public static int of(LengthOfTime length) {
+		return length.toNumTicks();
+	}
+
+
+	/**
+	 * @return - The number of ticks in "new LengthOfTime(numDays, ModelTimeUnit.DAYS)" (the
+	 * fraction of a day is truncated to whole minutes first).
+	 */
+	public static int ofDays(double numDays) {
+
+		int days = (int) numDays;
+		int hours = (int) ((numDays % 1) * 24);
+		int mins = (int) (((numDays * 24) % 1) * 60);
+
+		return LengthOfTime.toNumTicks(0, days, hours, mins);
+	}
+
+
+	/**
+	 * @return - The number of ticks in a delay of numTimeSteps time steps when that delay is
+	 * expressed as a fraction of a day (ie ofDays(numTimeSteps / TIME_STEPS_PER_DAY)).
+	 */
+	public static int ofTimeSteps(int numTimeSteps) {
+		return ofDays(1.0 * numTimeSteps / (double) LengthOfTime.TIME_STEPS_PER_DAY);
+	}
+
+
+	/**
+	 * A lookup table for ofTimeSteps.
+	 *
+	 * @return - output[k] = ofTimeSteps(k) for 0 <= k < length
+	 */
+	public static int[] delayTable(int length) {
+		int[] table = new int[length];
+		for (int k = 0; k < length; k++) {
+			table[k] = ofTimeSteps(k);
+		}
+		return table;
+	}
+
+
+	/** @return - The tick "numTicks" after tick (the same as TimeStamp.add). */
+	public static int add(int tick, int numTicks) {
+
+		if (tick == NEVER) {
+			throw new UnsupportedOperationException("Not Defined -- This time does not exist");
+		}
+
+		int newTick = tick + numTicks;
+		if (newTick < 0) {
+			throw new IllegalArgumentException("Cannot create a negative time :: " + newTick);
+		}
+		return newTick;
+	}
+
+
+	/** @return - The time step within its day of a tick (the same as TimeStamp.asIndexIntoOneDay). */
+	public static int indexIntoOneDay(int tick) {
+
+		if (tick == NEVER) {
+			throw new UnsupportedOperationException("Not Defined -- This time does not exist");
+		}
+		return tick % LengthOfTime.TIME_STEPS_PER_DAY;
+	}
+}
@@ -77,6 +77,12 @@ public class TimeStamp implements Comparable<TimeStamp>, Serializable {
 	}
 
 
+	/** @return - The number of time steps (ticks) between the initial time and this TimeStamp. */
+	public int asNumTicks() {
+		return time;
+	}
+
+
 	@Override
 	public String toString() {
 		return Integer.toString(time);
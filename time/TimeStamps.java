@@ -18,6 +18,19 @@ public class TimeStamps {
 	}
 
 
+	/**
+	 * @param numTicks - The number of time steps since the initial time
+	 *
+	 * @return - A TimeStamp at the given tick (the inverse of TimeStamp.asNumTicks()).
+	 */
+	public static TimeStamp atTick(int numTicks) {
+		if (numTicks == neverOccuringTime.time) {
+			return neverOccuringTime;
+		}
+		return new TimeStamp(numTicks);
+	}
+
+
 	/** @return - The TimeStamp that occurs first from the given TimeStamp inputs. */
 	public static TimeStamp firstOf(TimeStamp... times) {
 
@@ -0,0 +1,363 @@
+package util;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+
+
+/**
+ * An AliasTableBlock stores one Vose alias table per row in contiguous off-heap blocks (direct
+ * ByteBuffers when built, read-only views of a mapped FlatStore when loaded).
+ *
+ * Each slot of a row holds a threshold (float), a primary outcome (int) and an alias outcome (int).
+ * Sampling a row of n slots needs one random draw u :: slot k = floor(u * n) is probed and the
+ * primary outcome is returned if frac(u * n) < threshold, otherwise the alias outcome is returned.
+ * There are no per-row Java objects so there is no pointer chasing.
+ *
+ * A ByteBuffer is limited to Integer.MAX_VALUE bytes (about 500k places of a SPARSE kernel), so the
+ * rows are split into segments of consecutive rows, each at most MAX_SEGMENT_BYTES long. A row is
+ * never split across segments.
+ *
+ * Segment layout (little endian) :: <br>
+ * MAGIC, firstRow, numRows, rowStart[0 ... numRows] (slot indices within the segment), slots
+ * (SLOT_BYTES each)
+ */
+public class AliasTableBlock {
+
+	/** Identifies the start of a segment. */
+	private static final int MAGIC = 0x414C4941;
+
+	private static final int HEADER_BYTES = 12;
+
+	/** threshold (float), primary (int), alias (int) */
+	private static final int SLOT_BYTES = 12;
+
+	/** The largest segment that is built. */
+	private static final int MAX_SEGMENT_BYTES = 1 << 30;
+
+	/** The segments -- only absolute get/put methods are used so concurrent readers are safe. */
+	private final ByteBuffer[] segments;
+
+	/** firstRows[s] = The first row of segment s (firstRows[segments.length] = numRows). */
+	private final int[] firstRows;
+
+	/** slotBases[s] = The byte offset of slot 0 within segment s. */
+	private final int[] slotBases;
+
+	private final int numRows;
+
+
+	/**
+	 * @throws IllegalStateException - If the segments do not form one AliasTableBlock
+	 */
+	private AliasTableBlock(ByteBuffer[] segments) {
+
+		this.segments = segments;
+		this.firstRows = new int[segments.length + 1];
+		this.slotBases = new int[segments.length];
+
+		int nextRow = 0;
+		for (int s = 0; s < segments.length; s++) {
+			ByteBuffer segment = segments[s].order(ByteOrder.LITTLE_ENDIAN);
+			if (segment.capacity() < HEADER_BYTES || segment.getInt(0) != MAGIC
+					|| segment.getInt(4) != nextRow || segment.getInt(8) < 0) {
+				throw new IllegalStateException("Segment " + s + " is not part of this AliasTableBlock");
+			}
+			firstRows[s] = nextRow;
+			nextRow += segment.getInt(8);
+			slotBases[s] = HEADER_BYTES + 4 * (segment.getInt(8) + 1);
+		}
+		this.numRows = nextRow;
+		firstRows[segments.length] = numRows;
+	}
+
+
+	/**
+	 * Read an AliasTableBlock that was written with writeTo. The segments are views of the store.
+	 *
+	 * @throws IllegalStateException - If the store does not contain an AliasTableBlock
+	 */
+	public AliasTableBlock(FlatStore.Reader in) {
+		this(readSegments(in));
+	}
+
+
+	private static ByteBuffer[] readSegments(FlatStore.Reader in) {
+		int numSegments = in.getInt();
+		if (numSegments < 0) {
+			throw new IllegalStateException("Corrupt AliasTableBlock :: " + numSegments + " segments");
+		}
+		ByteBuffer[] segments = new ByteBuffer[numSegments];
+		for (int s = 0; s < numSegments; s++) {
+			segments[s] = in.getBlock();
+		}
+		return segments;
+	}
+
+
+	/** Write every segment (see FlatStore.putBlock). */
+	public void writeTo(FlatStore.Writer out) throws IOException {
+		out.putInt(segments.length);
+		for (ByteBuffer segment : segments) {
+			out.putBlock(segment);
+		}
+	}
+
+
+	/**
+	 * Build the alias tables of many rows.
+	 *
+	 * @param outcomes - outcomes[r][k] = The value returned when the k-th outcome of row r is drawn
+	 * @param weights - weights[r][k] = The (unnormalized, non-negative) weight of outcomes[r][k]
+	 * @param numThreads - The number of threads used to build the rows
+	 */
+	public static AliasTableBlock build(final int[][] outcomes, final double[][] weights, int numThreads) {
+
+		if (outcomes.length != weights.length) {
+			throw new IllegalArgumentException(
+					"outcomes.length != weights.length :: " + outcomes.length + " != " + weights.length);
+		}
+
+		int numRows = outcomes.length;
+		for (int r = 0; r < numRows; r++) {
+			if (outcomes[r].length != weights[r].length || outcomes[r].length == 0) {
+				throw new IllegalArgumentException("Row " + r + " is empty or mismatched");
+			}
+			if (4L + SLOT_BYTES * outcomes[r].length > MAX_SEGMENT_BYTES - HEADER_BYTES - 4) {
+				throw new IllegalArgumentException("Row " + r + " is too long :: " + outcomes[r].length);
+			}
+		}
+
+		//cut the rows into segments of at most MAX_SEGMENT_BYTES
+		int[] segmentStarts = new int[4];
+		int numSegments = 0;
+		long segmentBytes = HEADER_BYTES + 4;
+		for (int r = 0; r < numRows; r++) {
+			long rowBytes = 4L + SLOT_BYTES * outcomes[r].length;
+			if (r == 0 || segmentBytes + rowBytes > MAX_SEGMENT_BYTES) {
+				if (numSegments == segmentStarts.length) {
+					segmentStarts = Arrays.copyOf(segmentStarts, 2 * numSegments);
+				}
+				segmentStarts[numSegments++] = r;
+				segmentBytes = HEADER_BYTES + 4;
+			}
+			segmentBytes += rowBytes;
+		}
+
+		ByteBuffer[] segments = new ByteBuffer[Math.max(1, numSegments)];
+		for (int s = 0; s < segments.length; s++) {
+			int firstRow = (numSegments == 0) ? 0 : segmentStarts[s];
+			int lastRow = (s + 1 < numSegments) ? segmentStarts[s + 1] : numRows;
+			int numSlots = 0;
+			for (int r = firstRow; r < lastRow; r++) {
+				numSlots += outcomes[r].length;
+			}
+			int numBytes = HEADER_BYTES + 4 * (lastRow - firstRow + 1) + SLOT_BYTES * numSlots;
+
+			ByteBuffer segment = ByteBuffer.allocateDirect(numBytes).order(ByteOrder.LITTLE_ENDIAN);
+			segment.putInt(0, MAGIC);
+			segment.putInt(4, firstRow);
+			segment.putInt(8, lastRow - firstRow);
+			int slot = 0;
+			for (int r = firstRow; r < lastRow; r++) {
+				segment.putInt(HEADER_BYTES + 4 * (r - firstRow), slot);
+				slot += outcomes[r].length;
+			}
+			segment.putInt(HEADER_BYTES + 4 * (lastRow - firstRow), slot);
+			segments[s] = segment;
+		}
+
+		final AliasTableBlock table = new AliasTableBlock(segments);
+
+		//fill the rows in parallel -- every row occupies its own region of a segment
+		int numJobs = Math.min(Math.max(1, numRows), Math.max(1, numThreads) * 8);
+		Runnable[] jobs = new Runnable[numJobs];
+		for (int b = 0; b < numJobs; b++) {
+			final int firstRow = (int) ((long) numRows * b / numJobs);
+			final int lastRow = (int) ((long) numRows * (b + 1) / numJobs);
+			jobs[b] = new Runnable() {
+				@Override
+				public void run() {
+					for (int r = firstRow; r < lastRow; r++) {
+						table.fillRow(r, outcomes[r], weights[r]);
+					}
+				}
+			};
+		}
+		new Parallelizer(Math.max(1, numThreads)).doWorkInParallel(jobs);
+
+		return table;
+	}
+
+
+	/** @return - The segment that holds a row. */
+	private int segmentOf(int row) {
+		if (segments.length == 1) {
+			return 0;
+		}
+		int s = Arrays.binarySearch(firstRows, row);
+		//segments are never empty so an exact match is the first row of that segment
+		return (s >= 0) ? s : -s - 2;
+	}
+
+
+	/** @return - The byte offset (within segment s) of the first slot of a row. */
+	private int firstSlot(int s, int row) {
+		return slotBases[s] + SLOT_BYTES * segments[s].getInt(HEADER_BYTES + 4 * (row - firstRows[s]));
+	}
+
+
+	/** Compute the alias table of one row (Vose's method) and store it in its segment. */
+	private void fillRow(int row, int[] outcomes, double[] weights) {
+
+		int n = outcomes.length;
+		double sum = 0;
+		for (double w : weights) {
+			if (w < 0) {
+				throw new IllegalArgumentException("Negative weight in row " + row + " :: " + w);
+			}
+			sum += w;
+		}
+
+		double[] scaled = new double[n];
+		int[] small = new int[n];
+		int[] large = new int[n];
+		int numSmall = 0;
+		int numLarge = 0;
+		for (int k = 0; k < n; k++) {
+			scaled[k] = (sum > 0) ? weights[k] * n / sum : 1.0;
+			if (scaled[k] < 1.0) {
+				small[numSmall++] = k;
+			} else {
+				large[numLarge++] = k;
+			}
+		}
+
+		int seg = segmentOf(row);
+		ByteBuffer segment = segments[seg];
+		int start = firstSlot(seg, row);
+		while (numSmall > 0 && numLarge > 0) {
+			int s = small[--numSmall];
+			int l = large[--numLarge];
+			putSlot(segment, start + SLOT_BYTES * s, scaled[s], outcomes[s], outcomes[l]);
+			scaled[l] = (scaled[l] + scaled[s]) - 1.0;
+			if (scaled[l] < 1.0) {
+				small[numSmall++] = l;
+			} else {
+				large[numLarge++] = l;
+			}
+		}
+		//whatever remains has (up to rounding error) a scaled weight of exactly 1
+		while (numLarge > 0) {
+			int l = large[--numLarge];
+			putSlot(segment, start + SLOT_BYTES * l, 1.0, outcomes[l], outcomes[l]);
+		}
+		while (numSmall > 0) {
+			int s = small[--numSmall];
+			putSlot(segment, start + SLOT_BYTES * s, 1.0, outcomes[s], outcomes[s]);
+		}
+	}
+
+
+	private static void putSlot(ByteBuffer segment, int at, double threshold, int primary, int alias) {
+		segment.putFloat(at, (float) threshold);
+		segment.putInt(at + 4, primary);
+		segment.putInt(at + 8, alias);
+	}
+
+
+	/** @return - The number of rows in this block. */
+	public int numRows() {
+		return numRows;
+	}
+
+
+	/** @return - The number of outcomes in a row. */
+	public int rowLength(int row) {
+		int s = segmentOf(row);
+		int index = HEADER_BYTES + 4 * (row - firstRows[s]);
+		return segments[s].getInt(index + 4) - segments[s].getInt(index);
+	}
+
+
+	/**
+	 * Draw an outcome from a row.
+	 *
+	 * @param row - The row (ie distribution) to sample
+	 * @param randomDraw - A random number 0 - 1
+	 */
+	public int sample(int row, double randomDraw) {
+
+		int s = segmentOf(row);
+		ByteBuffer segment = segments[s];
+		int index = HEADER_BYTES + 4 * (row - firstRows[s]);
+		int start = segment.getInt(index);
+		int n = segment.getInt(index + 4) - start;
+
+		double scaled = randomDraw * n;
+		int k = Math.min((int) scaled, n - 1);
+		int at = slotBases[s] + SLOT_BYTES * (start + k);
+
+		return (scaled - k < segment.getFloat(at)) ? segment.getInt(at + 4) : segment.getInt(at + 8);
+	}
+
+
+	/**
+	 * @return - The part of randomDraw that sample(row, randomDraw) did not use, rescaled to 0 - 1.
+	 * It is independent of the outcome that was drawn so it can select a sub-outcome.
+	 */
+	public double residual(int row, double randomDraw) {
+
+		int s = segmentOf(row);
+		int n = rowLength(row);
+
+		double scaled = randomDraw * n;
+		int k = Math.min((int) scaled, n - 1);
+		double fraction = Math.min(scaled - k, 1.0);
+		double threshold = segments[s].getFloat(firstSlot(s, row) + SLOT_BYTES * k);
+
+		if (fraction < threshold) {
+			return fraction / threshold;
+		}
+		return (threshold < 1.0) ? (fraction - threshold) / (1.0 - threshold) : 0.0;
+	}
+
+
+	/** @return - The outcomes of a row (in the order they were given to build). */
+	public int[] outcomes(int row) {
+		int s = segmentOf(row);
+		int start = firstSlot(s, row);
+		int[] outcomes = new int[rowLength(row)];
+		for (int k = 0; k < outcomes.length; k++) {
+			outcomes[k] = segments[s].getInt(start + SLOT_BYTES * k + 4);
+		}
+		return outcomes;
+	}
+
+
+	/** @return - output[k] = The probability that sample(row, ...) returns outcomes(row)[k]. */
+	public double[] probabilities(int row) {
+
+		int s = segmentOf(row);
+		ByteBuffer segment = segments[s];
+		int start = firstSlot(s, row);
+		int n = rowLength(row);
+
+		HashMap<Integer, Integer> slotOf = new HashMap<>();
+		for (int k = 0; k < n; k++) {
+			slotOf.put(segment.getInt(start + SLOT_BYTES * k + 4), k);
+		}
+
+		double[] probs = new double[n];
+		for (int k = 0; k < n; k++) {
+			int at = start + SLOT_BYTES * k;
+			double threshold = Math.min(segment.getFloat(at), 1.0);
+			probs[k] += threshold / n;
+			probs[slotOf.get(segment.getInt(at + 8))] += (1.0 - threshold) / n;
+		}
+		return probs;
+	}
+}
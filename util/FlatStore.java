@@ -0,0 +1,487 @@
+package util;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+
+/**
+ * A FlatStore is a versioned binary file of primitive values and flat arrays. It replaces Java
+ * serialization for large, array based objects.
+ *
+ * A Writer streams the values to a ".partial" file through a small buffer. commit() writes the
+ * header and moves the partial file into place, so a store that was not completely written is
+ * never found at its name. A Reader validates the header and then reads the values back in the
+ * order they were written through a window of the file that is mapped with FileChannel.map (a
+ * mapping is limited to Integer.MAX_VALUE bytes, so a larger store is mapped one WINDOW_BYTES window
+ * at a time). Arrays are copied out of the mapping with bulk gets, raw blocks (see getBlock) are
+ * returned as views of the mapping so they are never copied. A read past the end of the payload
+ * throws an IllegalStateException (a corrupt store). The checksum of the payload is only computed
+ * by verify().
+ *
+ * File layout (little endian) :: <br>
+ * MAGIC, kind, version, payloadLength (long), CRC32 of the payload (long), payload
+ */
+public class FlatStore {
+
+	private static final int MAGIC = 0x464C5354;
+
+	private static final int HEADER_BYTES = 28;
+
+	/** The size of the Writer's buffer (also the chunk size used to compute checksums). */
+	private static final int BUFFER_BYTES = 1 << 20;
+
+	/** The size of the region of a file that a Reader maps at a time (larger blocks get their own). */
+	private static final int WINDOW_BYTES = 1 << 30;
+
+
+	/** Disallow instantiation of this class. */
+	private FlatStore() {
+		throw new RuntimeException("Creating a \"FlatStore\" object is not allowed");
+	}
+
+
+	/**
+	 * Streams values into a FlatStore file. commit() writes the header and moves the file into
+	 * place, close() discards a store that was not committed.
+	 */
+	public static class Writer implements AutoCloseable {
+
+		private final File file;
+
+		private final File partial;
+
+		private final FileChannel channel;
+
+		private final ByteBuffer buffer;
+
+		private final CRC32 crc;
+
+		private final int kind;
+
+		private final int version;
+
+		private long payloadLength;
+
+		private boolean committed;
+
+
+		/**
+		 * @param file - The file to create (or overwrite) when the store is committed
+		 * @param kind - Identifies what is stored in the file (checked by the Reader)
+		 * @param version - The version of that kind's layout (checked by the Reader)
+		 */
+		public Writer(File file, int kind, int version) throws IOException {
+			this.file = file;
+			this.partial = new File(file.getPath() + ".partial");
+			this.channel = FileChannel.open(partial.toPath(),
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			this.buffer = ByteBuffer.allocate(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			this.crc = new CRC32();
+			this.kind = kind;
+			this.version = version;
+			this.payloadLength = 0;
+			this.committed = false;
+			channel.position(HEADER_BYTES);
+		}
+
+
+		/** Make room for numBytes in the buffer (flushing it if necessary). */
+		private void ensureRoom(int numBytes) throws IOException {
+			if (buffer.remaining() < numBytes) {
+				flush();
+			}
+		}
+
+
+		private void flush() throws IOException {
+			buffer.flip();
+			crc.update(buffer.array(), 0, buffer.limit());
+			payloadLength += buffer.limit();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+
+
+		public void putInt(int value) throws IOException {
+			ensureRoom(4);
+			buffer.putInt(value);
+		}
+
+
+		public void putLong(long value) throws IOException {
+			ensureRoom(8);
+			buffer.putLong(value);
+		}
+
+
+		public void putDouble(double value) throws IOException {
+			ensureRoom(8);
+			buffer.putDouble(value);
+		}
+
+
+		public void putString(String value) throws IOException {
+			putBytes(value.getBytes(StandardCharsets.UTF_8));
+		}
+
+
+		/** Write a length prefixed byte array. */
+		public void putBytes(byte[] array) throws IOException {
+			putInt(array.length);
+			int done = 0;
+			while (done < array.length) {
+				ensureRoom(1);
+				int n = Math.min(buffer.remaining(), array.length - done);
+				buffer.put(array, done, n);
+				done += n;
+			}
+		}
+
+
+		/** Write a length prefixed short array. */
+		public void putShortArray(short[] array) throws IOException {
+			putInt(array.length);
+			int done = 0;
+			while (done < array.length) {
+				ensureRoom(2);
+				int n = Math.min(buffer.remaining() / 2, array.length - done);
+				buffer.asShortBuffer().put(array, done, n);
+				buffer.position(buffer.position() + 2 * n);
+				done += n;
+			}
+		}
+
+
+		/** Write a length prefixed int array. */
+		public void putIntArray(int[] array) throws IOException {
+			putInt(array.length);
+			int done = 0;
+			while (done < array.length) {
+				ensureRoom(4);
+				int n = Math.min(buffer.remaining() / 4, array.length - done);
+				buffer.asIntBuffer().put(array, done, n);
+				buffer.position(buffer.position() + 4 * n);
+				done += n;
+			}
+		}
+
+
+		/** Write a length prefixed long array. */
+		public void putLongArray(long[] array) throws IOException {
+			putInt(array.length);
+			int done = 0;
+			while (done < array.length) {
+				ensureRoom(8);
+				int n = Math.min(buffer.remaining() / 8, array.length - done);
+				buffer.asLongBuffer().put(array, done, n);
+				buffer.position(buffer.position() + 8 * n);
+				done += n;
+			}
+		}
+
+
+		/** Write a length prefixed double array. */
+		public void putDoubleArray(double[] array) throws IOException {
+			putInt(array.length);
+			int done = 0;
+			while (done < array.length) {
+				ensureRoom(8);
+				int n = Math.min(buffer.remaining() / 8, array.length - done);
+				buffer.asDoubleBuffer().put(array, done, n);
+				buffer.position(buffer.position() + 8 * n);
+				done += n;
+			}
+		}
+
+
+		/** Write a length prefixed block of raw bytes (every byte from 0 to the block's limit). */
+		public void putBlock(ByteBuffer block) throws IOException {
+			ByteBuffer source = block.duplicate();
+			source.position(0);
+			putLong(source.remaining());
+			while (source.hasRemaining()) {
+				ensureRoom(1);
+				int n = Math.min(buffer.remaining(), source.remaining());
+				ByteBuffer chunk = source.duplicate();
+				chunk.limit(chunk.position() + n);
+				buffer.put(chunk);
+				source.position(source.position() + n);
+			}
+		}
+
+
+		/**
+		 * Flush the remaining values, write the header and move the partial file into place. Call
+		 * it once every value has been written.
+		 */
+		public void commit() throws IOException {
+			flush();
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC);
+			header.putInt(kind);
+			header.putInt(version);
+			header.putLong(payloadLength);
+			header.putLong(crc.getValue());
+			header.flip();
+			channel.position(0);
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+			channel.close();
+
+			Files.move(partial.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			committed = true;
+		}
+
+
+		/** Close the file. A store that was not committed (e.g. a write failed) is deleted. */
+		@Override
+		public void close() throws IOException {
+			if (!committed) {
+				channel.close();
+				Files.deleteIfExists(partial.toPath());
+			}
+		}
+	}
+
+
+	/** Reads the values of a mapped FlatStore file (in the order they were written). */
+	public static class Reader {
+
+		private final File file;
+
+		private final long payloadLength;
+
+		/** The CRC32 of the payload that was recorded by the Writer. */
+		private final long expectedChecksum;
+
+		/** The mapped part of the payload (its position is not used). */
+		private ByteBuffer window;
+
+		/** The payload offset of window[0]. */
+		private long windowStart;
+
+		/** The payload offset of the next value. */
+		private long position;
+
+
+		/**
+		 * Open a file and validate its header (the checksum is only computed by verify).
+		 *
+		 * @throws IllegalStateException - If the file is not a valid FlatStore of the given kind
+		 * and version
+		 */
+		public Reader(File file, int kind, int version) throws IOException {
+
+			this.file = file;
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			long fileSize;
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				fileSize = channel.size();
+				while (header.hasRemaining()) {
+					if (channel.read(header) < 0) {
+						break;
+					}
+				}
+			}
+			if (header.hasRemaining()) {
+				throw new IllegalStateException("Truncated file :: " + file);
+			}
+
+			if (header.getInt(0) != MAGIC || header.getInt(4) != kind) {
+				throw new IllegalStateException("Unrecognized file :: " + file);
+			}
+			if (header.getInt(8) != version) {
+				throw new IllegalStateException(
+						"Unsupported version :: " + header.getInt(8) + " (expected " + version + ")");
+			}
+			this.payloadLength = header.getLong(12);
+			if (payloadLength != fileSize - HEADER_BYTES) {
+				throw new IllegalStateException("Truncated file :: " + file);
+			}
+
+			this.expectedChecksum = header.getLong(20);
+			this.window = ByteBuffer.allocate(0);
+			this.windowStart = 0;
+			this.position = 0;
+		}
+
+
+		/**
+		 * Compute the checksum of the whole payload (this reads every page of the file).
+		 *
+		 * @throws IllegalStateException - If the payload does not match the recorded checksum
+		 */
+		public void verify() throws IOException {
+			CRC32 crc = new CRC32();
+			ByteBuffer chunk = ByteBuffer.allocate(BUFFER_BYTES);
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				channel.position(HEADER_BYTES);
+				while (channel.read(chunk) > 0) {
+					crc.update(chunk.array(), 0, chunk.position());
+					chunk.clear();
+				}
+			}
+			if (crc.getValue() != expectedChecksum) {
+				throw new IllegalStateException("Checksum mismatch :: " + file);
+			}
+		}
+
+
+		/**
+		 * Ensure count values of elementBytes bytes each remain in the payload.
+		 *
+		 * @throws IllegalStateException - If they do not (the store is corrupt)
+		 */
+		private void require(long count, int elementBytes) {
+			if (count < 0 || count > (payloadLength - position) / elementBytes) {
+				throw new IllegalStateException("Corrupt store (a read of " + count + " x "
+						+ elementBytes + " bytes is past the end of the payload) :: " + file);
+			}
+		}
+
+
+		/**
+		 * @return - The window, positioned at the next value, with at least numBytes (that were
+		 * checked with require) remaining. A new window is mapped when the current one is too short.
+		 */
+		private ByteBuffer window(int numBytes) {
+			if (position + numBytes > windowStart + window.capacity()) {
+				long length = Math.min(Math.max(WINDOW_BYTES, numBytes), payloadLength - position);
+				try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+					window = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + position, length);
+				} catch (IOException ex) {
+					throw new IllegalStateException("The store could not be mapped :: " + file, ex);
+				}
+				window.order(ByteOrder.LITTLE_ENDIAN);
+				windowStart = position;
+			}
+			window.position((int) (position - windowStart));
+			position += numBytes;
+			return window;
+		}
+
+
+		/** @return - The number of elements of elementBytes bytes each that are read in one chunk. */
+		private static int chunk(int remaining, int elementBytes) {
+			return Math.min(remaining, WINDOW_BYTES / elementBytes);
+		}
+
+
+		public int getInt() {
+			require(1, 4);
+			return window(4).getInt();
+		}
+
+
+		public long getLong() {
+			require(1, 8);
+			return window(8).getLong();
+		}
+
+
+		public double getDouble() {
+			require(1, 8);
+			return window(8).getDouble();
+		}
+
+
+		public String getString() {
+			return new String(getBytes(), StandardCharsets.UTF_8);
+		}
+
+
+		public byte[] getBytes() {
+			int length = getInt();
+			require(length, 1);
+			byte[] array = new byte[length];
+			for (int done = 0; done < length; ) {
+				int n = chunk(length - done, 1);
+				window(n).get(array, done, n);
+				done += n;
+			}
+			return array;
+		}
+
+
+		public short[] getShortArray() {
+			int length = getInt();
+			require(length, 2);
+			short[] array = new short[length];
+			for (int done = 0; done < length; ) {
+				int n = chunk(length - done, 2);
+				window(2 * n).asShortBuffer().get(array, done, n);
+				done += n;
+			}
+			return array;
+		}
+
+
+		public int[] getIntArray() {
+			int length = getInt();
+			require(length, 4);
+			int[] array = new int[length];
+			for (int done = 0; done < length; ) {
+				int n = chunk(length - done, 4);
+				window(4 * n).asIntBuffer().get(array, done, n);
+				done += n;
+			}
+			return array;
+		}
+
+
+		public long[] getLongArray() {
+			int length = getInt();
+			require(length, 8);
+			long[] array = new long[length];
+			for (int done = 0; done < length; ) {
+				int n = chunk(length - done, 8);
+				window(8 * n).asLongBuffer().get(array, done, n);
+				done += n;
+			}
+			return array;
+		}
+
+
+		public double[] getDoubleArray() {
+			int length = getInt();
+			require(length, 8);
+			double[] array = new double[length];
+			for (int done = 0; done < length; ) {
+				int n = chunk(length - done, 8);
+				window(8 * n).asDoubleBuffer().get(array, done, n);
+				done += n;
+			}
+			return array;
+		}
+
+
+		/**
+		 * @return - A read-only view (not a copy) of a block written by putBlock.
+		 * @throws IllegalStateException - If the block is larger than a ByteBuffer can be
+		 */
+		public ByteBuffer getBlock() {
+			long length = getLong();
+			require(length, 1);
+			if (length > Integer.MAX_VALUE) {
+				throw new IllegalStateException("A block of " + length + " bytes is too large :: " + file);
+			}
+			ByteBuffer block = window((int) length).slice();
+			block.limit((int) length);
+			return block.asReadOnlyBuffer();
+		}
+	}
+}
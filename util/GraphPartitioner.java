@@ -0,0 +1,518 @@
+package util;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+
+/**
+ * A GraphPartitioner splits a set of places into groups of (roughly) equal population while
+ * (roughly) minimizing the expected number of contacts that cross group boundaries.
+ *
+ * The places form a weighted graph -- the weight of place i is its population and the weight of
+ * edge (i,j) is the expected contact mass pops[i]*f(i,j) + pops[j]*f(j,i) where f(i,j) is the
+ * fraction of place i's contacts that occur in place j. This graph
+ * is partitioned with the usual multilevel scheme :: <br>
+ * (1) coarsen -- repeatedly collapse a heavy-edge matching until the graph is small <br>
+ * (2) partition -- greedily grow the groups on the coarsest graph <br>
+ * (3) refine -- project the groups back onto each finer graph and move boundary places to the
+ * group they interact with most (a greedy k-way variant of Kernighan-Lin/Fiduccia-Mattheyses
+ * refinement) <p>
+ *
+ * Every place interacts with every other place, so the caller supplies only the heaviest
+ * neighbors of each place (see SparseInteractionKernel). The discarded mass is small and spread
+ * thinly over every group.
+ *
+ * Unlike Distribute.optimizeDist any number of groups is supported.
+ */
+public class GraphPartitioner {
+
+	/** The heaviest group may contain this multiple of the average group population. */
+	private static final double IMBALANCE = 1.03;
+
+	/** Coarsening stops when the graph has fewer than this many vertices per group. */
+	private static final int COARSEN_PER_GROUP = 15;
+
+	/** Coarsening stops when a level removes less than this fraction of the vertices. */
+	private static final double MIN_COARSENING_RATE = 0.10;
+
+	/** The maximum number of refinement passes at each level. */
+	private static final int MAX_REFINE_PASSES = 8;
+
+	/** The seed of the RNG used to visit vertices (keeps partitions reproducible). */
+	private static final long SEED = 17;
+
+
+	/** Disallow instantiation of this class. */
+	private GraphPartitioner() {
+		throw new RuntimeException("Creating a \"GraphPartitioner\" object is not allowed");
+	}
+
+
+	/**
+	 * Split the places into groups.
+	 *
+	 * @param neighbors - neighbors[i] = The places that receive the most contacts from place i
+	 * @param fractions - fractions[i][n] = The fraction of place i's contacts that occur in place
+	 * neighbors[i][n]
+	 * @param pops - pops[i] = The population of place i
+	 * @param numGroups - The number of groups to create (any positive number)
+	 *
+	 * @return - An array where output[i] = the group place i is assigned to
+	 */
+	public static int[] partition(int[][] neighbors, double[][] fractions, int[] pops, int numGroups) {
+
+		if (neighbors.length != pops.length || fractions.length != pops.length) {
+			throw new IllegalArgumentException(
+					"neighbors, fractions and pops must have the same length :: " + neighbors.length
+					+ ", " + fractions.length + ", " + pops.length);
+		}
+		if (numGroups <= 0) {
+			throw new IllegalArgumentException("numGroups must be positive :: " + numGroups);
+		}
+
+		int numPlaces = pops.length;
+		if (numGroups == 1 || numPlaces <= numGroups) {
+			int[] owners = new int[numPlaces];
+			for (int i = 0; i < numPlaces; i++) {
+				owners[i] = i % numGroups;
+			}
+			return owners;
+		}
+
+		Random rand = new Random(SEED);
+
+		//(1) coarsen
+		ArrayList<Graph> levels = new ArrayList<>();
+		levels.add(buildGraph(neighbors, fractions, pops));
+
+		long maxVertexWeight = (long) (1.5 * levels.get(0).totalWeight
+				/ (COARSEN_PER_GROUP * numGroups));
+
+		while (true) {
+			Graph fine = levels.get(levels.size() - 1);
+			if (fine.numVertices <= COARSEN_PER_GROUP * numGroups) {
+				break;
+			}
+			Graph coarse = fine.coarsen(maxVertexWeight, rand);
+			if (coarse.numVertices > (1.0 - MIN_COARSENING_RATE) * fine.numVertices) {
+				break;
+			}
+			levels.add(coarse);
+		}
+
+		//(2) partition the coarsest graph
+		Graph coarsest = levels.get(levels.size() - 1);
+		int[] groups = coarsest.growGroups(numGroups);
+		coarsest.refine(groups, numGroups, rand);
+
+		//(3) project back to the original graph, refining at each level
+		for (int level = levels.size() - 2; level >= 0; level--) {
+			Graph fine = levels.get(level);
+			int[] fineGroups = new int[fine.numVertices];
+			for (int v = 0; v < fine.numVertices; v++) {
+				fineGroups[v] = groups[fine.coarseMap[v]];
+			}
+			groups = fineGroups;
+			fine.refine(groups, numGroups, rand);
+		}
+
+		return groups;
+	}
+
+
+	/** Build the (sparse) interaction graph of the places. */
+	private static Graph buildGraph(int[][] neighbors, double[][] fractions, int[] pops) {
+
+		int n = pops.length;
+
+		int[] degree = new int[n];
+		for (int i = 0; i < n; i++) {
+			for (int j : neighbors[i]) {
+				if (j != i) {
+					degree[i]++;
+					degree[j]++;
+				}
+			}
+		}
+
+		//store every directed contact mass at both ends (duplicates are merged below)
+		int[] rawStart = new int[n + 1];
+		for (int i = 0; i < n; i++) {
+			rawStart[i + 1] = rawStart[i] + degree[i];
+		}
+		int[] raw = new int[rawStart[n]];
+		double[] rawWeight = new double[rawStart[n]];
+		int[] fill = Arrays.copyOf(rawStart, n);
+		for (int i = 0; i < n; i++) {
+			for (int e = 0; e < neighbors[i].length; e++) {
+				int j = neighbors[i][e];
+				if (j == i) {
+					continue;
+				}
+				double mass = pops[i] * fractions[i][e];
+				raw[fill[i]] = j;
+				rawWeight[fill[i]++] = mass;
+				raw[fill[j]] = i;
+				rawWeight[fill[j]++] = mass;
+			}
+		}
+
+		GraphBuilder builder = new GraphBuilder(n, raw.length);
+		for (int i = 0; i < n; i++) {
+			builder.startVertex(pops[i]);
+			for (int r = rawStart[i]; r < rawStart[i + 1]; r++) {
+				builder.addToEdge(raw[r], rawWeight[r]);
+			}
+		}
+		return builder.build();
+	}
+
+
+	private static void swap(int[] array, int i, int j) {
+		int temp = array[i];
+		array[i] = array[j];
+		array[j] = temp;
+	}
+
+
+	/** @return - A random permutation of 0 ... n-1. */
+	private static int[] randomOrder(int n, Random rand) {
+		int[] order = new int[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		for (int i = n - 1; i > 0; i--) {
+			swap(order, i, rand.nextInt(i + 1));
+		}
+		return order;
+	}
+
+
+	/** A weighted, undirected graph stored in compressed sparse row format. */
+	private static class Graph {
+
+		final int numVertices;
+
+		/** vertexWeight[v] = The population represented by vertex v. */
+		final long[] vertexWeight;
+
+		/** The neighbors of v are stored at indices edgeStart[v] ... edgeStart[v+1]-1. */
+		final int[] edgeStart;
+
+		final int[] neighbor;
+
+		final double[] edgeWeight;
+
+		final long totalWeight;
+
+		/** coarseMap[v] = The vertex of the next coarser graph that contains v. */
+		int[] coarseMap;
+
+
+		Graph(long[] vertexWeight, int[] edgeStart, int[] neighbor, double[] edgeWeight) {
+			this.numVertices = vertexWeight.length;
+			this.vertexWeight = vertexWeight;
+			this.edgeStart = edgeStart;
+			this.neighbor = neighbor;
+			this.edgeWeight = edgeWeight;
+
+			long sum = 0;
+			for (long w : vertexWeight) {
+				sum += w;
+			}
+			this.totalWeight = sum;
+		}
+
+
+		/** @return - A coarser graph built by collapsing a heavy-edge matching of this graph. */
+		Graph coarsen(long maxVertexWeight, Random rand) {
+
+			int[] match = new int[numVertices];
+			Arrays.fill(match, -1);
+
+			for (int v : randomOrder(numVertices, rand)) {
+				if (match[v] != -1) {
+					continue;
+				}
+				int best = v;
+				double bestWeight = -1;
+				for (int e = edgeStart[v]; e < edgeStart[v + 1]; e++) {
+					int u = neighbor[e];
+					if (match[u] == -1 && edgeWeight[e] > bestWeight
+							&& vertexWeight[v] + vertexWeight[u] <= maxVertexWeight) {
+						best = u;
+						bestWeight = edgeWeight[e];
+					}
+				}
+				match[v] = best;
+				match[best] = v;
+			}
+
+			//number the coarse vertices
+			coarseMap = new int[numVertices];
+			int numCoarse = 0;
+			for (int v = 0; v < numVertices; v++) {
+				if (match[v] >= v) {
+					coarseMap[v] = numCoarse;
+					coarseMap[match[v]] = numCoarse;
+					numCoarse++;
+				}
+			}
+
+			//merge the edges of each matched pair
+			GraphBuilder builder = new GraphBuilder(numCoarse, neighbor.length);
+			for (int v = 0; v < numVertices; v++) {
+				if (match[v] < v) {
+					continue;
+				}
+				int c = coarseMap[v];
+				int u = match[v];
+				builder.startVertex((u == v) ? vertexWeight[v] : vertexWeight[v] + vertexWeight[u]);
+				addCoarseEdges(builder, v, c);
+				if (u != v) {
+					addCoarseEdges(builder, u, c);
+				}
+			}
+			return builder.build();
+		}
+
+
+		private void addCoarseEdges(GraphBuilder builder, int v, int self) {
+			for (int e = edgeStart[v]; e < edgeStart[v + 1]; e++) {
+				int c = coarseMap[neighbor[e]];
+				if (c != self) {
+					builder.addToEdge(c, edgeWeight[e]);
+				}
+			}
+		}
+
+
+		/** @return - The heaviest a group may be at this level. */
+		private long maxGroupWeight(int numGroups) {
+			long heaviest = 0;
+			for (long w : vertexWeight) {
+				heaviest = Math.max(heaviest, w);
+			}
+			return Math.max((long) (IMBALANCE * totalWeight / numGroups), heaviest);
+		}
+
+
+		/**
+		 * Assign the heaviest vertices first, each to the group it is most connected to (among
+		 * the groups with room for it), or to the lightest group.
+		 */
+		int[] growGroups(int numGroups) {
+
+			Integer[] order = new Integer[numVertices];
+			for (int v = 0; v < numVertices; v++) {
+				order[v] = v;
+			}
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer a, Integer b) {
+					return Long.compare(vertexWeight[b], vertexWeight[a]);
+				}
+			});
+
+			long limit = (long) Math.ceil(IMBALANCE * totalWeight / numGroups);
+			int[] groups = new int[numVertices];
+			Arrays.fill(groups, -1);
+			long[] groupWeight = new long[numGroups];
+			double[] connection = new double[numGroups];
+
+			for (int v : order) {
+				Arrays.fill(connection, 0);
+				for (int e = edgeStart[v]; e < edgeStart[v + 1]; e++) {
+					int g = groups[neighbor[e]];
+					if (g >= 0) {
+						connection[g] += edgeWeight[e];
+					}
+				}
+
+				int best = lightest(groupWeight);
+				for (int g = 0; g < numGroups; g++) {
+					if (groupWeight[g] + vertexWeight[v] <= limit
+							&& connection[g] > connection[best]) {
+						best = g;
+					}
+				}
+				groups[v] = best;
+				groupWeight[best] += vertexWeight[v];
+			}
+			return groups;
+		}
+
+
+		/**
+		 * Move vertices to the group they are most connected to whenever doing so reduces the
+		 * cut without overloading a group (or reduces the weight of an overloaded group).
+		 */
+		void refine(int[] groups, int numGroups, Random rand) {
+
+			long limit = maxGroupWeight(numGroups);
+			long[] groupWeight = new long[numGroups];
+			for (int v = 0; v < numVertices; v++) {
+				groupWeight[groups[v]] += vertexWeight[v];
+			}
+
+			double[] connection = new double[numGroups];
+			boolean[] isTouched = new boolean[numGroups];
+			int[] touched = new int[numGroups];
+
+			for (int pass = 0; pass < MAX_REFINE_PASSES; pass++) {
+
+				int numMoves = 0;
+
+				for (int v : randomOrder(numVertices, rand)) {
+
+					int from = groups[v];
+					long w = vertexWeight[v];
+					boolean overloaded = groupWeight[from] > limit;
+
+					//sum the edge weight to each adjacent group
+					int numTouched = 0;
+					for (int e = edgeStart[v]; e < edgeStart[v + 1]; e++) {
+						int g = groups[neighbor[e]];
+						if (!isTouched[g]) {
+							isTouched[g] = true;
+							touched[numTouched++] = g;
+						}
+						connection[g] += edgeWeight[e];
+					}
+					//an overloaded group may also shed vertices to the lightest group
+					if (overloaded) {
+						int g = lightest(groupWeight);
+						if (!isTouched[g]) {
+							isTouched[g] = true;
+							touched[numTouched++] = g;
+						}
+					}
+
+					int best = from;
+					double bestGain = (overloaded) ? Double.NEGATIVE_INFINITY : 0;
+					for (int t = 0; t < numTouched; t++) {
+						int g = touched[t];
+						if (g == from || groupWeight[g] + w > limit) {
+							continue;
+						}
+						double gain = connection[g] - connection[from];
+						boolean balances = groupWeight[g] + w < groupWeight[from];
+						if (gain > bestGain || (gain == bestGain && balances && best == from)) {
+							best = g;
+							bestGain = gain;
+						}
+					}
+
+					for (int t = 0; t < numTouched; t++) {
+						connection[touched[t]] = 0;
+						isTouched[touched[t]] = false;
+					}
+
+					if (best != from) {
+						groups[v] = best;
+						groupWeight[from] -= w;
+						groupWeight[best] += w;
+						numMoves++;
+					}
+				}
+
+				if (numMoves == 0) {
+					break;
+				}
+			}
+		}
+
+
+		private static int lightest(long[] groupWeight) {
+			int lightest = 0;
+			for (int g = 1; g < groupWeight.length; g++) {
+				if (groupWeight[g] < groupWeight[lightest]) {
+					lightest = g;
+				}
+			}
+			return lightest;
+		}
+	}
+
+
+	/**
+	 * Assembles a Graph one vertex at a time. Repeated edges to the same neighbor (of the current
+	 * vertex) are merged by summing their weights.
+	 */
+	private static class GraphBuilder {
+
+		private final long[] vertexWeight;
+
+		private final int[] edgeStart;
+
+		private int[] neighbor;
+
+		private double[] edgeWeight;
+
+		/** slot[u] = The index of the current vertex's edge to u (if it is >= the vertex's start). */
+		private final int[] slot;
+
+		private int numVertices;
+
+		private int numEdges;
+
+
+		GraphBuilder(int numVertices, int expectedEdges) {
+			this.vertexWeight = new long[numVertices];
+			this.edgeStart = new int[numVertices + 1];
+			this.neighbor = new int[Math.max(16, expectedEdges)];
+			this.edgeWeight = new double[neighbor.length];
+			this.slot = new int[numVertices];
+			Arrays.fill(slot, -1);
+			this.numVertices = 0;
+			this.numEdges = 0;
+		}
+
+
+		void startVertex(long weight) {
+			vertexWeight[numVertices] = weight;
+			edgeStart[numVertices] = numEdges;
+			numVertices++;
+			edgeStart[numVertices] = numEdges;
+		}
+
+
+		/** @return - True if the current vertex already has an edge to u. */
+		boolean hasNeighbor(int u) {
+			return slot[u] >= edgeStart[numVertices - 1] && slot[u] < numEdges
+					&& neighbor[slot[u]] == u;
+		}
+
+
+		void addToEdge(int u, double weight) {
+			if (hasNeighbor(u)) {
+				edgeWeight[slot[u]] += weight;
+				return;
+			}
+			if (numEdges == neighbor.length) {
+				neighbor = Arrays.copyOf(neighbor, 2 * numEdges);
+				edgeWeight = Arrays.copyOf(edgeWeight, 2 * numEdges);
+			}
+			neighbor[numEdges] = u;
+			edgeWeight[numEdges] = weight;
+			slot[u] = numEdges;
+			numEdges++;
+			edgeStart[numVertices] = numEdges;
+		}
+
+
+		Graph build() {
+			if (numVertices != vertexWeight.length) {
+				throw new IllegalStateException("Not every vertex was added");
+			}
+			return new Graph(
+					vertexWeight,
+					edgeStart,
+					Arrays.copyOf(neighbor, numEdges),
+					Arrays.copyOf(edgeWeight, numEdges));
+		}
+	}
+}
@@ -0,0 +1,194 @@
+package util;
+
+
+import java.util.Arrays;
+
+
+/**
+ * An IntIntHashMap maps non-negative int keys to int values using only two primitive arrays (no
+ * Entry objects, no boxing).
+ *
+ * The table uses linear probing with backward shift deletion :: a removed entry's slot is refilled
+ * by shifting later entries of the same probe run back, so there are no tombstones and a lookup
+ * always stops at the first empty slot. The table doubles when it becomes more than LOAD_FACTOR
+ * full, so it is sized by the number of entries actually stored (ie the number of agents that are
+ * currently sick) rather than by a guess made up front.
+ */
+public class IntIntHashMap {
+
+	/** The value get and remove return when a key is not in the map. */
+	public static final int NO_VALUE = -1;
+
+	/** The key of an empty slot. */
+	private static final int EMPTY = -1;
+
+	private static final int MIN_CAPACITY = 16;
+
+	/** The table doubles when size > capacity * LOAD_FACTOR. */
+	private static final double LOAD_FACTOR = 0.6;
+
+	/** keys[i] = The key in slot i (EMPTY if the slot is empty). */
+	private int[] keys;
+
+	/** values[i] = The value of keys[i]. */
+	private int[] values;
+
+	/** capacity - 1 (the capacity is a power of 2). */
+	private int mask;
+
+	/** The number of keys stored. */
+	private int size;
+
+	/** The size at which the table doubles. */
+	private int threshold;
+
+
+	/** Create an empty map. */
+	public IntIntHashMap() {
+		this(MIN_CAPACITY);
+	}
+
+
+	/**
+	 * @param expectedSize - The number of keys the map should hold before it first needs to grow
+	 */
+	public IntIntHashMap(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity * LOAD_FACTOR < expectedSize) {
+			capacity *= 2;
+		}
+		allocate(capacity);
+	}
+
+
+	private void allocate(int capacity) {
+		this.keys = new int[capacity];
+		Arrays.fill(keys, EMPTY);
+		this.values = new int[capacity];
+		this.mask = capacity - 1;
+		this.threshold = (int) (capacity * LOAD_FACTOR);
+		this.size = 0;
+	}
+
+
+	/** @return - The preferred slot of a key (the keys are often consecutive, so they are mixed). */
+	private int slotOf(int key) {
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+
+	/** @return - The slot that holds key (or the empty slot where key would be inserted). */
+	private int find(int key) {
+		int slot = slotOf(key);
+		while (keys[slot] != EMPTY && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+
+	/**
+	 * @param key - A non-negative key
+	 * @param value - The key's new value
+	 *
+	 * @return - The key's previous value (NO_VALUE if the key was not in the map)
+	 */
+	public int put(int key, int value) {
+
+		if (key < 0) {
+			throw new IllegalArgumentException("Keys cannot be negative :: " + key);
+		}
+
+		int slot = find(key);
+		if (keys[slot] == key) {
+			int previous = values[slot];
+			values[slot] = value;
+			return previous;
+		}
+
+		keys[slot] = key;
+		values[slot] = value;
+		size++;
+
+		if (size > threshold) {
+			rehash(2 * keys.length);
+		}
+		return NO_VALUE;
+	}
+
+
+	/** @return - The value of key (NO_VALUE if the key is not in the map). */
+	public int get(int key) {
+		int slot = find(key);
+		return (keys[slot] == EMPTY) ? NO_VALUE : values[slot];
+	}
+
+
+	/** @return - True if key is in the map. */
+	public boolean containsKey(int key) {
+		return key >= 0 && keys[find(key)] != EMPTY;
+	}
+
+
+	/**
+	 * Remove a key.
+	 *
+	 * @return - The value key had (NO_VALUE if the key was not in the map)
+	 */
+	public int remove(int key) {
+
+		int slot = find(key);
+		if (keys[slot] == EMPTY) {
+			return NO_VALUE;
+		}
+		int removed = values[slot];
+
+		//backward shift -- move every later entry of this probe run that may live in the gap
+		int gap = slot;
+		int next = (gap + 1) & mask;
+		while (keys[next] != EMPTY) {
+			int home = slotOf(keys[next]);
+			//the entry at next can fill the gap unless its home lies cyclically in (gap, next]
+			if (((next - home) & mask) >= ((next - gap) & mask)) {
+				keys[gap] = keys[next];
+				values[gap] = values[next];
+				gap = next;
+			}
+			next = (next + 1) & mask;
+		}
+		keys[gap] = EMPTY;
+		size--;
+
+		return removed;
+	}
+
+
+	private void rehash(int capacity) {
+
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				int slot = find(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+				size++;
+			}
+		}
+	}
+
+
+	/** @return - The number of keys in the map. */
+	public int size() {
+		return size;
+	}
+
+
+	/** @return - The number of slots in the table. */
+	public int capacity() {
+		return keys.length;
+	}
+}
@@ -0,0 +1,150 @@
+package util;
+
+
+import java.util.Arrays;
+
+
+/**
+ * A growable list of primitive records, each record is a pair of longs (stored side by side in one
+ * long[] like the chunks of SpscLongPairQueue). The list can collect the records drained from
+ * several SpscLongPairQueues and sort them, so the order in which they are processed does not
+ * depend on which queue (ie which thread) each record came from.
+ */
+public class LongPairList implements SpscLongPairQueue.RecordHandler {
+
+	/** Ranges this short are sorted by insertion sort. */
+	private static final int INSERTION_SORT_THRESHOLD = 16;
+
+	/** data[2 * i] and data[2 * i + 1] = The first and second long of record i. */
+	private long[] data;
+
+	/** The number of records in the list. */
+	private int size;
+
+
+	public LongPairList() {
+		this.data = new long[2 * 64];
+		this.size = 0;
+	}
+
+
+	/** Append a record. */
+	public void add(long first, long second) {
+		if (2 * size == data.length) {
+			data = Arrays.copyOf(data, 2 * data.length);
+		}
+		data[2 * size] = first;
+		data[2 * size + 1] = second;
+		size++;
+	}
+
+
+	/** Append a record (lets a LongPairList be passed to SpscLongPairQueue.drain). */
+	@Override
+	public void handle(long first, long second) {
+		add(first, second);
+	}
+
+
+	/** @return - The first long of record i. */
+	public long first(int i) {
+		return data[2 * i];
+	}
+
+
+	/** @return - The second long of record i. */
+	public long second(int i) {
+		return data[2 * i + 1];
+	}
+
+
+	/** @return - The number of records in the list. */
+	public int size() {
+		return size;
+	}
+
+
+	/** Remove every record (the storage is kept for reuse). */
+	public void clear() {
+		size = 0;
+	}
+
+
+	/** Sort the records by their first long, ties are broken by the second long. */
+	public void sort() {
+		sort(0, size - 1);
+	}
+
+
+	/** Quicksort records low..high (inclusive), recursing into the smaller part only. */
+	private void sort(int low, int high) {
+
+		while (high - low >= INSERTION_SORT_THRESHOLD) {
+
+			//median of 3 pivot (copied out -- the pivot record moves while partitioning)
+			int mid = (low + high) >>> 1;
+			if (compare(mid, low) < 0) {
+				swap(mid, low);
+			}
+			if (compare(high, low) < 0) {
+				swap(high, low);
+			}
+			if (compare(high, mid) < 0) {
+				swap(high, mid);
+			}
+			long pivotFirst = first(mid);
+			long pivotSecond = second(mid);
+
+			int i = low;
+			int j = high;
+			while (i <= j) {
+				while (compare(i, pivotFirst, pivotSecond) < 0) {
+					i++;
+				}
+				while (compare(j, pivotFirst, pivotSecond) > 0) {
+					j--;
+				}
+				if (i <= j) {
+					swap(i, j);
+					i++;
+					j--;
+				}
+			}
+
+			if (j - low < high - i) {
+				sort(low, j);
+				low = i;
+			} else {
+				sort(i, high);
+				high = j;
+			}
+		}
+
+		for (int i = low + 1; i <= high; i++) {
+			for (int j = i; j > low && compare(j, j - 1) < 0; j--) {
+				swap(j, j - 1);
+			}
+		}
+	}
+
+
+	private int compare(int i, int j) {
+		return compare(i, first(j), second(j));
+	}
+
+
+	private int compare(int i, long otherFirst, long otherSecond) {
+		int c = Long.compare(first(i), otherFirst);
+		return (c != 0) ? c : Long.compare(second(i), otherSecond);
+	}
+
+
+	private void swap(int i, int j) {
+		long tempFirst = data[2 * i];
+		long tempSecond = data[2 * i + 1];
+		data[2 * i] = data[2 * j];
+		data[2 * i + 1] = data[2 * j + 1];
+		data[2 * j] = tempFirst;
+		data[2 * j + 1] = tempSecond;
+	}
+}
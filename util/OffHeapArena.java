@@ -0,0 +1,70 @@
+package util;
+
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+
+/**
+ * An OffHeapArena hands out slices of large direct ByteBuffers. It is meant for long lived
+ * primitive columns (ie the agents of every ModelPlace a WorkerThread builds) :: the memory lives
+ * outside the Java heap so the garbage collector never copies or scans it. Slices are never freed
+ * individually, a chunk is released once neither the arena nor any of its slices is reachable.
+ */
+public class OffHeapArena {
+
+	/** The size of a chunk (requests larger than a quarter chunk get a buffer of their own). */
+	private static final int CHUNK_BYTES = 1 << 26;
+
+	/** Slices start at multiples of this many bytes. */
+	private static final int ALIGNMENT = 8;
+
+	private ByteBuffer chunk;
+
+	/** The number of bytes handed out so far. */
+	private long numBytesAllocated;
+
+
+	public OffHeapArena() {
+		this.chunk = null;
+		this.numBytesAllocated = 0;
+	}
+
+
+	/**
+	 * Allocate zeroed, native order memory. The arena may be shared by several threads while a
+	 * population is being built, so allocation is synchronized (it happens once per AgentGroup).
+	 *
+	 * @param numBytes - The size of the slice
+	 *
+	 * @return - A slice of exactly numBytes bytes (position 0, limit numBytes).
+	 */
+	public synchronized ByteBuffer allocate(int numBytes) {
+
+		int size = (numBytes + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+
+		ByteBuffer memory;
+		if (size > CHUNK_BYTES / 4) {
+			memory = ByteBuffer.allocateDirect(size);
+		} else {
+			if (chunk == null || chunk.remaining() < size) {
+				chunk = ByteBuffer.allocateDirect(CHUNK_BYTES);
+			}
+			memory = chunk.duplicate();
+			memory.limit(memory.position() + size);
+			chunk.position(chunk.position() + size);
+		}
+
+		numBytesAllocated += size;
+
+		ByteBuffer slice = memory.slice();
+		slice.limit(numBytes);
+		return slice.order(ByteOrder.nativeOrder());
+	}
+
+
+	/** @return - The number of bytes this arena has handed out. */
+	public synchronized long numBytesAllocated() {
+		return numBytesAllocated;
+	}
+}
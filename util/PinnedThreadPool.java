@@ -0,0 +1,160 @@
+package util;
+
+
+import java.util.concurrent.Phaser;
+
+
+/**
+ * A PinnedThreadPool is a long-lived alternative to the one-time-use Parallelizer.
+ *
+ * The pool starts numThreads threads exactly once. Every batch of work submitted to the pool must
+ * contain exactly numThreads jobs and job i always runs on pool thread i. Consequently, work that
+ * is associated with a particular WorkerThread is always executed by the same Java thread (which
+ * keeps that WorkerThread's data warm in the same core's cache whenever the OS allows it).
+ *
+ * The pool threads and the submitting thread synchronize on a single Phaser. Each batch uses two
+ * phases, (1) the release of the batch and (2) the completion of the batch. No threads, latches
+ * or ExecutorServices are created per batch.
+ */
+public class PinnedThreadPool {
+
+	/** The threads that do the work. */
+	private final Thread[] threads;
+
+	/** The pool threads plus the submitting thread are the parties of this Phaser. */
+	private final Phaser phaser;
+
+	/** The batch of work currently being executed (jobs[i] is executed by threads[i]). */
+	private volatile Runnable[] jobs;
+
+	/** Set to true when the pool threads should exit. */
+	private volatile boolean isShutdown = false;
+
+
+	/**
+	 * Start a pool of threads that can process many batches of jobs in parallel.
+	 *
+	 * @param numThreads - The number of threads in the pool (and the number of jobs per batch)
+	 * @param name - A prefix used to name the pool threads
+	 */
+	public PinnedThreadPool(int numThreads, String name) {
+
+		if (numThreads <= 0) {
+			throw new IllegalArgumentException("numThreads must be positive :: " + numThreads);
+		}
+
+		this.phaser = new Phaser(numThreads + 1);
+		this.threads = new Thread[numThreads];
+
+		for (int i = 0; i < numThreads; i++) {
+			threads[i] = new Thread(new PoolLoop(i), name + "-" + i);
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+	}
+
+
+	/** @return - The number of threads in this pool. */
+	public int numThreads() {
+		return threads.length;
+	}
+
+
+	/**
+	 * This method blocks until the "run()" method associated with each job is complete.
+	 *
+	 * @param jobs - A batch of work. jobs[i] will be executed by pool thread i.
+	 */
+	public void doWorkInParallel(Runnable[] jobs) {
+		startWork(jobs);
+		awaitWork();
+	}
+
+
+	/**
+	 * Release a batch of work and return immediately. Every call to startWork must be followed by
+	 * a call to awaitWork before another batch can be started.
+	 *
+	 * @param jobs - A batch of work. jobs[i] will be executed by pool thread i.
+	 */
+	public void startWork(Runnable[] jobs) {
+
+		if (this.isShutdown) {
+			throw new IllegalStateException("This PinnedThreadPool has been shutdown");
+		}
+
+		if (this.jobs != null) {
+			throw new IllegalStateException("The previous batch has not been awaited");
+		}
+
+		if (jobs.length != threads.length) {
+			throw new IllegalArgumentException(
+					"Expected one job per pool thread :: " + jobs.length + " != " + threads.length);
+		}
+
+		for (Runnable job : jobs) {
+			if (job == null) {
+				throw new IllegalArgumentException("Cannot submit null Runnables");
+			}
+		}
+
+		this.jobs = jobs;
+
+		phaser.arriveAndAwaitAdvance();	//release the batch
+	}
+
+
+	/** Block until every job in the batch released by startWork is complete. */
+	public void awaitWork() {
+
+		if (this.jobs == null) {
+			throw new IllegalStateException("No batch has been started");
+		}
+
+		phaser.arriveAndAwaitAdvance();	//wait for the batch to complete
+
+		this.jobs = null;
+	}
+
+
+	/** Stop the pool threads. This PinnedThreadPool cannot be used afterwards. */
+	public void shutdown() {
+
+		if (this.isShutdown) {
+			return;
+		}
+
+		this.isShutdown = true;
+		phaser.arriveAndDeregister();	//release the pool threads so they can observe the flag
+	}
+
+
+	/** The loop each pool thread executes until the pool is shutdown. */
+	private class PoolLoop implements Runnable {
+
+		/** The index of the job this thread always executes. */
+		private final int slot;
+
+
+		PoolLoop(int slot) {
+			this.slot = slot;
+		}
+
+
+		@Override
+		public void run() {
+			while (true) {
+				phaser.arriveAndAwaitAdvance();	//wait for a batch to be released
+
+				if (isShutdown) {
+					phaser.arriveAndDeregister();
+					return;
+				}
+
+				new ErrorCatchingTask(jobs[slot]).run();
+
+				phaser.arriveAndAwaitAdvance();	//signal this thread's job is complete
+			}
+		}
+	}
+}
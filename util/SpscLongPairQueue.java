@@ -0,0 +1,135 @@
+package util;
+
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * A lock-free, single-producer/single-consumer queue of primitive records. Each record is a pair
+ * of longs, therefore no objects are allocated per record.
+ *
+ * Records are written into fixed size chunks of a long[]. The producer links a fresh chunk when
+ * the current one is full, the consumer hands each fully drained chunk back to the producer (via a
+ * one slot "spare" reference). Consequently, a queue that is drained regularly settles into a ring
+ * of 2 chunks and stops allocating.
+ *
+ * Exactly one thread may call offer and exactly one (possibly different) thread may call drain.
+ * The producer and the consumer may run at the same time. size() may be called from any thread.
+ */
+public class SpscLongPairQueue {
+
+	/** The number of records stored in each chunk. */
+	private static final int CHUNK_RECORDS = 4096;
+
+	/** A callback that receives the records removed by drain. */
+	public interface RecordHandler {
+
+		/** Process one record. */
+		public void handle(long first, long second);
+	}
+
+	/** The chunk the producer is writing to (producer only). */
+	private Chunk tail;
+
+	/** The next record index in tail (producer only). */
+	private int tailPos;
+
+	/** The number of records written (producer only). */
+	private long numProduced;
+
+	/** The chunk the consumer is reading from (consumer only). */
+	private Chunk head;
+
+	/** The next record index in head (consumer only). */
+	private int headPos;
+
+	/** The number of records read (consumer only). */
+	private long numConsumed;
+
+	/** The number of records that are visible to the consumer. */
+	private final AtomicLong published = new AtomicLong();
+
+	/** The number of records the consumer has finished with. */
+	private final AtomicLong retired = new AtomicLong();
+
+	/** A drained chunk the producer can reuse (if not null). */
+	private final AtomicReference<Chunk> spare = new AtomicReference<>();
+
+
+	public SpscLongPairQueue() {
+		Chunk first = new Chunk();
+		this.tail = first;
+		this.head = first;
+	}
+
+
+	/** Append a record to this queue (producer thread only). This method never blocks. */
+	public void offer(long first, long second) {
+
+		if (tailPos == CHUNK_RECORDS) {
+			Chunk next = spare.getAndSet(null);
+			if (next == null) {
+				next = new Chunk();
+			} else {
+				next.next = null;
+			}
+			tail.next = next;
+			tail = next;
+			tailPos = 0;
+		}
+
+		tail.data[2 * tailPos] = first;
+		tail.data[2 * tailPos + 1] = second;
+		tailPos++;
+
+		numProduced++;
+		published.lazySet(numProduced);	//publishes the record writes above
+	}
+
+
+	/**
+	 * Remove every record that is currently visible and pass each one to the handler (consumer
+	 * thread only). Records offered while this method runs may or may not be included.
+	 *
+	 * @return - The number of records that were drained
+	 */
+	public int drain(RecordHandler handler) {
+
+		long available = published.get();
+		int count = 0;
+
+		while (numConsumed < available) {
+
+			if (headPos == CHUNK_RECORDS) {
+				Chunk drained = head;
+				head = head.next;
+				headPos = 0;
+				spare.compareAndSet(null, drained);
+			}
+
+			handler.handle(head.data[2 * headPos], head.data[2 * headPos + 1]);
+			headPos++;
+			numConsumed++;
+			count++;
+		}
+
+		retired.lazySet(numConsumed);
+		return count;
+	}
+
+
+	/** @return - The number of records waiting to be drained (safe to call from any thread). */
+	public int size() {
+		return (int) (published.get() - retired.get());
+	}
+
+
+	/** A fixed size block of records. */
+	private static class Chunk {
+
+		final long[] data = new long[2 * CHUNK_RECORDS];
+
+		volatile Chunk next;
+	}
+}